@@ -0,0 +1,380 @@
+package org.chatbot.AiService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spreads AI requests over several GPT4All servers
+ * ({@code gpt4all.api.url} is a comma-separated list).
+ * Picks with power-of-two-choices: two random healthy endpoints, the one
+ * with fewer requests in flight wins (lower latency on a tie).
+ * Health is passive, from the real calls: an endpoint that fails
+ * {@code eject-after-failures} times in a row, or is much slower than the
+ * fastest one, is left out for {@code eject-ms}. The last healthy endpoint
+ * is never ejected
+ */
+@Component
+@ConditionalOnProperty(name = "ai.provider", havingValue = "GPT4ALL_API",
+                       matchIfMissing = true)
+public class AiEndpointBalancer {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(AiEndpointBalancer.class);
+
+    /**
+     * One AI server and what we know about it
+     */
+    public static final class Endpoint {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Counter successes;
+        private final Counter failures;
+        private final Counter ejections;
+        //guarded by the balancer's lock
+        private int consecutiveFailures;
+        private double latencyMs = -1;
+        private long ejectedUntilNanos;
+        private String lastError;
+
+        private Endpoint(String url, MeterRegistry meterRegistry) {
+            this.url = url;
+            this.successes = requests(url, "success", meterRegistry);
+            this.failures = requests(url, "failure", meterRegistry);
+            this.ejections = Counter.builder("ai.endpoint.ejections")
+                                    .tag("endpoint", url)
+                                    .description(
+                                      "Times an AI endpoint was left out")
+                                    .register(meterRegistry);
+        }
+
+        private static Counter requests(String url, String result,
+                                        MeterRegistry meterRegistry) {
+            return Counter.builder("ai.endpoint.requests")
+                          .tag("endpoint", url)
+                          .tag("result", result)
+                          .description("Requests to an AI endpoint")
+                          .register(meterRegistry);
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+    }
+
+    /**
+     * Snapshot of one endpoint, for the health endpoint
+     */
+    public record EndpointStatus(String url, int outstanding, boolean ejected,
+                                 double latencyMs, String lastError) {
+    }
+
+    /**
+     * One request on an endpoint, report how it went exactly once: success,
+     * failure, or release when the caller gave up (neither counts)
+     */
+    public final class Lease {
+        private final Endpoint endpoint;
+        private final long startNanos = System.nanoTime();
+        private long firstTokenNanos;
+        private boolean done;
+
+        private Lease(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String url() {
+            return endpoint.url;
+        }
+
+        /**
+         * For streamed calls: latency is measured to the first token,
+         * not to the end of a response of any length
+         */
+        public void firstToken() {
+            if (firstTokenNanos == 0) {
+                firstTokenNanos = System.nanoTime();
+            }
+        }
+
+        public void success() {
+            long end = firstTokenNanos != 0 ? firstTokenNanos :
+              System.nanoTime();
+            finish(true, (end - startNanos) / 1_000_000.0, null);
+        }
+
+        public void failure(String error) {
+            finish(false, 0, error);
+        }
+
+        /**
+         * Give the endpoint back without a result, e.g. a stream the client
+         * cancelled: not a failure, and its latency says nothing
+         */
+        public void release() {
+            if (done) {
+                return;
+            }
+            done = true;
+            endpoint.outstanding.decrementAndGet();
+        }
+
+        private void finish(boolean ok, double latencyMs, String error) {
+            if (done) {
+                return;
+            }
+            done = true;
+            endpoint.outstanding.decrementAndGet();
+            (ok ? endpoint.successes : endpoint.failures).increment();
+            record(endpoint, ok, latencyMs, error);
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final int ejectAfterFailures;
+    private final long ejectNanos;
+    private final double slowFactor;
+    private final double slowMinMs;
+    private final double latencyDecay;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public AiEndpointBalancer(@Value("${gpt4all.api.url}") String urls,
+                              @Value("${gpt4all.balancer.eject-after-failures:3}")
+                              int ejectAfterFailures,
+                              @Value("${gpt4all.balancer.eject-ms:30000}")
+                              long ejectMs,
+                              @Value("${gpt4all.balancer.slow-factor:3.0}")
+                              double slowFactor,
+                              @Value("${gpt4all.balancer.slow-min-ms:2000}")
+                              double slowMinMs,
+                              @Value("${gpt4all.balancer.latency-decay:0.2}")
+                              double latencyDecay,
+                              MeterRegistry meterRegistry) {
+        this.endpoints = Arrays.stream(urls.split(","))
+                               .map(String::trim)
+                               .filter(url -> !url.isEmpty())
+                               .map(url -> url.endsWith("/") ?
+                                 url.substring(0, url.length() - 1) : url)
+                               .distinct()
+                               .map(url -> new Endpoint(url, meterRegistry))
+                               .toList();
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException(
+              "gpt4all.api.url must contain at least one URL");
+        }
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectNanos = TimeUnit.MILLISECONDS.toNanos(ejectMs);
+        this.slowFactor = slowFactor;
+        this.slowMinMs = slowMinMs;
+        this.latencyDecay = latencyDecay;
+
+        for (Endpoint endpoint : endpoints) {
+            Gauge.builder("ai.endpoint.outstanding", endpoint,
+                          Endpoint::getOutstanding)
+                 .tag("endpoint", endpoint.url)
+                 .description("Requests in flight to an AI endpoint")
+                 .register(meterRegistry);
+            Gauge.builder("ai.endpoint.latency", endpoint,
+                          e -> Math.max(0, e.latencyMs))
+                 .tag("endpoint", endpoint.url)
+                 .description(
+                   "Moving average latency of an AI endpoint in ms " +
+                     "(first token for streams)")
+                 .register(meterRegistry);
+            Gauge.builder("ai.endpoint.ejected", endpoint,
+                          e -> isEjected(e, System.nanoTime()) ? 1 : 0)
+                 .tag("endpoint", endpoint.url)
+                 .description("1 while an AI endpoint is left out")
+                 .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Pick an endpoint for one request
+     * the lease must be completed with success() or failure()
+     */
+    public Lease acquire() {
+        Endpoint chosen = choose();
+        chosen.outstanding.incrementAndGet();
+        return new Lease(chosen);
+    }
+
+    private Endpoint choose() {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+        long now = System.nanoTime();
+        List<Endpoint> healthy = new ArrayList<>(endpoints.size());
+        lock.lock();
+        try {
+            for (Endpoint endpoint : endpoints) {
+                if (!isEjected(endpoint, now)) {
+                    healthy.add(endpoint);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        //all ejected: better to try one than to fail without asking
+        List<Endpoint> candidates = healthy.isEmpty() ? endpoints : healthy;
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if (j >= i) {
+            j++;
+        }
+        Endpoint a = candidates.get(i);
+        Endpoint b = candidates.get(j);
+        int byLoad = Integer.compare(a.getOutstanding(), b.getOutstanding());
+        if (byLoad != 0) {
+            return byLoad < 0 ? a : b;
+        }
+        return a.latencyMs <= b.latencyMs ? a : b;
+    }
+
+    /**
+     * A failed health probe counts like a failed call, so an idle dead
+     * endpoint is ejected before a user request lands on it
+     */
+    public void recordProbeFailure(Endpoint endpoint, String error) {
+        record(endpoint, false, 0, error);
+    }
+
+    private void record(Endpoint endpoint, boolean ok, double latencyMs,
+                        String error) {
+        boolean ejected = false;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (ok) {
+                endpoint.consecutiveFailures = 0;
+                endpoint.latencyMs = endpoint.latencyMs < 0 ? latencyMs :
+                  endpoint.latencyMs +
+                    latencyDecay * (latencyMs - endpoint.latencyMs);
+                if (isOutlier(endpoint, now)) {
+                    ejected = eject(endpoint, now, String.format(
+                      "slow: %.0f ms on average", endpoint.latencyMs));
+                }
+            } else {
+                endpoint.lastError = error;
+                endpoint.consecutiveFailures++;
+                if (endpoint.consecutiveFailures >= ejectAfterFailures) {
+                    ejected = eject(endpoint, now, error);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (ejected) {
+            endpoint.ejections.increment();
+            log.warn("AI endpoint {} ejected: {}", endpoint.url,
+                     endpoint.lastError);
+        }
+    }
+
+    /**
+     * Much slower than the fastest other healthy endpoint
+     */
+    private boolean isOutlier(Endpoint endpoint, long now) {
+        if (endpoint.latencyMs < slowMinMs) {
+            return false;
+        }
+        double fastest = Double.MAX_VALUE;
+        for (Endpoint other : endpoints) {
+            if (other != endpoint && other.latencyMs >= 0 &&
+              !isEjected(other, now)) {
+                fastest = Math.min(fastest, other.latencyMs);
+            }
+        }
+        return fastest != Double.MAX_VALUE &&
+          endpoint.latencyMs > slowFactor * fastest;
+    }
+
+    /**
+     * @return false if this is the last healthy endpoint
+     */
+    private boolean eject(Endpoint endpoint, long now, String reason) {
+        if (isEjected(endpoint, now)) {
+            return false;
+        }
+        for (Endpoint other : endpoints) {
+            if (other != endpoint && !isEjected(other, now)) {
+                endpoint.ejectedUntilNanos = now + ejectNanos;
+                endpoint.lastError = reason;
+                //back on probation: one more failure ejects it again
+                endpoint.consecutiveFailures = ejectAfterFailures - 1;
+                //and a fresh start for the latency
+                endpoint.latencyMs = -1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEjected(Endpoint endpoint, long now) {
+        return endpoint.ejectedUntilNanos != 0 &&
+          now - endpoint.ejectedUntilNanos < 0;
+    }
+
+    /**
+     * Whether requests can still go somewhere else than {@code url}
+     * if not, a failure there means the AI service as a whole is down
+     */
+    public boolean hasOtherHealthy(String url) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            for (Endpoint endpoint : endpoints) {
+                if (!endpoint.url.equals(url) && !isEjected(endpoint, now)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public List<EndpointStatus> getStatus() {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            return endpoints.stream()
+                            .map(e -> new EndpointStatus(e.url,
+                                                         e.getOutstanding(),
+                                                         isEjected(e, now),
+                                                         e.latencyMs,
+                                                         e.lastError))
+                            .toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.chatbot.AiService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Holds the last known availability of the AI service
+ * Updated in the background by the scheduled /models probe and passively
+ * by completion calls (a success, or a server that can not be connected
+ * to), so reading it never does any I/O
+ */
+@Component
+public class AiHealthMonitor {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(AiHealthMonitor.class);
+
+    /**
+     * Immutable snapshot of the AI service health
+     * @param available whether the last probe or call succeeded
+     * @param checkedAt when the state was last updated (null = never)
+     * @param lastError message of the last failure (null if none)
+     * @param models model names from the last successful probe
+     */
+    public record Status(boolean available, Instant checkedAt,
+                         String lastError, List<String> models) {
+    }
+
+    // optimistic until the first probe says otherwise
+    private volatile Status status = new Status(true, null, null, List.of());
+
+    /**
+     * @return true if the AI service was reachable at the last check
+     */
+    public boolean isAvailable() {
+        return status.available();
+    }
+
+    /**
+     * @return the current health snapshot
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Record a successful probe, refreshing the cached model list
+     * @param models model names reported by the /models endpoint
+     */
+    public void recordProbeSuccess(List<String> models) {
+        status = new Status(true, Instant.now(), null, List.copyOf(models));
+    }
+
+    /**
+     * Record a successful completion call (keeps the cached model list)
+     */
+    public void recordSuccess() {
+        Status current = status;
+        if (!current.available()) {
+            log.info("GPT4ALL API is available again");
+        }
+        status = new Status(true, Instant.now(), null, current.models());
+    }
+
+    /**
+     * Record a failed probe, or a completion call that could not connect
+     * @param error what went wrong
+     */
+    public void recordFailure(String error) {
+        Status current = status;
+        if (current.available()) {
+            log.warn("GPT4ALL API is not available {}", error);
+        }
+        status = new Status(false, Instant.now(), error, current.models());
+    }
+}
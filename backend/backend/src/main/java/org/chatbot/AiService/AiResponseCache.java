@@ -0,0 +1,187 @@
+package org.chatbot.AiService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Opt-in cache of AI responses for repeated prompts
+ * Many first messages are the same few words ("hi", "I feel anxious"), so a
+ * context-free turn with the same system prompt, model and temperature can
+ * reuse an earlier answer instead of running inference again.
+ * Turns with history are never cached, and neither is anything sampled at
+ * a temperature above {@code ai.cache.max-temperature}
+ */
+@Component
+public class AiResponseCache {
+
+    /**
+     * What a response depends on, with the texts normalized
+     */
+    public record Key(String model, double temperature, String systemPrompt,
+                      String context, String message) {
+    }
+
+    private record Entry(String response, long storedAtMillis) {
+    }
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION =
+      Pattern.compile("[\\s.!?…]+$");
+
+    private final boolean enabled;
+    private final double maxTemperature;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // key -> response, least recently used first
+    private final LinkedHashMap<Key, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public AiResponseCache(@Value("${ai.cache.enabled:false}")
+                           boolean enabled,
+                           @Value("${ai.cache.max-temperature:0.7}")
+                           double maxTemperature,
+                           @Value("${ai.cache.max-entries:1000}")
+                           int maxEntries,
+                           @Value("${ai.cache.ttl-ms:3600000}")
+                           long ttlMillis,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxTemperature = maxTemperature;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+
+        this.hitCounter = Counter.builder("ai.cache.requests")
+                                 .tag("result", "hit")
+                                 .description(
+                                   "Cacheable AI requests by cache result")
+                                 .register(meterRegistry);
+        this.missCounter = Counter.builder("ai.cache.requests")
+                                  .tag("result", "miss")
+                                  .description(
+                                    "Cacheable AI requests by cache result")
+                                  .register(meterRegistry);
+        Gauge.builder("ai.cache.size", this, AiResponseCache::size)
+             .description("AI responses in the cache")
+             .register(meterRegistry);
+        Gauge.builder("ai.cache.hit.ratio", this, AiResponseCache::hitRatio)
+             .description("Share of cacheable AI requests served from cache")
+             .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether a turn may be served from (and stored in) the cache
+     * @param history earlier turns sent as context, must be empty
+     * @param temperature sampling temperature of the request
+     */
+    public boolean isCacheable(List<ChatTurn> history, double temperature) {
+        return enabled && history.isEmpty() && temperature <= maxTemperature;
+    }
+
+    public Key key(String model, double temperature, String systemPrompt,
+                   List<ChatTurn> history, String message) {
+        StringBuilder context = new StringBuilder();
+        for (ChatTurn turn : history) {
+            context.append(turn.role())
+                   .append(':')
+                   .append(normalize(turn.content()))
+                   .append('\n');
+        }
+        return new Key(model, temperature, systemPrompt, context.toString(),
+                       normalize(message));
+    }
+
+    /**
+     * Lower case, single spaces, no trailing punctuation:
+     * "I feel anxious. " and "i  feel anxious" are the same prompt
+     */
+    static String normalize(String text) {
+        String collapsed = WHITESPACE.matcher(text.trim())
+                                     .replaceAll(" ")
+                                     .toLowerCase(Locale.ROOT);
+        return TRAILING_PUNCTUATION.matcher(collapsed)
+                                   .replaceAll("");
+    }
+
+    /**
+     * @return the cached response, or null on a miss
+     */
+    public String get(Key key) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.storedAtMillis() < ttlMillis) {
+                hitCounter.increment();
+                return entry.response();
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        missCounter.increment();
+        return null;
+    }
+
+    public void put(Key key, String response) {
+        lock.lock();
+        try {
+            entries.put(key, new Entry(response, System.currentTimeMillis()));
+            if (entries.size() > maxEntries) {
+                Iterator<Key> eldest = entries.keySet()
+                                              .iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop every entry, the keys hold user messages (account deletion)
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+}
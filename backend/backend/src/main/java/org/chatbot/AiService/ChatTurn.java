@@ -0,0 +1,21 @@
+package org.chatbot.AiService;
+
+/**
+ * One message of a conversation, as sent to the OpenAI-compatible API
+ * @param role "system", "user" or "assistant"
+ * @param content the message text
+ */
+public record ChatTurn(String role, String content) {
+
+    public static ChatTurn system(String content) {
+        return new ChatTurn("system", content);
+    }
+
+    public static ChatTurn user(String content) {
+        return new ChatTurn("user", content);
+    }
+
+    public static ChatTurn assistant(String content) {
+        return new ChatTurn("assistant", content);
+    }
+}
@@ -0,0 +1,214 @@
+package org.chatbot.AiService;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes chat completion requests and reads the responses of the
+ * OpenAI-compatible API with Jackson's streaming API, no Maps or trees
+ * The fields that never change (model, max_tokens, temperature) are
+ * serialized once, every request starts with those bytes. Reading walks
+ * the tokens and keeps only the first choice's content and the usage,
+ * everything else is skipped
+ */
+@Component
+public class CompletionCodec {
+
+    /**
+     * What changes from one request to the next
+     * @param messages system prompt, history and user msg, in order
+     * @param stream whether the reply is sent as SSE chunks
+     */
+    public record Request(List<ChatTurn> messages, boolean stream) {
+    }
+
+    /**
+     * Token counts reported by the API
+     */
+    public record Usage(int promptTokens, int completionTokens,
+                        int totalTokens) {
+    }
+
+    /**
+     * A whole response, or one chunk of a streamed one
+     * @param content the text (null if there was none)
+     * @param usage token counts (null if not sent, streams send them last)
+     */
+    public record Completion(String content, Usage usage) {
+    }
+
+    private static final SerializedString SUFFIX = new SerializedString("]}");
+    private static final SerializedString STREAM_SUFFIX =
+      new SerializedString("],\"stream\":true}");
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // {"model":..,"max_tokens":..,"temperature":..,"messages":[
+    private final SerializedString requestPrefix;
+
+    public CompletionCodec(@Value("${gpt4all.model.name}") String modelName,
+                           @Value("${ai.max.tokens:150}") int maxTokens,
+                           @Value("${ai.temperature:0.7}")
+                           double temperature) {
+        ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(prefix)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", modelName);
+            generator.writeNumberField("max_tokens", maxTokens);
+            generator.writeNumberField("temperature", temperature);
+            generator.writeFieldName("messages");
+            generator.writeStartArray();
+            //flush only, closing would end the array and object
+            generator.flush();
+            this.requestPrefix = new SerializedString(
+              prefix.toString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the JSON body of a chat completion request
+     * @param out the request body, left open
+     */
+    public void writeRequest(Request request, OutputStream out)
+      throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        //the messages are written as root values between raw prefix/suffix
+        generator.setRootValueSeparator(null);
+        generator.writeRaw(requestPrefix);
+        boolean first = true;
+        for (ChatTurn turn : request.messages()) {
+            if (!first) {
+                generator.writeRaw(',');
+            }
+            first = false;
+            generator.writeStartObject();
+            generator.writeStringField("role", turn.role());
+            generator.writeStringField("content", turn.content());
+            generator.writeEndObject();
+        }
+        generator.writeRaw(request.stream() ? STREAM_SUFFIX : SUFFIX);
+        generator.close();
+    }
+
+    /**
+     * Read a non-streamed response: choices[0].message.content and usage
+     */
+    public Completion readCompletion(InputStream in) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            return read(parser, "message");
+        }
+    }
+
+    /**
+     * Read the data of one SSE chunk: choices[0].delta.content and usage
+     */
+    public Completion readChunk(String data) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(data)) {
+            return read(parser, "delta");
+        }
+    }
+
+    private static Completion read(JsonParser parser, String holder)
+      throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser,
+                                         "Expected a completion object");
+        }
+        String content = null;
+        Usage usage = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("choices") && value == JsonToken.START_ARRAY) {
+                content = readFirstChoice(parser, holder);
+            } else if (field.equals("usage") &&
+              value == JsonToken.START_OBJECT) {
+                usage = readUsage(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Completion(content, usage);
+    }
+
+    /**
+     * @param holder "message" for whole responses, "delta" for chunks
+     */
+    private static String readFirstChoice(JsonParser parser, String holder)
+      throws IOException {
+        String content = null;
+        boolean first = true;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY &&
+          token != null) {
+            if (first && token == JsonToken.START_OBJECT) {
+                content = readChoice(parser, holder);
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return content;
+    }
+
+    private static String readChoice(JsonParser parser, String holder)
+      throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals(holder) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String inner = parser.currentName();
+                    if (parser.nextToken() == JsonToken.VALUE_STRING &&
+                      inner.equals("content")) {
+                        content = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    private static Usage readUsage(JsonParser parser) throws IOException {
+        int prompt = 0;
+        int completion = 0;
+        int total = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "prompt_tokens" -> prompt = parser.getIntValue();
+                case "completion_tokens" -> completion = parser.getIntValue();
+                case "total_tokens" -> total = parser.getIntValue();
+                default -> {
+                }
+            }
+        }
+        return new Usage(prompt, completion, total);
+    }
+}
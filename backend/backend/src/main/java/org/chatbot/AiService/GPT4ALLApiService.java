@@ -1,23 +1,44 @@
 package org.chatbot.AiService;
 
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.chatbot.config.AiRequestDeadlines;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Service for interacting with GPT4All Local API Server
- * Uses the OpenAI-compatible API running on localhost:4891
+ * Uses the OpenAI-compatible API running on localhost:4891, or on several
+ * servers at once (see AiEndpointBalancer)
  */
 @Service
-public class GPT4ALLApiService {
-    @Value("${gpt4all.api.url}")
-    private String apiUrl;
+@ConditionalOnProperty(name = "ai.provider", havingValue = "GPT4ALL_API",
+                       matchIfMissing = true)
+public class GPT4ALLApiService implements InferenceBackend {
 
+    private static final Logger log =
+      LoggerFactory.getLogger(GPT4ALLApiService.class);
     @Value("${gpt4all.model.name}")
     private String modelName;
 
@@ -29,8 +50,28 @@ public class GPT4ALLApiService {
 
     private final RestTemplate restTemplate;
 
-    public GPT4ALLApiService() {
-        this.restTemplate = new RestTemplate();
+    // cached availability, updated by every call and the scheduled probe
+    @Autowired
+    private AiHealthMonitor healthMonitor;
+
+    // picks the server for every call, gpt4all.api.url may list several
+    @Autowired
+    private AiEndpointBalancer balancer;
+
+    // repeated context-free prompts, opt-in (ai.cache.enabled)
+    @Autowired
+    private AiResponseCache responseCache;
+
+    // writes the request and reads content/usage without a Map or tree
+    @Autowired
+    private CompletionCodec completionCodec;
+
+    /**
+     * @param restTemplate pooled client with timeouts, see AiHttpClientConfig
+     */
+    public GPT4ALLApiService(@Qualifier("aiRestTemplate")
+                             RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
     }
 
     /**
@@ -42,126 +83,312 @@ public class GPT4ALLApiService {
 
     public String generateResponse(String userMessage,
                                    String systemPrompt) {
-        try {
-            System.out.println("Calling GPT4ALL API at: " + apiUrl);
-
-            //build request body
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", modelName);
-            requestBody.put("max_tokens", maxTokens);
-            requestBody.put("temperature", temperature);
-
-            //build msg array with system prompt and user msg
-            List<Map<String, String>> messages = List.of(
-              Map.of("role", "system", "content", systemPrompt),
-              Map.of("role", "user", "content", userMessage));
-            requestBody.put("messages", messages);
+        return generateResponse(userMessage, systemPrompt, List.of());
+    }
 
-            //set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * Generate AI response using GPT4All API Server, with earlier turns of
+     * the conversation as context
+     * @param userMessage The user's message
+     * @param systemPrompt The system prompt to guide AI behavior
+     * @param history earlier turns, oldest first
+     * @return AI's response
+     * @throws InferenceFailedException if the API failed or sent no content
+     */
+    @Override
+    public String generateResponse(String userMessage, String systemPrompt,
+                                   List<ChatTurn> history) {
+        AiEndpointBalancer.Lease lease = balancer.acquire();
+        try {
+            log.debug("Calling GPT4ALL API at: {}", lease.url());
 
-            // create HTTP entity
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(
-              requestBody, headers);
+            CompletionCodec.Request request = new CompletionCodec.Request(
+              buildMessages(systemPrompt, history, userMessage), false);
 
             // make POST request to GPT4ALL API
-            String endpoint = apiUrl + "/chat/completions";
-            ResponseEntity<Map> response = restTemplate.exchange(endpoint,
-                                                                 HttpMethod.POST,
-                                                                 entity,
-                                                                 Map.class);
-
-            //extract AI response from JSON
-            Map<String, Object> responseBody = response.getBody();
-            if (responseBody != null &&
-              responseBody.containsKey("choices")) {
-                List<Map<String, Object>> choices = (List<Map<String,
-                  Object>>) responseBody.get(
-                  "choices");
-                if (!choices.isEmpty()) {
-                    Map<String, Object> firstChoice = choices.get(0);
-                    Map<String, String> message =
-                      (Map<String, String>) firstChoice.get(
-                      "message");
-                    String content = message.get("content");
-
-                    System.out.println("Received response from GPT4ALL");
-                    return content.trim();
-                }
+            String endpoint = lease.url() + "/chat/completions";
+            CompletionCodec.Completion completion = restTemplate.execute(
+              endpoint, HttpMethod.POST, httpRequest -> {
+                  httpRequest.getHeaders()
+                             .setContentType(MediaType.APPLICATION_JSON);
+                  completionCodec.writeRequest(request, httpRequest.getBody());
+              }, response -> completionCodec.readCompletion(
+                response.getBody()));
+
+            //only choices[0].message.content and usage were read
+            if (completion != null && completion.content() != null) {
+                String content = completion.content()
+                                           .trim();
+                log.debug("Received response from GPT4ALL{}",
+                          usageInfo(completion.usage()));
+                lease.success();
+                healthMonitor.recordSuccess();
+                remember(userMessage, systemPrompt, history, content);
+                return content;
             }
 
-            return "I'm not sure how to respond to that right now.";
+            lease.success();
+            healthMonitor.recordSuccess();
         } catch (Exception e) {
-            System.err.println(
-              "Error calling GPT4ALL API: " + e.getMessage());
-            e.printStackTrace();
-
-            //check if api server is running
-            if (e.getMessage()
-                 .contains("Connection refused") || e.getMessage()
-                                                     .contains(
-                                                       "ConnectException"
-                                                     )) {
-                return "⚠️ Cannot connect to AI service. Please make " +
-                  "sure GPT4All is running with API server enabled " +
-                  "(Settings > Enable Local API Server).";
-            }
+            log.error("Error calling GPT4ALL API at {}", lease.url(), e);
+            recordFailure(lease, e);
+            throw new InferenceFailedException(
+              "Error calling GPT4ALL API at " + lease.url(), isUnreachable(e),
+              e);
+        }
+        //answered, but nothing to show
+        throw new InferenceFailedException(
+          "Empty completion from GPT4ALL API at " + lease.url(), false,
+          null);
+    }
+
+    /**
+     * Generate AI response as a token stream using GPT4All API Server
+     * Sends {@code stream: true} and forwards every content delta to
+     * {@code onToken} as soon as it arrives, so the caller can push it to
+     * the client before the whole completion is done
+     * @param userMessage The user's message
+     * @param systemPrompt The system prompt to guide AI behavior
+     * @param history earlier turns, oldest first
+     * @param onToken called once per content delta, in order
+     * @return the full AI response (all deltas joined and trimmed)
+     */
+    @Override
+    public String streamResponse(String userMessage, String systemPrompt,
+                                 List<ChatTurn> history,
+                                 Consumer<String> onToken) {
+        CompletionCodec.Request request = new CompletionCodec.Request(
+          buildMessages(systemPrompt, history, userMessage), true);
+
+        AiEndpointBalancer.Lease lease = balancer.acquire();
+        log.debug("Streaming from GPT4ALL API at: {}", lease.url());
+        String endpoint = lease.url() + "/chat/completions";
+        String fullResponse;
+        // usage comes with the last chunk, if the server sends it at all
+        CompletionCodec.Usage[] usage = new CompletionCodec.Usage[1];
+        try {
+            fullResponse = restTemplate.execute(endpoint, HttpMethod.POST,
+              httpRequest -> {
+                  httpRequest.getHeaders()
+                             .setContentType(MediaType.APPLICATION_JSON);
+                  httpRequest.getHeaders()
+                             .setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                  completionCodec.writeRequest(request, httpRequest.getBody());
+              }, response -> {
+                  StringBuilder content = new StringBuilder();
+                  BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.getBody(),
+                                          StandardCharsets.UTF_8));
 
-            return "I apologize, but i'm having trouble generating a " +
-              "response right now. Please try again.";
+                  // every event is a line like: data: {"choices":[{"delta":..}]}
+                  String line;
+                  while ((line = reader.readLine()) != null) {
+                      if (!line.startsWith("data:")) {
+                          continue;
+                      }
+                      String data = line.substring(5)
+                                        .trim();
+                      if (data.equals("[DONE]")) {
+                          break;
+                      }
+                      if (data.isEmpty()) {
+                          continue;
+                      }
+
+                      CompletionCodec.Completion chunk =
+                        completionCodec.readChunk(data);
+                      String delta = chunk.content();
+                      if (delta != null && !delta.isEmpty()) {
+                          content.append(delta);
+                          lease.firstToken();
+                          try {
+                              onToken.accept(delta);
+                          } catch (RuntimeException e) {
+                              // nobody reads the rest, stop generating it
+                              AiRequestDeadlines.abort(response);
+                              throw e;
+                          }
+                      }
+                      if (chunk.usage() != null) {
+                          usage[0] = chunk.usage();
+                      }
+                  }
+                  return content.toString();
+              });
+            lease.success();
+            healthMonitor.recordSuccess();
+        } catch (RestClientException e) {
+            // only failures talking to the API count, not a client that left
+            recordFailure(lease, e);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            // a cancelled stream is not the endpoint's fault, just release it
+            lease.release();
+            throw e;
         }
+
+        log.debug("Finished streaming response from GPT4ALL{}",
+                  usageInfo(usage[0]));
+        String response = fullResponse == null ? "" : fullResponse.trim();
+        remember(userMessage, systemPrompt, history, response);
+        return response;
+    }
+
+    /**
+     * A failed call only marks the AI service down when the server could
+     * not be connected to and no other endpoint is left to take the next
+     * request; a slow or failed generation is the endpoint's failure, the
+     * next request still tries (the probe decides about the service)
+     */
+    private void recordFailure(AiEndpointBalancer.Lease lease, Exception e) {
+        String error = String.valueOf(e.getMessage());
+        lease.failure(error);
+        if (isUnreachable(e) && !balancer.hasOtherHealthy(lease.url())) {
+            healthMonitor.recordFailure(error);
+        }
+    }
+
+    /**
+     * @return true if the API server was not running or not reachable
+     */
+    private static boolean isUnreachable(Exception e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        return cause instanceof ConnectException ||
+          cause instanceof ConnectTimeoutException;
+    }
+
+    /**
+     * Earlier response to the same context-free prompt, if caching is on
+     * @param userMessage The user's message
+     * @param systemPrompt The system prompt to guide AI behavior
+     * @param history earlier turns, oldest first (must be empty to hit)
+     * @return the cached response, or null when there is none
+     */
+    @Override
+    public String cachedResponse(String userMessage, String systemPrompt,
+                                 List<ChatTurn> history) {
+        if (!responseCache.isCacheable(history, temperature)) {
+            return null;
+        }
+        return responseCache.get(responseCache.key(modelName, temperature,
+                                                   systemPrompt, history,
+                                                   userMessage));
+    }
+
+    @Override
+    public boolean isResponseCacheEnabled() {
+        return responseCache.isEnabled();
+    }
+
+    /**
+     * Store a real (non-empty) response for later identical prompts
+     */
+    private void remember(String userMessage, String systemPrompt,
+                          List<ChatTurn> history, String response) {
+        if (!response.isEmpty() &&
+          responseCache.isCacheable(history, temperature)) {
+            responseCache.put(responseCache.key(modelName, temperature,
+                                                systemPrompt, history,
+                                                userMessage), response);
+        }
+    }
+
+    /**
+     * Build the messages array: system prompt, history, then the user msg
+     */
+    private List<ChatTurn> buildMessages(String systemPrompt,
+                                         List<ChatTurn> history,
+                                         String userMessage) {
+        List<ChatTurn> messages = new ArrayList<>(history.size() + 2);
+        messages.add(ChatTurn.system(systemPrompt));
+        messages.addAll(history);
+        messages.add(ChatTurn.user(userMessage));
+        return messages;
+    }
+
+    private static String usageInfo(CompletionCodec.Usage usage) {
+        return usage == null ? "" : String.format(
+          " (%d prompt + %d completion tokens)", usage.promptTokens(),
+          usage.completionTokens());
     }
 
     /**
      * Check if GPT4ALL API is available
-     * @return true if api is reachable
+     * reads the cached state, no request is sent to the API
+     * @return true if api was reachable at the last check
      */
+    @Override
     public boolean isApiAvailable() {
-        try {
-            String endpoint = apiUrl + "/models";
-            ResponseEntity<String> response = restTemplate.getForEntity(
-              endpoint, String.class);
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (Exception e) {
-            System.err.println(
-              "GPT4ALL API is not available " + e.getMessage());
-            return false;
-        }
+        return healthMonitor.isAvailable();
     }
 
     /**
      * Get list of available models from GPT4ALL
+     * returns the list cached by the last successful probe
      * @return List of model names
      */
+    @Override
     public List<String> getAvailableModels() {
-        try {
-            String endpoint = apiUrl + "/models";
-            ResponseEntity<Map> response = restTemplate.getForEntity(
-              endpoint, Map.class);
-
-            Map<String, Object> body = response.getBody();
-            if (body != null && body.containsKey("data")) {
-                List<Map<String, Object>> models = (List<Map<String,
-                  Object>>) body.get(
-                  "data");
-                return models.stream()
-                             .map(model -> (String) model.get("id"))
-                             .toList();
+        return healthMonitor.getStatus()
+                            .models();
+    }
+
+    /**
+     * Probe the /models endpoint of every server in the background and cache
+     * the result, one request per server and interval, no matter how many
+     * chats are running
+     * the AI service is up while at least one server answers
+     */
+    @Scheduled(initialDelayString = "${gpt4all.health.initial-delay-ms:0}",
+               fixedDelayString = "${gpt4all.health.interval-ms:30000}")
+    public void refreshHealth() {
+        Set<String> models = new LinkedHashSet<>();
+        boolean anyUp = false;
+        String lastError = null;
+        for (AiEndpointBalancer.Endpoint server : balancer.getEndpoints()) {
+            try {
+                String endpoint = server.getUrl() + "/models";
+                ResponseEntity<Map> response = restTemplate.getForEntity(
+                  endpoint, Map.class);
+
+                Map<String, Object> body = response.getBody();
+                if (body != null && body.containsKey("data")) {
+                    List<Map<String, Object>> data = (List<Map<String,
+                      Object>>) body.get(
+                      "data");
+                    data.stream()
+                        .map(model -> (String) model.get("id"))
+                        .forEach(models::add);
+                }
+                anyUp = true;
+            } catch (Exception e) {
+                lastError = String.valueOf(e.getMessage());
+                balancer.recordProbeFailure(server, lastError);
             }
-        } catch (Exception e) {
-            System.err.println("Error fetching models: " + e.getMessage());
         }
-        return List.of();
+        if (anyUp) {
+            healthMonitor.recordProbeSuccess(List.copyOf(models));
+        } else {
+            healthMonitor.recordFailure(lastError);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "GPT4ALL Local API";
     }
 
     /**
      * Get current configuration info
      */
+    @Override
     public String getConfigInfo() {
         return String.format(
           "API URL: %s, Model: %s, Max Tokens: %d, Temperature: %.2f",
-          apiUrl, modelName, maxTokens, temperature);
+          balancer.getEndpoints()
+                  .stream()
+                  .map(AiEndpointBalancer.Endpoint::getUrl)
+                  .collect(Collectors.joining(", ")), modelName, maxTokens, temperature);
     }
 
 
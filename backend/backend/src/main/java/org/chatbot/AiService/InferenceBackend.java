@@ -0,0 +1,58 @@
+package org.chatbot.AiService;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Where chat completions come from, selected by {@code ai.provider}
+ * GPT4ALL_API: the GPT4All (OpenAI-compatible) API server, see GPT4ALLApiService
+ * STUB: deterministic in-process stand-in, see StubInferenceBackend
+ */
+public interface InferenceBackend {
+
+    /**
+     * Generate a complete response
+     * @param userMessage The user's message
+     * @param systemPrompt The system prompt to guide AI behavior
+     * @param history earlier turns, oldest first
+     * @return AI's response
+     * @throws InferenceFailedException if the backend could not answer
+     */
+    String generateResponse(String userMessage, String systemPrompt,
+                            List<ChatTurn> history);
+
+    /**
+     * Generate a response as a token stream
+     * @param onToken called once per piece of the response, in order
+     * @return the full response
+     */
+    String streamResponse(String userMessage, String systemPrompt,
+                          List<ChatTurn> history, Consumer<String> onToken);
+
+    /**
+     * Earlier response to the same prompt, if this backend caches them
+     * @return the cached response, or null when there is none
+     */
+    default String cachedResponse(String userMessage, String systemPrompt,
+                                  List<ChatTurn> history) {
+        return null;
+    }
+
+    default boolean isResponseCacheEnabled() {
+        return false;
+    }
+
+    /**
+     * @return true if the backend was reachable at the last check
+     */
+    boolean isApiAvailable();
+
+    List<String> getAvailableModels();
+
+    /**
+     * @return short name shown by the health endpoint
+     */
+    String getName();
+
+    String getConfigInfo();
+}
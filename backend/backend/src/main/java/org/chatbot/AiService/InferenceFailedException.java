@@ -0,0 +1,23 @@
+package org.chatbot.AiService;
+
+/**
+ * Thrown when the backend could not produce a response, so the caller can
+ * answer with a fallback text without taking it for the AI's reply
+ */
+public class InferenceFailedException extends RuntimeException {
+
+    private final boolean unreachable;
+
+    public InferenceFailedException(String message, boolean unreachable,
+                                    Throwable cause) {
+        super(message, cause);
+        this.unreachable = unreachable;
+    }
+
+    /**
+     * @return true if the AI server could not be connected to at all
+     */
+    public boolean isUnreachable() {
+        return unreachable;
+    }
+}
@@ -0,0 +1,22 @@
+package org.chatbot.AiService;
+
+/**
+ * Thrown when the inference queue is full (or a request waited too long),
+ * so the caller can answer with 429 and a Retry-After instead of piling up
+ */
+public class InferenceQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public InferenceQueueFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return how many seconds the client should wait before retrying
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,250 @@
+package org.chatbot.AiService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the AI server
+ * Only {@code maxConcurrent} inference calls run at the same time, the rest
+ * wait in a bounded queue. Waiting requests are granted round-robin by user,
+ * so one chatty user can not starve everyone else. When the queue is full
+ * the request fails fast with {@link InferenceQueueFullException}
+ */
+@Component
+public class InferenceScheduler {
+
+    /**
+     * A request waiting for its turn
+     */
+    private static final class Ticket {
+        private final Condition turn;
+        private boolean granted;
+
+        private Ticket(Condition turn) {
+            this.turn = turn;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitMs;
+    private final long retryAfterSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // waiting tickets per user, iteration order is the round-robin order
+    private final LinkedHashMap<Long, ArrayDeque<Ticket>> waiting =
+      new LinkedHashMap<>();
+    private int running;
+    private int queued;
+
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    public InferenceScheduler(@Value("${ai.scheduler.max-concurrent:2}")
+                              int maxConcurrent,
+                              @Value("${ai.scheduler.max-queued:32}")
+                              int maxQueued,
+                              @Value("${ai.scheduler.max-wait-ms:60000}")
+                              long maxWaitMs,
+                              @Value("${ai.scheduler.retry-after-seconds:5}")
+                              long retryAfterSeconds,
+                              MeterRegistry meterRegistry) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitMs = maxWaitMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.waitTimer = Timer.builder("ai.inference.queue.wait")
+                              .description(
+                                "Time a chat request waited for an inference slot")
+                              .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("ai.inference.queue.rejected")
+                                      .description(
+                                        "Chat requests rejected because the queue was full")
+                                      .register(meterRegistry);
+        Gauge.builder("ai.inference.queue.depth", this, InferenceScheduler::getQueued)
+             .description("Chat requests waiting for an inference slot")
+             .register(meterRegistry);
+        Gauge.builder("ai.inference.active", this, InferenceScheduler::getRunning)
+             .description("Inference calls currently running")
+             .register(meterRegistry);
+    }
+
+    /**
+     * Run an inference call once a slot is free
+     * @param userId the user the call is for (used for fairness)
+     * @param task the inference call
+     * @return whatever the task returns
+     * @throws InferenceQueueFullException if the queue is full or the wait
+     * took longer than the configured max wait
+     */
+    public <T> T run(Long userId, Supplier<T> task) {
+        acquire(userId);
+        try {
+            return task.get();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Quick check before starting a stream, so a full queue can be answered
+     * with 429 before any SSE response is opened
+     * @throws InferenceQueueFullException if no more requests can be queued
+     */
+    public void checkAdmission() {
+        lock.lock();
+        try {
+            if (running >= maxConcurrent && queued >= maxQueued) {
+                rejectedCounter.increment();
+                throw new InferenceQueueFullException(
+                  "AI service is busy, please try again shortly",
+                  retryAfterSeconds);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for an inference slot
+     */
+    private void acquire(Long userId) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            // free slot and nobody waiting: go straight away
+            if (running < maxConcurrent && queued == 0) {
+                running++;
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (queued >= maxQueued) {
+                rejectedCounter.increment();
+                throw new InferenceQueueFullException(
+                  "AI service is busy, please try again shortly",
+                  retryAfterSeconds);
+            }
+
+            Ticket ticket = new Ticket(lock.newCondition());
+            waiting.computeIfAbsent(userId, id -> new ArrayDeque<>())
+                   .addLast(ticket);
+            queued++;
+
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            try {
+                while (!ticket.granted && remainingNanos > 0) {
+                    remainingNanos = ticket.turn.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+
+            if (!ticket.granted) {
+                // timed out or interrupted, give up our place in the queue
+                removeTicket(userId, ticket);
+                rejectedCounter.increment();
+                throw new InferenceQueueFullException(
+                  "Timed out waiting for the AI service", retryAfterSeconds);
+            }
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Free a slot and hand it to the next user in round-robin order
+     */
+    private void release() {
+        lock.lock();
+        try {
+            running--;
+            Iterator<Map.Entry<Long, ArrayDeque<Ticket>>> users =
+              waiting.entrySet()
+                     .iterator();
+            while (running < maxConcurrent && users.hasNext()) {
+                Map.Entry<Long, ArrayDeque<Ticket>> next = users.next();
+                Ticket ticket = next.getValue()
+                                    .pollFirst();
+                users.remove();
+                if (!next.getValue()
+                         .isEmpty()) {
+                    // user still has requests waiting: back of the line
+                    waiting.put(next.getKey(), next.getValue());
+                    users = waiting.entrySet()
+                                   .iterator();
+                }
+                ticket.granted = true;
+                queued--;
+                running++;
+                ticket.turn.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeTicket(Long userId, Ticket ticket) {
+        ArrayDeque<Ticket> tickets = waiting.get(userId);
+        if (tickets != null && tickets.remove(ticket)) {
+            queued--;
+            if (tickets.isEmpty()) {
+                waiting.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * @return number of requests waiting for a slot
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of inference calls running right now
+     */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return max number of inference calls that may run at once
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return mean time (ms) requests have waited for a slot
+     */
+    public double getMeanWaitMs() {
+        return waitTimer.mean(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,131 @@
+package org.chatbot.AiService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Deterministic fake completions for the stub backend and stub API server
+ * The same prompt always gives the same text, and tokens are released at
+ * the pace of the configured profile (time to first token, tokens/second),
+ * so load tests and benchmarks are reproducible without a model
+ */
+@Component
+public class StubCompletionGenerator {
+
+    private static final String[] WORDS = {
+      "I", "hear", "you", "and", "it", "sounds", "like", "a", "lot", "to",
+      "carry", "right", "now.", "It", "is", "okay", "to", "feel", "this",
+      "way.", "Would", "you", "like", "to", "talk", "about", "what", "has",
+      "been", "on", "your", "mind?", "Taking", "a", "slow", "breath", "can",
+      "help.", "You", "are", "not", "alone", "in", "this."};
+
+    private final String model;
+    private final long firstTokenMs;
+    private final double tokensPerSecond;
+    private final int responseTokens;
+
+    public StubCompletionGenerator(@Value("${ai.stub.profile:INSTANT}")
+                                   StubProfile profile,
+                                   @Value("${ai.stub.model:stub}")
+                                   String model,
+                                   @Value("${ai.stub.first-token-ms:-1}")
+                                   long firstTokenMs,
+                                   @Value("${ai.stub.tokens-per-second:-1}")
+                                   double tokensPerSecond,
+                                   @Value("${ai.stub.response-tokens:-1}")
+                                   int responseTokens) {
+        this.model = model;
+        //a negative override means: take it from the profile
+        this.firstTokenMs = firstTokenMs >= 0 ? firstTokenMs :
+          profile.getFirstTokenMs();
+        this.tokensPerSecond = tokensPerSecond >= 0 ? tokensPerSecond :
+          profile.getTokensPerSecond();
+        this.responseTokens = responseTokens >= 0 ? responseTokens :
+          profile.getResponseTokens();
+    }
+
+    /**
+     * The tokens of the response to a prompt, each with its leading space
+     * @param maxTokens upper bound from the request, 0 or less for none
+     */
+    public List<String> tokens(String systemPrompt, List<ChatTurn> history,
+                               String userMessage, int maxTokens) {
+        long seed = systemPrompt.hashCode() * 31L + userMessage.hashCode();
+        for (ChatTurn turn : history) {
+            seed = seed * 31 + turn.content()
+                                   .hashCode();
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int count = maxTokens > 0 ? Math.min(maxTokens, responseTokens) :
+          responseTokens;
+
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            tokens.add(i == 0 ? word : " " + word);
+        }
+        return tokens;
+    }
+
+    /**
+     * Hand the tokens out at the profile's pace
+     */
+    public void emit(List<String> tokens, Consumer<String> onToken) {
+        long start = System.nanoTime();
+        for (int i = 0; i < tokens.size(); i++) {
+            sleepUntil(start, offsetMs(i));
+            onToken.accept(tokens.get(i));
+        }
+    }
+
+    /**
+     * Wait as long as producing all the tokens would take
+     */
+    public void waitForCompletion(int tokenCount) {
+        sleepUntil(System.nanoTime(), tokenCount == 0 ? firstTokenMs :
+          offsetMs(tokenCount - 1));
+    }
+
+    /**
+     * When token i is ready, in ms after the request
+     */
+    private long offsetMs(int i) {
+        if (tokensPerSecond <= 0) {
+            return firstTokenMs;
+        }
+        return firstTokenMs + Math.round(i * 1000 / tokensPerSecond);
+    }
+
+    private static void sleepUntil(long startNanos, long offsetMs) {
+        long wait = startNanos + TimeUnit.MILLISECONDS.toNanos(offsetMs) -
+          System.nanoTime();
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IllegalStateException("Stub completion interrupted",
+                                            e);
+        }
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String describe() {
+        return String.format(
+          "first token %d ms, %s tokens/s, %d tokens", firstTokenMs,
+          tokensPerSecond <= 0 ? "unlimited" :
+            String.valueOf(tokensPerSecond), responseTokens);
+    }
+}
@@ -0,0 +1,66 @@
+package org.chatbot.AiService;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for the AI server (ai.provider=STUB)
+ * Answers every prompt with deterministic text at the pace of the
+ * configured StubProfile, without any network or model
+ */
+@Service
+@ConditionalOnProperty(name = "ai.provider", havingValue = "STUB")
+public class StubInferenceBackend implements InferenceBackend {
+
+    private final StubCompletionGenerator generator;
+
+    public StubInferenceBackend(StubCompletionGenerator generator,
+                                AiHealthMonitor healthMonitor) {
+        this.generator = generator;
+        //always up, so the health endpoint and ChatService see it ready
+        healthMonitor.recordProbeSuccess(List.of(generator.getModel()));
+    }
+
+    @Override
+    public String generateResponse(String userMessage, String systemPrompt,
+                                   List<ChatTurn> history) {
+        List<String> tokens = generator.tokens(systemPrompt, history,
+                                               userMessage, 0);
+        generator.waitForCompletion(tokens.size());
+        return String.join("", tokens);
+    }
+
+    @Override
+    public String streamResponse(String userMessage, String systemPrompt,
+                                 List<ChatTurn> history,
+                                 Consumer<String> onToken) {
+        List<String> tokens = generator.tokens(systemPrompt, history,
+                                               userMessage, 0);
+        generator.emit(tokens, onToken);
+        return String.join("", tokens);
+    }
+
+    @Override
+    public boolean isApiAvailable() {
+        return true;
+    }
+
+    @Override
+    public List<String> getAvailableModels() {
+        return List.of(generator.getModel());
+    }
+
+    @Override
+    public String getName() {
+        return "Stub (in-process)";
+    }
+
+    @Override
+    public String getConfigInfo() {
+        return "Stub model: " + generator.getModel() + ", " +
+          generator.describe();
+    }
+}
@@ -0,0 +1,40 @@
+package org.chatbot.AiService;
+
+/**
+ * Timing of the stub backend, roughly what a local model does on the
+ * named hardware. Every value can be overridden with ai.stub.* properties
+ */
+public enum StubProfile {
+    //no waiting at all, measures our own overhead
+    INSTANT(0, 0, 40),
+    //small quantized model on a laptop CPU
+    CPU(1200, 8, 60),
+    //same model on a consumer GPU
+    GPU(200, 60, 60);
+
+    private final long firstTokenMs;
+    private final double tokensPerSecond;
+    private final int responseTokens;
+
+    StubProfile(long firstTokenMs, double tokensPerSecond,
+                int responseTokens) {
+        this.firstTokenMs = firstTokenMs;
+        this.tokensPerSecond = tokensPerSecond;
+        this.responseTokens = responseTokens;
+    }
+
+    public long getFirstTokenMs() {
+        return firstTokenMs;
+    }
+
+    /**
+     * @return generation speed, 0 for unlimited
+     */
+    public double getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    public int getResponseTokens() {
+        return responseTokens;
+    }
+}
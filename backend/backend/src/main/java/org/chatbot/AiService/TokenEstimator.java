@@ -0,0 +1,57 @@
+package org.chatbot.AiService;
+
+/**
+ * Fast approximate token counter for prompt budgeting
+ * Close enough to BPE tokenizers for English and Swedish text:
+ * every run of letters/digits costs one token per 4 characters (at least
+ * one), every other visible character costs one token, whitespace is free.
+ * Runs in a single pass without allocating.
+ */
+public final class TokenEstimator {
+
+    // extra tokens the chat template adds around every message
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Estimate the number of tokens in a piece of text
+     * @param text the text (null counts as empty)
+     * @return approximate token count
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int wordLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                wordLength++;
+                continue;
+            }
+            if (wordLength > 0) {
+                tokens += (wordLength + 3) / 4;
+                wordLength = 0;
+            }
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        if (wordLength > 0) {
+            tokens += (wordLength + 3) / 4;
+        }
+        return tokens;
+    }
+
+    /**
+     * Estimate the tokens one chat message takes, including template overhead
+     * @param turn the message
+     * @return approximate token count
+     */
+    public static int estimate(ChatTurn turn) {
+        return estimate(turn.content()) + MESSAGE_OVERHEAD;
+    }
+}
@@ -1,15 +1,22 @@
 package org.chatbot;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @SpringBootApplication
+@EnableScheduling
 public class BackendApplication {
 
+    private static final Logger log =
+      LoggerFactory.getLogger(BackendApplication.class);
+
     /**
      * Main method - starts the application
      * @param args
@@ -17,7 +24,7 @@ public class BackendApplication {
     public static void main(String[] args) {
 
         SpringApplication.run(BackendApplication.class, args);
-        System.out.println(
+        log.info(
           "Mental Health Chatbot Backend is running on http://localhost:8080");
     }
 
@@ -0,0 +1,151 @@
+package org.chatbot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+
+/**
+ * HTTP client used to talk to the GPT4All API
+ * Pooled keep-alive connections with connect, read and total deadlines,
+ * so a stalled model can not hold a request thread forever
+ */
+@Configuration
+public class AiHttpClientConfig {
+
+    @Value("${gpt4all.http.max-connections-per-route:8}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${gpt4all.http.max-connections-total:32}")
+    private int maxConnectionsTotal;
+
+    @Value("${gpt4all.http.keep-alive-ms:30000}")
+    private long keepAliveMs;
+
+    @Value("${gpt4all.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    // how long to wait for a free connection from the pool
+    @Value("${gpt4all.http.pool-timeout-ms:5000}")
+    private long poolTimeoutMs;
+
+    // max time between two packets of the response (covers slow tokens)
+    @Value("${gpt4all.http.read-timeout-ms:60000}")
+    private long readTimeoutMs;
+
+    // hard limit for the whole exchange, including reading a stream
+    @Value("${gpt4all.http.total-timeout-ms:180000}")
+    private long totalTimeoutMs;
+
+    /**
+     * Connection pool for the AI API
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager aiConnectionManager() {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                                                            .setConnectTimeout(
+                                                              Timeout.ofMilliseconds(
+                                                                connectTimeoutMs))
+                                                            .setSocketTimeout(
+                                                              Timeout.ofMilliseconds(
+                                                                readTimeoutMs))
+                                                            .setValidateAfterInactivity(
+                                                              TimeValue.ofSeconds(2))
+                                                            .build();
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                                                        .setMaxConnPerRoute(
+                                                          maxConnectionsPerRoute)
+                                                        .setMaxConnTotal(
+                                                          maxConnectionsTotal)
+                                                        .setDefaultConnectionConfig(
+                                                          connectionConfig)
+                                                        .build();
+    }
+
+    /**
+     * HttpClient on top of the pool, with keep-alive and idle eviction
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient aiHttpClient(
+      PoolingHttpClientConnectionManager aiConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                                                   .setConnectionRequestTimeout(
+                                                     Timeout.ofMilliseconds(
+                                                       poolTimeoutMs))
+                                                   .setResponseTimeout(
+                                                     Timeout.ofMilliseconds(
+                                                       readTimeoutMs))
+                                                   .build();
+
+        return HttpClients.custom()
+                          .setConnectionManager(aiConnectionManager)
+                          .setDefaultRequestConfig(requestConfig)
+                          .setKeepAliveStrategy(
+                            (response, context) -> TimeValue.ofMilliseconds(
+                              keepAliveMs))
+                          .evictExpiredConnections()
+                          .evictIdleConnections(
+                            TimeValue.ofMilliseconds(keepAliveMs))
+                          .build();
+    }
+
+    /**
+     * Aborts requests running past the total deadline, on its own thread
+     */
+    @Bean(destroyMethod = "close")
+    public AiRequestDeadlines aiRequestDeadlines() {
+        return new AiRequestDeadlines(totalTimeoutMs);
+    }
+
+    /**
+     * RestTemplate used by GPT4ALLApiService
+     */
+    @Bean
+    public RestTemplate aiRestTemplate(CloseableHttpClient aiHttpClient,
+                                       AiRequestDeadlines aiRequestDeadlines) {
+        HttpComponentsClientHttpRequestFactory requestFactory =
+          new HttpComponentsClientHttpRequestFactory(aiHttpClient) {
+              @Override
+              protected void postProcessHttpRequest(
+                ClassicHttpRequest request) {
+                  if (request instanceof HttpUriRequestBase uriRequest) {
+                      aiRequestDeadlines.start(uriRequest);
+                  }
+              }
+          };
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        //cancels the deadline when the response is closed
+        restTemplate.getInterceptors()
+                    .add(aiRequestDeadlines);
+        return restTemplate;
+    }
+
+    /**
+     * Publish pool metrics (leased, pending, available, max) to Micrometer
+     */
+    @Bean
+    public PoolingHttpClientConnectionManagerMetricsBinder aiConnectionPoolMetrics(
+      PoolingHttpClientConnectionManager aiConnectionManager,
+      MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManagerMetricsBinder binder =
+          new PoolingHttpClientConnectionManagerMetricsBinder(
+            aiConnectionManager, "gpt4all");
+        binder.bindTo(meterRegistry);
+        return binder;
+    }
+}
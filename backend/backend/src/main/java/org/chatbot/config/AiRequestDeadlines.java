@@ -0,0 +1,149 @@
+package org.chatbot.config;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Total deadline for AI requests, reading a streamed response included
+ * The request factory hands every request to {@link #start} when it is
+ * created; the deadline task holds it until the response is closed, then
+ * it is cancelled. Not a bean on purpose: a ScheduledExecutorService bean
+ * would replace Spring Boot's scheduler for @Scheduled methods
+ */
+public class AiRequestDeadlines implements ClientHttpRequestInterceptor,
+                                           AutoCloseable {
+
+    //created by the request factory inside execution.execute, same thread
+    private final ThreadLocal<Deadline> started = new ThreadLocal<>();
+
+    private final ScheduledThreadPoolExecutor scheduler =
+      new ScheduledThreadPoolExecutor(1, runnable -> {
+          Thread thread = new Thread(runnable, "ai-http-deadline");
+          thread.setDaemon(true);
+          return thread;
+      });
+
+    private final long totalTimeoutMs;
+
+    public AiRequestDeadlines(long totalTimeoutMs) {
+        this.totalTimeoutMs = totalTimeoutMs;
+        //a finished request must not wait in the queue until its deadline
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    private record Deadline(HttpUriRequestBase request,
+                            ScheduledFuture<?> future) {
+
+        void abort() {
+            future.cancel(false);
+            request.cancel();
+        }
+    }
+
+    /**
+     * Start the deadline of a request that is about to be sent
+     */
+    public void start(HttpUriRequestBase request) {
+        ScheduledFuture<?> future = scheduler.schedule(request::cancel,
+                                                       totalTimeoutMs,
+                                                       TimeUnit.MILLISECONDS);
+        started.set(new Deadline(request, future));
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution)
+      throws IOException {
+        started.remove();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            Deadline deadline = started.get();
+            return deadline == null ? response :
+              new DeadlineResponse(response, deadline);
+        } catch (IOException | RuntimeException e) {
+            Deadline deadline = started.get();
+            if (deadline != null) {
+                deadline.future()
+                        .cancel(false);
+            }
+            throw e;
+        } finally {
+            started.remove();
+        }
+    }
+
+    /**
+     * Drop the connection of a response that will not be read to the end
+     * (the client of a stream went away), closing it would drain the rest
+     */
+    public static void abort(ClientHttpResponse response) {
+        if (response instanceof DeadlineResponse tracked) {
+            tracked.deadline.abort();
+        }
+    }
+
+    /**
+     * @return deadlines still pending
+     */
+    int pending() {
+        return scheduler.getQueue()
+                        .size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class DeadlineResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Deadline deadline;
+
+        private DeadlineResponse(ClientHttpResponse delegate,
+                                 Deadline deadline) {
+            this.delegate = delegate;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                deadline.future()
+                        .cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.chatbot.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for work that should not run on the servlet (Tomcat) threads
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Value("${chat.stream.pool-size:16}")
+    private int streamPoolSize;
+
+    @Value("${chat.stream.queue-capacity:100}")
+    private int streamQueueCapacity;
+
+    // same switch Spring Boot uses for Tomcat, @Scheduled and @Async
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${chat.stream.virtual.max-concurrent:2000}")
+    private int streamMaxConcurrent;
+
+    @Value("${account.deletion.pool-size:2}")
+    private int deletionPoolSize;
+
+    /**
+     * Executor that runs streaming chat completions
+     * the request thread hands the SseEmitter over and returns right away,
+     * the tokens are then pushed to the client from this pool.
+     * With virtual threads every stream gets its own thread, a stream
+     * blocked on the AI then costs no OS thread
+     * @return executor for streaming chat responses
+     */
+    @Bean(name = "chatStreamExecutor")
+    public AsyncTaskExecutor chatStreamExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor =
+              new SimpleAsyncTaskExecutor("chat-stream-");
+            executor.setVirtualThreads(true);
+            //over the limit: rejected (503), like a full pool
+            executor.setConcurrencyLimit(streamMaxConcurrent);
+            executor.setRejectTasksWhenLimitReached(true);
+            executor.setTaskTerminationTimeout(30_000);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(streamPoolSize);
+        executor.setMaxPoolSize(streamPoolSize);
+        executor.setQueueCapacity(streamQueueCapacity);
+        executor.setThreadNamePrefix("chat-stream-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Executor that deletes accounts in the background
+     * A few threads: each deletion runs many short transactions, more at
+     * once would only compete for the database
+     * @return executor for account deletions
+     */
+    @Bean(name = "accountDeletionExecutor")
+    public ThreadPoolTaskExecutor accountDeletionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(deletionPoolSize);
+        executor.setMaxPoolSize(deletionPoolSize);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("account-deletion-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Executor that runs the cohort analytics job
+     * The job can take minutes, on the @Scheduled threads it would hold up
+     * revocation refresh, health probes and spool replay meanwhile. One
+     * thread and no queue: a run started while one is going is rejected
+     * @return executor for cohort analytics runs
+     */
+    @Bean(name = "cohortAnalyticsExecutor")
+    public ThreadPoolTaskExecutor cohortAnalyticsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("cohort-analytics-");
+        return executor;
+    }
+}
@@ -2,6 +2,8 @@ package org.chatbot.config;
 
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
@@ -19,6 +21,9 @@ import java.util.Map;
  */
 public class DotenvConfig implements ApplicationContextInitializer<ConfigurableApplicationContext> {
 
+    private static final Logger log =
+      LoggerFactory.getLogger(DotenvConfig.class);
+
     @Override
     public void initialize(ConfigurableApplicationContext applicationContext) {
         try {
@@ -78,10 +83,10 @@ public class DotenvConfig implements ApplicationContextInitializer<ConfigurableA
             environment.getPropertySources()
                        .addFirst(new MapPropertySource("dotenvProperties", envMap));
 
-            System.out.println(" .env file loaded successfully!");
+            log.info(".env file loaded successfully!");
         } catch (Exception e) {
-            System.err.println("Could not load .env file: " + e.getMessage());
-            System.err.println("Using environment variables or defaults instead.");
+            log.warn("Could not load .env file: {}. Using environment " +
+                       "variables or defaults instead.", e.getMessage());
         }
     }
 
@@ -1,8 +1,12 @@
 package org.chatbot.config;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import org.chatbot.security.JwtAuthenticationFilter;
+import org.chatbot.security.OffloadedPasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -31,13 +35,38 @@ public class SecurityConfig {
       @Autowired
       private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+      // share of the cores that may hash passwords at the same time
+      @Value("${auth.hashing.core-fraction:0.25}")
+      private double hashingCoreFraction;
+
+      @Value("${auth.hashing.queue-capacity:32}")
+      private int hashingQueueCapacity;
+
+      @Value("${auth.hashing.max-wait-ms:5000}")
+      private long hashingMaxWaitMs;
+
+      @Value("${auth.hashing.retry-after-seconds:2}")
+      private long hashingRetryAfterSeconds;
+
+      // actuator port, kept off the public network
+      @Value("${management.server.port:-1}")
+      private int managementPort;
+
       /**
        * Password encoder for hashing passwords
-       * uses BCrypt
+       * uses BCrypt, on a small dedicated pool so logins can't take every core
        */
       @Bean
-      public PasswordEncoder passwordEncoder() {
-            return new BCryptPasswordEncoder();
+      public PasswordEncoder passwordEncoder( MeterRegistry meterRegistry ) {
+            int threads = Math.max( 1, (int) ( Runtime.getRuntime().availableProcessors() * hashingCoreFraction ) );
+            return new OffloadedPasswordEncoder(
+                    new BCryptPasswordEncoder(),
+                    threads,
+                    hashingQueueCapacity,
+                    hashingMaxWaitMs,
+                    hashingRetryAfterSeconds,
+                    meterRegistry
+            );
       }
 
       /**
@@ -60,6 +89,11 @@ public class SecurityConfig {
                     .cors( cors -> { } )
                     //Configure authorization
                     .authorizeHttpRequests( auth -> auth
+                            //async dispatch of a streamed (SSE) response was
+                            // already authorized on the original request
+                            .dispatcherTypeMatchers( DispatcherType.ASYNC )
+                            .permitAll()
+
                             //public endpoints (no authentication required)
                             .requestMatchers( "/api/auth/**" )
                             .permitAll()
@@ -67,6 +101,20 @@ public class SecurityConfig {
                             .requestMatchers( "/api/health" )
                             .permitAll()
 
+                            //deletion status, the account's token is revoked by then
+                            .requestMatchers( "/api/account/deletion/*" )
+                            .permitAll()
+
+                            //actuator (metrics scrape) only on its own port, the
+                            // public port does not serve it at all
+                            .requestMatchers( request -> managementPort > 0
+                                    && request.getLocalPort() == managementPort )
+                            .permitAll()
+
+                            //stub AI server, only mapped when ai.stub.server.enabled
+                            .requestMatchers( "/stub/v1/**" )
+                            .permitAll()
+
                             //All other endpoints require authentication
                             .anyRequest()
                             .authenticated()
@@ -0,0 +1,145 @@
+package org.chatbot.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that pin their carrier thread
+ * A virtual thread that blocks inside a synchronized block (or a native
+ * frame) keeps its OS thread busy, with enough of them the whole carrier
+ * pool stalls. JFR emits {@code jdk.VirtualThreadPinned} for every pin
+ * longer than the threshold; each one is timed per call site and the
+ * stack is logged the first time a site shows up
+ */
+@Component
+@ConditionalOnProperty(name = {"spring.threads.virtual.enabled",
+                               "virtual-threads.pinning.enabled"},
+                       havingValue = "true")
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    //keeps the site tag bounded, later sites are counted as "other"
+    private static final int MAX_SITES = 100;
+
+    private static final int LOGGED_FRAMES = 12;
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+
+    // one timer per call site, registered the first time it pins
+    private final Map<String, Timer> sites = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${virtual-threads.pinning.threshold-ms:20}")
+                                       long thresholdMs) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = Duration.ofMillis(thresholdMs);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = frames(event);
+        String site = site(frames);
+        Timer timer = sites.get(site);
+        //events are delivered on the stream's one thread, no race here
+        boolean first = timer == null && sites.size() < MAX_SITES;
+        if (first) {
+            timer = timer(site);
+            sites.put(site, timer);
+        } else if (timer == null) {
+            timer = sites.computeIfAbsent("other", this::timer);
+        }
+        timer.record(event.getDuration());
+
+        if (first) {
+            StringBuilder trace = new StringBuilder();
+            frames.stream()
+                  .limit(LOGGED_FRAMES)
+                  .forEach(frame -> trace.append("\n\tat ")
+                                         .append(describe(frame)));
+            log.warn("Virtual thread pinned for {} ms at {}{}",
+                     event.getDuration()
+                          .toMillis(), site, trace);
+        }
+    }
+
+    private Timer timer(String site) {
+        return Timer.builder("jvm.threads.virtual.pinned")
+                    .tag("site", site)
+                    .description(
+                      "Time virtual threads kept their carrier pinned")
+                    .register(meterRegistry);
+    }
+
+    private static List<RecordedFrame> frames(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        return stackTrace == null ? List.of() : stackTrace.getFrames();
+    }
+
+    /**
+     * Our own frame closest to the pin, else the top frame
+     */
+    private static String site(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            if (frame.isJavaFrame() && frame.getMethod()
+                                            .getType()
+                                            .getName()
+                                            .startsWith("org.chatbot.")) {
+                return describe(frame);
+            }
+        }
+        return frames.isEmpty() ? "unknown" : describe(frames.get(0));
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod()
+                    .getType()
+                    .getName() + "." + frame.getMethod()
+                                            .getName() + ":" +
+          frame.getLineNumber();
+    }
+
+    @Override
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT)
+              .withThreshold(threshold)
+              .withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Watching for pinned virtual threads (over {} ms)",
+                 threshold.toMillis());
+    }
+
+    @Override
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+}
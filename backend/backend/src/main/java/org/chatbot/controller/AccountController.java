@@ -0,0 +1,158 @@
+package org.chatbot.controller;
+
+import org.chatbot.service.AccountDeletionService;
+import org.chatbot.service.AuthService;
+import org.chatbot.service.DataExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * this controller handles requests about the account as a whole
+ * Provides the export of everything the user owns and deleting the account
+ */
+@RestController
+@RequestMapping("/api/account")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AccountController {
+
+      private static final Logger log = LoggerFactory.getLogger( AccountController.class );
+
+      @Autowired
+      private DataExportService dataExportService;
+
+      @Autowired
+      private AccountDeletionService accountDeletionService;
+
+      @Autowired
+      private AuthService authService;
+
+      /**
+       * GET endpoint to download all of the user's data
+       * URL: /api/account/export?format=ndjson (or zip)
+       * NDJSON is gzipped when the client accepts it
+       */
+      @GetMapping("/export")
+      public ResponseEntity<StreamingResponseBody> export(
+              @RequestHeader("Authorization") String token,
+              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+              @RequestParam(defaultValue = "ndjson") String format ) {
+            DataExportService.Format exportFormat;
+            try {
+                  exportFormat = DataExportService.Format.valueOf( format.toUpperCase( Locale.ROOT ) );
+            } catch ( IllegalArgumentException e ) {
+                  return error( HttpStatus.BAD_REQUEST, "Format must be ndjson or zip" );
+            }
+
+            Long userId;
+            try {
+                  userId = authService.getUserIdFromToken( token );
+            } catch ( Exception e ) {
+                  log.error( "Error starting export", e );
+                  return error( HttpStatus.INTERNAL_SERVER_ERROR, "Failed to export data" );
+            }
+
+            Optional<DataExportService.Slot> slot = dataExportService.reserve();
+            if ( slot.isEmpty() ) {
+                  return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+                          .header( HttpHeaders.RETRY_AFTER, "30" )
+                          .contentType( MediaType.APPLICATION_JSON )
+                          .body( errorBody( "Too many exports running, please try again shortly" ) );
+            }
+
+            boolean zip = exportFormat == DataExportService.Format.ZIP;
+            // zip entries are compressed already
+            boolean gzip = !zip && acceptEncoding != null && acceptEncoding.contains( "gzip" );
+            String filename = "export-" + LocalDate.now() + ( zip ? ".zip" : ".ndjson" );
+
+            StreamingResponseBody body = out -> {
+                  try ( DataExportService.Slot reserved = slot.get() ) {
+                        if ( gzip ) {
+                              // sync flush: every chunk reaches the client right away
+                              GZIPOutputStream gzipOut = new GZIPOutputStream( out, 8192, true );
+                              dataExportService.export( userId, exportFormat, gzipOut );
+                              gzipOut.finish();
+                        } else {
+                              dataExportService.export( userId, exportFormat, out );
+                        }
+                  } catch ( Exception e ) {
+                        log.error( "Export for user {} failed", userId, e );
+                        throw e;
+                  }
+            };
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .header( HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"" )
+                    .contentType( zip ? MediaType.parseMediaType( "application/zip" )
+                                      : MediaType.parseMediaType( "application/x-ndjson" ) );
+            if ( gzip ) {
+                  response.header( HttpHeaders.CONTENT_ENCODING, "gzip" )
+                          .header( HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING );
+            }
+            return response.body( body );
+      }
+
+      /**
+       * DELETE endpoint to delete the account and everything it owns
+       * URL: /api/account
+       * The token stops working at once, the data is deleted in the
+       * background: 202 with the status URL in Location
+       */
+      @DeleteMapping
+      public ResponseEntity<?> deleteAccount( @RequestHeader("Authorization") String token ) {
+            try {
+                  Long userId = authService.getUserIdFromToken( token );
+                  AccountDeletionService.Status status = accountDeletionService.delete( userId );
+                  return ResponseEntity.accepted()
+                          .location( URI.create( "/api/account/deletion/" + status.id() ) )
+                          .body( status );
+            } catch ( Exception e ) {
+                  log.error( "Error deleting account", e );
+                  return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
+                          .body( Map.of( "error", "Failed to delete account" ) );
+            }
+      }
+
+      /**
+       * GET endpoint to follow an account deletion
+       * URL: /api/account/deletion/{id}
+       * Public, the account's token is revoked by then; the id is a random
+       * UUID only the caller of DELETE knows
+       */
+      @GetMapping("/deletion/{id}")
+      public ResponseEntity<?> getDeletionStatus( @PathVariable String id ) {
+            return accountDeletionService.getStatus( id )
+                    .<ResponseEntity<?>>map( ResponseEntity::ok )
+                    .orElseGet( () -> ResponseEntity.status( HttpStatus.NOT_FOUND )
+                            .body( Map.of( "error", "Unknown or expired deletion" ) ) );
+      }
+
+      /**
+       * {"error": message} as the (streamed) body, the return type has to be
+       * StreamingResponseBody for Spring to stream the export
+       */
+      private static ResponseEntity<StreamingResponseBody> error( HttpStatus status, String message ) {
+            return ResponseEntity.status( status )
+                    .contentType( MediaType.APPLICATION_JSON )
+                    .body( errorBody( message ) );
+      }
+
+      private static StreamingResponseBody errorBody( String message ) {
+            byte[] json = ( "{\"error\":\"" + message + "\"}" ).getBytes( StandardCharsets.UTF_8 );
+            return out -> out.write( json );
+      }
+}
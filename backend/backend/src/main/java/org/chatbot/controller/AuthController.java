@@ -1,10 +1,15 @@
 package org.chatbot.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.chatbot.dto.AuthResponse;
 import org.chatbot.dto.LoginRequest;
 import org.chatbot.dto.RegisterRequest;
+import org.chatbot.security.AuthThrottledException;
 import org.chatbot.service.AuthService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +26,8 @@ import java.util.Map;
 @CrossOrigin(origins = "http://localhost:3000")
 public class AuthController {
 
+      private static final Logger log = LoggerFactory.getLogger( AuthController.class );
+
       @Autowired
       private AuthService authService;
 
@@ -30,22 +37,24 @@ public class AuthController {
        * Body: { "name": "...", "email": "...", "password": "..." }
        */
       @PostMapping("/register")
-      public ResponseEntity<?> register( @RequestBody RegisterRequest request ) {
+      public ResponseEntity<?> register( @RequestBody RegisterRequest request, HttpServletRequest httpRequest ) {
             try {
-                  System.out.println( " Registration request for email: " + request.getEmail() );
+                  log.debug( "Registration request" );
 
-                  AuthResponse response = authService.register( request );
+                  AuthResponse response = authService.register( request, httpRequest.getRemoteAddr() );
 
                   return ResponseEntity.status( HttpStatus.CREATED )
                           .body( response );
+            } catch ( AuthThrottledException e ) {
+                  log.warn( "Registration throttled: {}", e.getMessage() );
+                  return tooManyAttempts( e );
             } catch ( IllegalArgumentException e ) {
-                  System.err.println( " Registration filed: " + e.getMessage() );
+                  log.info( "Registration failed: {}", e.getMessage() );
                   return ResponseEntity.badRequest()
                           .body( Map.of( "error", e.getMessage() ) );
 
             } catch ( Exception e ) {
-                  System.err.println( " Registration error: " + e.getMessage() );
-                  e.printStackTrace();
+                  log.error( "Registration error", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Registration failed. Please try again." ) );
             }
@@ -57,20 +66,22 @@ public class AuthController {
        * Body: { "email": "...", "password": "..." }
        */
       @PostMapping("/login")
-      public ResponseEntity<?> login( @RequestBody LoginRequest request ) {
+      public ResponseEntity<?> login( @RequestBody LoginRequest request, HttpServletRequest httpRequest ) {
             try {
-                  System.out.println( " Login request for email: " + request.getEmail() );
+                  log.debug( "Login request" );
 
-                  AuthResponse response = authService.login( request );
+                  AuthResponse response = authService.login( request, httpRequest.getRemoteAddr() );
 
                   return ResponseEntity.ok( response );
+            } catch ( AuthThrottledException e ) {
+                  log.warn( "Login throttled: {}", e.getMessage() );
+                  return tooManyAttempts( e );
             } catch ( IllegalArgumentException e ) {
-                  System.err.println( "❌  Login failed: " + e.getMessage() );
+                  log.info( "Login failed: {}", e.getMessage() );
                   return ResponseEntity.status( HttpStatus.UNAUTHORIZED )
                           .body( Map.of( "error", e.getMessage() ) );
             } catch ( Exception e ) {
-                  System.err.println( "❌  Login error: " + e.getMessage() );
-                  e.printStackTrace();
+                  log.error( "Login error", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Login failed. Please try again." ) );
             }
@@ -102,4 +113,13 @@ public class AuthController {
                           .body( Map.of( "valid", false ) );
             }
       }
+
+      /**
+       * 429 with a Retry-After header, so clients back off instead of retrying at once
+       */
+      private ResponseEntity<?> tooManyAttempts( AuthThrottledException e ) {
+            return ResponseEntity.status( HttpStatus.TOO_MANY_REQUESTS )
+                    .header( HttpHeaders.RETRY_AFTER, String.valueOf( e.getRetryAfterSeconds() ) )
+                    .body( Map.of( "error", e.getMessage() ) );
+      }
 }
@@ -1,14 +1,31 @@
 package org.chatbot.controller;
 
-import org.chatbot.model.Message;
+import org.chatbot.AiService.InferenceQueueFullException;
+import org.chatbot.AiService.InferenceScheduler;
+import org.chatbot.dto.MessagePage;
 import org.chatbot.service.AuthService;
 import org.chatbot.service.ChatService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controller for chat endpoints
@@ -21,6 +38,8 @@ import java.util.Map;
 //allow request from frontend
 public class ChatController {
 
+      private static final Logger log = LoggerFactory.getLogger( ChatController.class );
+
       // Inject the ChatService to handle business logic
       @Autowired
       private ChatService chatService;
@@ -28,6 +47,21 @@ public class ChatController {
       @Autowired
       private AuthService authService;
 
+      @Autowired
+      private InferenceScheduler inferenceScheduler;
+
+      @Autowired
+      @Qualifier("chatStreamExecutor")
+      private TaskExecutor chatStreamExecutor;
+
+      @Autowired
+      private TaskScheduler taskScheduler;
+
+      @Value("${chat.stream.timeout-ms:180000}")
+      private long streamTimeoutMs;
+
+      private static final long STREAM_TIMEOUT_GRACE_MS = 5000;
+
       /**
        * POST endpoint to send a msg and get AI response
        * URL: "/api/chat"
@@ -54,7 +88,7 @@ public class ChatController {
 
                   //Get user ID from JWT Token
                   Long userId = authService.getUserIdFromToken( token );
-                  System.out.println( " Chat message from user ID: " + userId );
+                  log.debug( "Chat message from user ID: {}", userId );
 
 
                   // Process message
@@ -68,32 +102,172 @@ public class ChatController {
                                   .toString()
                   ) );
 
+            } catch ( InferenceQueueFullException e ) {
+                  return tooBusy( e );
             } catch ( Exception e ) {
                   // log error and return error response
-                  System.err.println( "Error in sendMessage: " + e.getMessage() );
-                  e.printStackTrace();
+                  log.error( "Error in sendMessage", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to process message: " + e.getMessage() ) );
             }
       }
 
       /**
-       * Get chat history for authenticated user
+       * POST endpoint to send a msg and stream the AI response back
+       * URL: "/api/chat/stream"
+       * Requires authentication
+       * Receives: { "message": "user's message text" }
+       * Returns: text/event-stream with events
+       * "token" (data: { "text": next piece of the response }),
+       * "done" (data: { "text": full response, "timestamp": "ISO date" }),
+       * "error" (data: { "error": "..." })
+       */
+      @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+      public ResponseEntity<?> streamMessage(
+              @RequestBody Map<String, String> payload,
+              @RequestHeader("Authorization") String token ) {
+            String userMessage = payload.get( "message" );
+
+            //validate that msg is not empty
+            if ( userMessage == null || userMessage.trim()
+                    .isEmpty() ) {
+                  return ResponseEntity.badRequest()
+                          .contentType( MediaType.APPLICATION_JSON )
+                          .body( Map.of( "error",
+                                  "Message cannot be empty" ) );
+            }
+
+            //Get user ID from JWT Token
+            Long userId = authService.getUserIdFromToken( token );
+            log.debug( "Streaming chat message from user ID: {}", userId );
+
+            // fail fast while nothing has been streamed yet
+            try {
+                  inferenceScheduler.checkAdmission();
+            } catch ( InferenceQueueFullException e ) {
+                  return tooBusy( e );
+            }
+
+            // the emitter's own timeout is only a backstop: once it fires
+            // nothing can be sent anymore, so the deadline below ends it first
+            SseEmitter emitter = new SseEmitter( streamTimeoutMs + STREAM_TIMEOUT_GRACE_MS );
+            // set once the client is gone or the stream timed out, the next
+            // token then stops the generation and frees the inference slot
+            AtomicBoolean cancelled = new AtomicBoolean();
+            ScheduledFuture<?> deadline = taskScheduler.schedule( () -> {
+                  cancelled.set( true );
+                  sendError( emitter, Map.of( "error", "The response took too long, please try again" ) );
+            }, Instant.now()
+                    .plusMillis( streamTimeoutMs ) );
+            emitter.onCompletion( () -> {
+                  cancelled.set( true );
+                  deadline.cancel( false );
+            } );
+            emitter.onError( e -> cancelled.set( true ) );
+            emitter.onTimeout( () -> cancelled.set( true ) );
+            try {
+                  // the servlet thread is released here, tokens are sent from the pool
+                  chatStreamExecutor.execute( () -> {
+                        try {
+                              String aiResponse = chatService.streamMessage( userMessage, userId,
+                                      tokenText -> {
+                                            if ( cancelled.get() ) {
+                                                  throw new CancellationException( "Stream cancelled" );
+                                            }
+                                            sendEvent( emitter, "token", Map.of( "text", tokenText ) );
+                                      } );
+
+                              sendEvent( emitter, "done", Map.of(
+                                      "text", aiResponse,
+                                      "timestamp", java.time.LocalDateTime.now()
+                                              .toString()
+                              ) );
+                              emitter.complete();
+                        } catch ( CancellationException e ) {
+                              log.debug( "Stream for user ID {} stopped: {}", userId, e.getMessage() );
+                              emitter.complete();
+                        } catch ( InferenceQueueFullException e ) {
+                              sendError( emitter, Map.of( "error", e.getMessage(),
+                                      "retryAfter", e.getRetryAfterSeconds() ) );
+                        } catch ( Exception e ) {
+                              log.warn( "Error in streamMessage: {}", e.getMessage() );
+                              sendError( emitter, Map.of( "error", "Failed to process message" ) );
+                        }
+                  } );
+            } catch ( TaskRejectedException e ) {
+                  deadline.cancel( false );
+                  log.warn( "Streaming pool is full: {}", e.getMessage() );
+                  return ResponseEntity.status( 503 )
+                          .contentType( MediaType.APPLICATION_JSON )
+                          .body( Map.of( "error", "Too many active chats, please try again" ) );
+            }
+
+            return ResponseEntity.ok( emitter );
+      }
+
+      /**
+       * 429 response telling the client when to retry
+       */
+      private ResponseEntity<?> tooBusy( InferenceQueueFullException e ) {
+            return ResponseEntity.status( HttpStatus.TOO_MANY_REQUESTS )
+                    .header( HttpHeaders.RETRY_AFTER,
+                            String.valueOf( e.getRetryAfterSeconds() ) )
+                    .contentType( MediaType.APPLICATION_JSON )
+                    .body( Map.of( "error", e.getMessage() ) );
+      }
+
+      /**
+       * Send one SSE event, a disconnected client cancels the stream
+       */
+      private void sendEvent( SseEmitter emitter, String name, Object data ) {
+            try {
+                  emitter.send( SseEmitter.event()
+                          .name( name )
+                          .data( data ) );
+            } catch ( IOException | IllegalStateException e ) {
+                  throw new CancellationException( "Client disconnected" );
+            }
+      }
+
+      /**
+       * Send an "error" event and end the stream
+       */
+      private void sendError( SseEmitter emitter, Map<String, ?> data ) {
+            try {
+                  emitter.send( SseEmitter.event()
+                          .name( "error" )
+                          .data( data ) );
+            } catch ( IOException | IllegalStateException ignored ) {
+                  // client already gone
+            }
+            emitter.complete();
+      }
+
+      /**
+       * Get chat history for authenticated user, one page at a time
+       * URL: "/api/chat/history?before=...&after=...&limit=..."
+       * without a cursor the latest messages are returned
        */
       @GetMapping("/history")
-      public ResponseEntity<?> getChatHistory( @RequestHeader("Authorization") String token ) {
+      public ResponseEntity<?> getChatHistory( @RequestHeader("Authorization") String token,
+                                               @RequestParam(required = false) String before,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit ) {
             try {
                   // Get user ID from JWT token
                   Long userId = authService.getUserIdFromToken( token );
-                  System.out.println( " Fetching chat history for user ID: " + userId );
+                  log.debug( "Fetching chat history for user ID: {}", userId );
 
-                  // fetch chat history from database
-                  List<Message> history = chatService.getChatHistory( userId );
+                  // fetch one page of chat history from database
+                  MessagePage page = chatService.getChatHistoryPage( userId, before, after, limit );
 
-                  return ResponseEntity.ok( history );
+                  return ResponseEntity.ok( page );
 
+            } catch ( IllegalArgumentException e ) {
+                  return ResponseEntity.badRequest()
+                          .body( Map.of( "error", e.getMessage() ) );
             } catch ( Exception e ) {
-                  System.err.println( " Error fetching chat history: " + e.getMessage() );
+                  log.error( "Error fetching chat history", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to fetch chat history" ) );
             }
@@ -0,0 +1,35 @@
+package org.chatbot.controller;
+
+import org.chatbot.service.CohortAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * this actuator endpoint serves population-level analytics computed by the
+ * batch jobs. Only on the management port (management.server.port): the
+ * daily counts of a small cohort say too much about single users to be
+ * readable by every logged in user
+ */
+@Component
+@Endpoint(id = "cohort")
+public class CohortAnalyticsEndpoint {
+
+      @Autowired
+      private CohortAnalyticsService cohortAnalyticsService;
+
+      /**
+       * GET endpoint for the newest cohort mood statistics: daily average
+       * and distribution, distribution shift, share of users trending down
+       * URL: /actuator/cohort (management port)
+       */
+      @ReadOperation
+      public Object getCohortReport() {
+            return cohortAnalyticsService.getLatestReport()
+                    .map( Object.class::cast )
+                    .orElseGet( () -> Map.of( "message", "No cohort analytics yet" ) );
+      }
+}
@@ -1,6 +1,11 @@
 package org.chatbot.controller;
 
-import org.chatbot.AiService.GPT4ALLApiService;
+import org.chatbot.AiService.AiEndpointBalancer;
+import org.chatbot.AiService.AiHealthMonitor;
+import org.chatbot.AiService.InferenceBackend;
+import org.chatbot.AiService.InferenceScheduler;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -8,7 +13,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 
 @RestController
@@ -17,17 +22,61 @@ import java.util.Map;
 public class HealthController {
 
     @Autowired
-    private GPT4ALLApiService gpT4ALLApiService;
+    private InferenceBackend inferenceBackend;
 
+    @Autowired
+    private AiHealthMonitor aiHealthMonitor;
+
+    @Autowired
+    private PoolingHttpClientConnectionManager aiConnectionManager;
+
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
+
+    // only there for the GPT4ALL_API provider
+    @Autowired(required = false)
+    private AiEndpointBalancer endpointBalancer;
+
+    /**
+     * Reports the cached AI service state (no request is sent to the AI)
+     */
     @GetMapping
     public ResponseEntity<?> healthCheck() {
-        boolean isAvailable = gpT4ALLApiService.isApiAvailable();
-        String configInfo = gpT4ALLApiService.getConfigInfo();
-        List<String> models = gpT4ALLApiService.getAvailableModels();
+        AiHealthMonitor.Status aiStatus = aiHealthMonitor.getStatus();
+        boolean isAvailable = aiStatus.available();
+        String configInfo = inferenceBackend.getConfigInfo();
 
-        return ResponseEntity.ok(
+        Map<String, Object> health = new HashMap<>(
           Map.of("status", isAvailable ? "healthy" : "unavailable",
-                 "aiService", "GPT4ALL Local API", "config", configInfo,
-                 "availableModels", models, "ready", isAvailable));
+                 "aiService", inferenceBackend.getName(), "config", configInfo,
+                 "availableModels", aiStatus.models(), "ready", isAvailable));
+
+        // connection pool to the AI API
+        PoolStats pool = aiConnectionManager.getTotalStats();
+        health.put("httpPool",
+                   Map.of("leased", pool.getLeased(), "pending",
+                          pool.getPending(), "idle", pool.getAvailable(),
+                          "max", pool.getMax()));
+
+        // inference queue in front of the AI
+        health.put("inferenceQueue",
+                   Map.of("queued", inferenceScheduler.getQueued(), "running",
+                          inferenceScheduler.getRunning(), "maxConcurrent",
+                          inferenceScheduler.getMaxConcurrent(), "meanWaitMs",
+                          inferenceScheduler.getMeanWaitMs()));
+
+        // every AI server, with its load and passive health
+        if (endpointBalancer != null) {
+            health.put("endpoints", endpointBalancer.getStatus());
+        }
+
+        if (aiStatus.checkedAt() != null) {
+            health.put("checkedAt", aiStatus.checkedAt()
+                                            .toString());
+        }
+        if (aiStatus.lastError() != null) {
+            health.put("lastError", aiStatus.lastError());
+        }
+        return ResponseEntity.ok(health);
     }
 }
@@ -4,6 +4,8 @@ package org.chatbot.controller;
 import org.chatbot.model.JournalEntry;
 import org.chatbot.service.AuthService;
 import org.chatbot.service.JournalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +23,8 @@ import java.util.Map;
 @CrossOrigin(origins = "http://localhost:3000")
 public class JournalController {
 
+      private static final Logger log = LoggerFactory.getLogger( JournalController.class );
+
       @Autowired
       private JournalService journalService;
 
@@ -49,7 +53,7 @@ public class JournalController {
 
 
                   Long userId = authService.getUserIdFromToken( token );
-                  System.out.println( " Saving journal entry for user ID: " + userId );
+                  log.debug( "Saving journal entry for user ID: {}", userId );
 
                   //save the entry
                   JournalEntry entry = journalService.saveEntry( text, userId );
@@ -57,7 +61,7 @@ public class JournalController {
                   return ResponseEntity.ok( entry );
 
             } catch ( Exception e ) {
-                  System.err.println( "Error saving journal entry: " + e.getMessage() );
+                  log.error( "Error saving journal entry", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to save journal entry" ) );
             }
@@ -72,14 +76,14 @@ public class JournalController {
             try {
 
                   Long userId = authService.getUserIdFromToken( token );
-                  System.out.println( " Fetching journal entries for user ID: " + userId );
+                  log.debug( "Fetching journal entries for user ID: {}", userId );
 
                   List<JournalEntry> entries = journalService.getUserEntries( userId );
 
                   return ResponseEntity.ok( entries );
 
             } catch ( Exception e ) {
-                  System.err.println( "Error fetching Journal entries: " + e.getMessage() );
+                  log.error( "Error fetching journal entries", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to fetch journal entries" ) );
             }
@@ -108,7 +112,7 @@ public class JournalController {
                           .body( Map.of( "error", e.getMessage() ) );
 
             } catch ( Exception e ) {
-                  System.err.println( "Error updating journal entry: " + e.getMessage() );
+                  log.error( "Error updating journal entry", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to update journal entry" ) );
             }
@@ -133,7 +137,7 @@ public class JournalController {
                   return ResponseEntity.badRequest()
                           .body( Map.of( "error", e.getMessage() ) );
             } catch ( Exception e ) {
-                  System.err.println( "Error deleting journal entry: " + e.getMessage() );
+                  log.error( "Error deleting journal entry", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to delete journal entry" ) );
             }
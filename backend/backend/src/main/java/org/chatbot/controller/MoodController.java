@@ -2,7 +2,10 @@ package org.chatbot.controller;
 
 import org.chatbot.model.MoodLog;
 import org.chatbot.service.AuthService;
+import org.chatbot.service.MoodAnalytics;
 import org.chatbot.service.MoodService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +22,8 @@ import java.util.Map;
 @CrossOrigin(origins = "http://localhost:3000")
 public class MoodController {
 
+      private static final Logger log = LoggerFactory.getLogger( MoodController.class );
+
       @Autowired
       private MoodService moodService;
 
@@ -56,7 +61,7 @@ public class MoodController {
 
                   // Get user ID from JWT Token
                   Long userId = authService.getUserIdFromToken( token );
-                  System.out.println( " Logging mood for user ID: " + userId );
+                  log.debug( "Logging mood for user ID: {}", userId );
 
                   //save mood log with notes
                   MoodLog moodLog = moodService.logMood( mood, userId, notes );
@@ -64,8 +69,7 @@ public class MoodController {
                   return ResponseEntity.ok( moodLog );
 
             } catch ( Exception e ) {
-                  System.err.println( "Error logging mood: " + e.getMessage() );
-                  e.printStackTrace();
+                  log.error( "Error logging mood", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to log mood: " + e.getMessage() ) );
             }
@@ -79,39 +83,70 @@ public class MoodController {
       public ResponseEntity<?> getUserMoodLogs( @RequestHeader("Authorization") String token ) {
             try {
                   Long userId = authService.getUserIdFromToken( token );
-                  System.out.println( " Fetching mood logs for user ID: " + userId );
+                  log.debug( "Fetching mood logs for user ID: {}", userId );
 
                   List<MoodLog> moodLogs = moodService.getUserMoodLogs( userId );
 
                   return ResponseEntity.ok( moodLogs );
 
             } catch ( Exception e ) {
-                  System.err.println( "Error fetching mood logs: " + e.getMessage() );
+                  log.error( "Error fetching mood logs", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to fetch mood logs" ) );
             }
       }
 
       /**
-       * GET endpoint to fetch mood trends (last 30 days)
-       * URL: /api/mood/trends
+       * GET endpoint to fetch mood trends (last 7, 30, 90 or 365 days)
+       * URL: /api/mood/trends?days=30
        */
       @GetMapping("/trends")
-      public ResponseEntity<?> getMoodTrends( @RequestHeader("Authorization") String token ) {
+      public ResponseEntity<?> getMoodTrends(
+              @RequestHeader("Authorization") String token,
+              @RequestParam(defaultValue = "30") int days ) {
             try {
                   Long userId = authService.getUserIdFromToken( token );
 
-                  Map<String, Object> trends = moodService.getMoodTrends( userId );
+                  Map<String, Object> trends = moodService.getMoodTrends( userId, days );
 
                   return ResponseEntity.ok( trends );
 
+            } catch ( IllegalArgumentException e ) {
+                  return ResponseEntity.badRequest()
+                          .body( Map.of( "error", e.getMessage() ) );
             } catch ( Exception e ) {
-                  System.err.println( "Error fetching mood trends: " + e.getMessage() );
+                  log.error( "Error fetching mood trends", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to fetch mood trends" ) );
             }
       }
 
+      /**
+       * GET endpoint for mood analytics over the whole history: moving
+       * average, streaks, volatility, weekday averages and change point
+       * URL: /api/mood/analytics?window=7
+       */
+      @GetMapping("/analytics")
+      public ResponseEntity<?> getMoodAnalytics(
+              @RequestHeader("Authorization") String token,
+              @RequestParam(defaultValue = "7") int window ) {
+            try {
+                  Long userId = authService.getUserIdFromToken( token );
+
+                  MoodAnalytics analytics = moodService.getMoodAnalytics( userId, window );
+
+                  return ResponseEntity.ok( analytics );
+
+            } catch ( IllegalArgumentException e ) {
+                  return ResponseEntity.badRequest()
+                          .body( Map.of( "error", e.getMessage() ) );
+            } catch ( Exception e ) {
+                  log.error( "Error fetching mood analytics", e );
+                  return ResponseEntity.internalServerError()
+                          .body( Map.of( "error", "Failed to fetch mood analytics" ) );
+            }
+      }
+
       /**
        * GET endpoint to check if user has logged mood today
        * URL: <b>/api/mood/today</b>
@@ -125,7 +160,7 @@ public class MoodController {
                           .<ResponseEntity<Object>>map( ResponseEntity::ok )
                           .orElseGet( () -> ResponseEntity.ok( Map.of( "message", "No mood logged today" ) ) );
             } catch ( Exception e ) {
-                  System.err.println( "Error fetching today's mood: " + e.getMessage() );
+                  log.error( "Error fetching today's mood", e );
                   return ResponseEntity.internalServerError()
                           .body( Map.of( "error", "Failed to fetch today's mood" ) );
             }
@@ -0,0 +1,130 @@
+package org.chatbot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.chatbot.AiService.ChatTurn;
+import org.chatbot.AiService.StubCompletionGenerator;
+import org.chatbot.AiService.TokenEstimator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * OpenAI-compatible stand-in for the GPT4All API server (ai.stub.server.enabled)
+ * Point gpt4all.api.url at http://localhost:8080/stub/v1 to run the real HTTP
+ * client against deterministic, profile-paced completions (load tests,
+ * benchmarks, offline development)
+ */
+@RestController
+@RequestMapping("/stub/v1")
+@ConditionalOnProperty(name = "ai.stub.server.enabled", havingValue = "true")
+public class StubCompletionsController {
+
+      @Autowired
+      private StubCompletionGenerator generator;
+
+      @Autowired
+      private ObjectMapper objectMapper;
+
+      /**
+       * GET endpoint listing the stub model
+       * URL: "/stub/v1/models"
+       */
+      @GetMapping("/models")
+      public Map<String, Object> models() {
+            return Map.of( "object", "list",
+                    "data", List.of( Map.of( "id", generator.getModel(), "object", "model" ) ) );
+      }
+
+      /**
+       * POST endpoint emulating chat completions, streamed when "stream" is true
+       * URL: "/stub/v1/chat/completions"
+       * the body is written from the async executor, so waiting out the
+       * profile's latency does not hold a servlet thread
+       */
+      @PostMapping("/chat/completions")
+      public ResponseEntity<StreamingResponseBody> completions( @RequestBody Map<String, Object> request ) {
+            List<ChatTurn> turns = readMessages( request.get( "messages" ) );
+            if ( turns.isEmpty() ) {
+                  return ResponseEntity.badRequest()
+                          .contentType( MediaType.APPLICATION_JSON )
+                          .body( out -> objectMapper.writeValue( out,
+                                  Map.of( "error", Map.of( "message", "messages is required" ) ) ) );
+            }
+
+            // system prompt first, user msg last, everything between is history
+            String systemPrompt = turns.get( 0 ).role().equals( "system" ) ? turns.get( 0 ).content() : "";
+            String userMessage = turns.get( turns.size() - 1 ).content();
+            List<ChatTurn> history = turns.subList( systemPrompt.isEmpty() ? 0 : 1, turns.size() - 1 );
+            int maxTokens = request.get( "max_tokens" ) instanceof Number n ? n.intValue() : 0;
+
+            List<String> tokens = generator.tokens( systemPrompt, history, userMessage, maxTokens );
+            String id = "chatcmpl-" + UUID.randomUUID();
+            long created = System.currentTimeMillis() / 1000;
+
+            if ( Boolean.TRUE.equals( request.get( "stream" ) ) ) {
+                  return ResponseEntity.ok()
+                          .contentType( MediaType.TEXT_EVENT_STREAM )
+                          .body( out -> {
+                                generator.emit( tokens, token -> writeEvent( out, Map.of(
+                                        "id", id, "object", "chat.completion.chunk", "created", created,
+                                        "model", generator.getModel(),
+                                        "choices", List.of( Map.of( "index", 0,
+                                                "delta", Map.of( "content", token ) ) ) ) ) );
+                                out.write( "data: [DONE]\n\n".getBytes( StandardCharsets.UTF_8 ) );
+                                out.flush();
+                          } );
+            }
+
+            int promptTokens = turns.stream().mapToInt( TokenEstimator::estimate ).sum();
+            Map<String, Object> completion = Map.of(
+                    "id", id, "object", "chat.completion", "created", created,
+                    "model", generator.getModel(),
+                    "choices", List.of( Map.of( "index", 0, "finish_reason", "stop",
+                            "message", Map.of( "role", "assistant", "content", String.join( "", tokens ) ) ) ),
+                    "usage", Map.of( "prompt_tokens", promptTokens,
+                            "completion_tokens", tokens.size(),
+                            "total_tokens", promptTokens + tokens.size() ) );
+            return ResponseEntity.ok()
+                    .contentType( MediaType.APPLICATION_JSON )
+                    .body( out -> {
+                          generator.waitForCompletion( tokens.size() );
+                          objectMapper.writeValue( out, completion );
+                    } );
+      }
+
+      private static List<ChatTurn> readMessages( Object messages ) {
+            List<ChatTurn> turns = new ArrayList<>();
+            if ( messages instanceof List<?> list ) {
+                  for ( Object item : list ) {
+                        if ( item instanceof Map<?, ?> message
+                                && message.get( "role" ) instanceof String role
+                                && message.get( "content" ) instanceof String content ) {
+                              turns.add( new ChatTurn( role, content ) );
+                        }
+                  }
+            }
+            return turns;
+      }
+
+      private void writeEvent( OutputStream out, Object chunk ) {
+            try {
+                  out.write( ( "data: " + objectMapper.writeValueAsString( chunk ) + "\n\n" )
+                          .getBytes( StandardCharsets.UTF_8 ) );
+                  out.flush();
+            } catch ( IOException e ) {
+                  throw new UncheckedIOException( e );
+            }
+      }
+}
@@ -0,0 +1,42 @@
+package org.chatbot.dto;
+
+import java.util.List;
+
+/**
+ * DTO for one page of chat history, oldest message first
+ * {@code before} / {@code after} are opaque cursors to pass back to load
+ * older / newer messages; {@code hasMore} says if there are more messages
+ * in the direction that was paged (older, or newer when paging with after)
+ */
+public class MessagePage {
+      private List<MessageView> messages;
+      private String before;
+      private String after;
+      private boolean hasMore;
+
+      //Constructors
+      public MessagePage() { }
+
+      public MessagePage( List<MessageView> messages, String before, String after, boolean hasMore ) {
+            this.messages = messages;
+            this.before = before;
+            this.after = after;
+            this.hasMore = hasMore;
+      }
+
+      public List<MessageView> getMessages() {
+            return messages;
+      }
+
+      public String getBefore() {
+            return before;
+      }
+
+      public String getAfter() {
+            return after;
+      }
+
+      public boolean isHasMore() {
+            return hasMore;
+      }
+}
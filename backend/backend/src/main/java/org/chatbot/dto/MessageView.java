@@ -0,0 +1,40 @@
+package org.chatbot.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for one chat message in the history
+ * only the columns the chat page shows, loaded directly by the query
+ */
+public class MessageView {
+      private Long id;
+      private String text;
+      private String sender;
+      private LocalDateTime timestamp;
+
+      //Constructors
+      public MessageView() { }
+
+      public MessageView( Long id, String text, String sender, LocalDateTime timestamp ) {
+            this.id = id;
+            this.text = text;
+            this.sender = sender;
+            this.timestamp = timestamp;
+      }
+
+      public Long getId() {
+            return id;
+      }
+
+      public String getText() {
+            return text;
+      }
+
+      public String getSender() {
+            return sender;
+      }
+
+      public LocalDateTime getTimestamp() {
+            return timestamp;
+      }
+}
@@ -0,0 +1,41 @@
+package org.chatbot.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Moves messages.id from an identity column to a sequence handing out ids in
+ * blocks of 50, so Hibernate can assign ids without a round trip per row
+ * and batch the inserts.
+ * Java (not SQL) because the sequence has to start above the existing ids
+ */
+public class V3__Message_id_sequence extends BaseJavaMigration {
+
+    //must match allocationSize on Message.id
+    static final int ALLOCATION_SIZE = 50;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection()
+                                          .createStatement()) {
+            long maxId;
+            try (ResultSet rs = statement.executeQuery(
+              "SELECT COALESCE(MAX(id), 0) FROM messages")) {
+                rs.next();
+                maxId = rs.getLong(1);
+            }
+
+            statement.execute("ALTER TABLE messages ALTER COLUMN id " +
+                                "DROP IDENTITY");
+            //read with the pooled-lo optimizer (like V4): the value read
+            //from the sequence is the first id of a block, so the first
+            //block starts right after maxId
+            statement.execute("CREATE SEQUENCE messages_seq START WITH " +
+                                (maxId + 1) +
+                                " INCREMENT BY " + ALLOCATION_SIZE);
+        }
+    }
+}
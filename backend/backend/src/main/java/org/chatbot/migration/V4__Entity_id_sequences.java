@@ -0,0 +1,48 @@
+package org.chatbot.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Moves users, mood_logs and journal_entries from identity columns to
+ * sequences handing out ids in blocks of 50 (like messages in V3), and
+ * widens journal_entries.id to BIGINT like every other id.
+ * Hibernate reads these with the pooled-lo optimizer: the value read from
+ * the sequence is the first id of a block, so each sequence starts right
+ * after the existing ids
+ */
+public class V4__Entity_id_sequences extends BaseJavaMigration {
+
+    //must match allocationSize on the entities
+    static final int ALLOCATION_SIZE = 50;
+
+    private static final String[] TABLES =
+      {"users", "mood_logs", "journal_entries"};
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection()
+                                          .createStatement()) {
+            for (String table : TABLES) {
+                long maxId;
+                try (ResultSet rs = statement.executeQuery(
+                  "SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+                    rs.next();
+                    maxId = rs.getLong(1);
+                }
+
+                statement.execute("ALTER TABLE " + table +
+                                    " ALTER COLUMN id DROP IDENTITY");
+                statement.execute("CREATE SEQUENCE " + table + "_seq" +
+                                    " START WITH " + (maxId + 1) +
+                                    " INCREMENT BY " + ALLOCATION_SIZE);
+            }
+
+            statement.execute("ALTER TABLE journal_entries ALTER COLUMN id " +
+                                "SET DATA TYPE BIGINT");
+        }
+    }
+}
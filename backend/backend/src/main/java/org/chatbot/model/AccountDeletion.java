@@ -0,0 +1,73 @@
+package org.chatbot.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tombstone of an account deletion, see
+ * {@link org.chatbot.service.AccountDeletionService}
+ * Outlives the user row, so the deleted user's tokens stay rejected and an
+ * interrupted deletion can be resumed
+ */
+@Entity
+@Table(name = "account_deletions")
+public class AccountDeletion {
+
+    // the deletion id handed to the client to poll the status
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // RUNNING, DONE or FAILED (AccountDeletionService.State)
+    @Column(nullable = false, length = 16)
+    private String state;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    // null while running
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    // times a FAILED deletion was run again
+    @Column(nullable = false)
+    private int retries;
+
+    public AccountDeletion() {}
+
+    public AccountDeletion(String id, Long userId, String state,
+                           LocalDateTime startedAt) {
+        this.id = id;
+        this.userId = userId;
+        this.state = state;
+        this.startedAt = startedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+}
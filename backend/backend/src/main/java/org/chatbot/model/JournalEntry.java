@@ -12,11 +12,17 @@ import java.time.LocalDateTime;
  */
 
 @Entity
-@Table(name = "journal_entries")
+@Table(name = "journal_entries", indexes = {
+  @Index(name = "ix_journal_entries_user_date",
+         columnList = "user_id, date")})
 public class JournalEntry {
+    // Primary key, from a sequence in blocks of 50 so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private int id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+                    generator = "journal_entries_seq")
+    @SequenceGenerator(name = "journal_entries_seq",
+                       sequenceName = "journal_entries_seq", allocationSize = 50)
+    private Long id;
 
     //the journal entry text
     @Column(columnDefinition = "TEXT", nullable = false)
@@ -47,11 +53,11 @@ public class JournalEntry {
         this.createdAt = LocalDateTime.now();
     }
 
-    public int getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(int id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
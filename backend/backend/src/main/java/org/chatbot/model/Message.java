@@ -10,12 +10,17 @@ import java.time.LocalDateTime;
  */
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+  @Index(name = "ix_messages_user_timestamp_id",
+         columnList = "user_id, timestamp, id")})
 public class Message {
 
-    // Primary key, auto-generated
+    // Primary key, from a sequence in blocks of 50 so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+                    generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_seq",
+                       allocationSize = 50)
     private Long id;
 
     // The actual msg text
@@ -10,10 +10,16 @@ import java.time.LocalDateTime;
  * users rate their mood from 1 (very bad) to 5 (great)
  */
 @Entity
-@Table(name = "mood_logs")
+@Table(name = "mood_logs", uniqueConstraints = {
+  @UniqueConstraint(name = "ux_mood_logs_user_date",
+                    columnNames = {"user_id", "date"})})
 public class MoodLog {
+    // Primary key, from a sequence in blocks of 50 so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+                    generator = "mood_logs_seq")
+    @SequenceGenerator(name = "mood_logs_seq",
+                       sequenceName = "mood_logs_seq", allocationSize = 50)
     private Long id;
 
     // Mood rating 1 - 5, very bad to great
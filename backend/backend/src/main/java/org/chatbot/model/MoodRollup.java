@@ -0,0 +1,109 @@
+package org.chatbot.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Running mood totals of one user, through the end of one day
+ * There is a row for every day the user logged a mood; the totals of a
+ * date range are this row minus the last row before the range.
+ * Written only by {@link org.chatbot.repository.MoodRollupRepository}
+ */
+@Entity
+@Table(name = "mood_rollups")
+@IdClass(MoodRollup.Key.class)
+public class MoodRollup {
+
+    public record Key(Long userId, LocalDate date) implements Serializable {
+    }
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(nullable = false)
+    private LocalDate date;
+
+    // mood logs up to and including this day
+    @Column(name = "log_count", nullable = false)
+    private Integer logCount;
+
+    @Column(name = "mood_sum", nullable = false)
+    private Long moodSum;
+
+    // logs per mood rating
+    @Column(name = "mood_1", nullable = false)
+    private Integer mood1;
+
+    @Column(name = "mood_2", nullable = false)
+    private Integer mood2;
+
+    @Column(name = "mood_3", nullable = false)
+    private Integer mood3;
+
+    @Column(name = "mood_4", nullable = false)
+    private Integer mood4;
+
+    @Column(name = "mood_5", nullable = false)
+    private Integer mood5;
+
+    public MoodRollup() {
+    }
+
+    public MoodRollup(Long userId, LocalDate date, int... moodCounts) {
+        this.userId = userId;
+        this.date = date;
+        this.mood1 = moodCounts[0];
+        this.mood2 = moodCounts[1];
+        this.mood3 = moodCounts[2];
+        this.mood4 = moodCounts[3];
+        this.mood5 = moodCounts[4];
+        this.logCount = 0;
+        this.moodSum = 0L;
+        for (int i = 0; i < 5; i++) {
+            this.logCount += moodCounts[i];
+            this.moodSum += (long) (i + 1) * moodCounts[i];
+        }
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public Integer getLogCount() {
+        return logCount;
+    }
+
+    public Long getMoodSum() {
+        return moodSum;
+    }
+
+    /**
+     * @param mood rating 1-5
+     * @return logs with that rating
+     */
+    public int getMoodCount(int mood) {
+        return switch (mood) {
+            case 1 -> mood1;
+            case 2 -> mood2;
+            case 3 -> mood3;
+            case 4 -> mood4;
+            case 5 -> mood5;
+            default -> throw new IllegalArgumentException(
+              "Mood must be between 1 and 5");
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "MoodRollup{" + "userId=" + userId + ", date=" + date +
+          ", logCount=" + logCount + '}';
+    }
+}
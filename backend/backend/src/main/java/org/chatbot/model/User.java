@@ -10,11 +10,16 @@ import java.util.List;
  * Stores user account information and authentication details
  */
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+  @UniqueConstraint(name = "ux_users_email", columnNames = "email")})
 public class User {
 
+    // Primary key, from a sequence in blocks of 50 so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+                    generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq",
+                       allocationSize = 50)
     private Long id;
 
     // User's full name
@@ -36,17 +41,19 @@ public class User {
     // when the account was last updated
     private LocalDateTime updatedAt;
 
-    // Relationships to other entities
+    // Relationships to other entities, not cascaded: removing a user
+    // would load every child row, AccountDeletionService deletes them in
+    // set-based chunks instead
     // One user can have many msg
-    @OneToMany(mappedBy = "userId", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "userId")
     private List<Message> messages;
 
     //one user can have many journal entries
-    @OneToMany(mappedBy = "userId", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "userId")
     private List<JournalEntry> journalEntries;
 
     // one user can have many mood logs
-    @OneToMany(mappedBy = "userId", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "userId")
     private List<MoodLog> moodLogs;
 
     // constructors
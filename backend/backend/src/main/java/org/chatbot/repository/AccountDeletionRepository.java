@@ -0,0 +1,70 @@
+package org.chatbot.repository;
+
+import org.chatbot.model.AccountDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * this repository keeps the account deletion tombstones
+ */
+@Repository
+public interface AccountDeletionRepository
+  extends JpaRepository<AccountDeletion, String> {
+
+    /**
+     * @param state RUNNING, DONE or FAILED
+     * @return the deletions in that state, RUNNING ones are resumed at start
+     */
+    List<AccountDeletion> findByState(String state);
+
+    /**
+     * Users whose tokens must be rejected: deletion not done yet (a failed
+     * one too, the account may be half gone), or done after {@code since}
+     * @param since now minus the token lifetime
+     * @return user ids
+     */
+    @Query("SELECT DISTINCT d.userId FROM AccountDeletion d " +
+      "WHERE d.state <> 'DONE' OR d.finishedAt > :since")
+    List<Long> findRevokedUserIds(@Param("since") LocalDateTime since);
+
+    /**
+     * @return every user that was ever deleted, nothing of theirs may be
+     * written again (the message spool)
+     */
+    @Query("SELECT DISTINCT d.userId FROM AccountDeletion d")
+    List<Long> findDeletedUserIds();
+
+    /**
+     * @param since the previous read, a little earlier
+     * @return users whose deletion started after {@code since}
+     */
+    @Query("SELECT DISTINCT d.userId FROM AccountDeletion d " +
+      "WHERE d.startedAt > :since")
+    List<Long> findUserIdsDeletedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Record how a deletion ended
+     * @return rows updated
+     */
+    @Modifying
+    @Query("UPDATE AccountDeletion d SET d.state = :state, " +
+      "d.finishedAt = :finishedAt WHERE d.id = :id")
+    int finish(@Param("id") String id, @Param("state") String state,
+               @Param("finishedAt") LocalDateTime finishedAt);
+
+    /**
+     * Take a FAILED deletion to run it again
+     * @return 1 if claimed, 0 if another instance was first
+     */
+    @Modifying
+    @Query("UPDATE AccountDeletion d SET d.state = 'RUNNING', " +
+      "d.finishedAt = null, d.retries = d.retries + 1 " +
+      "WHERE d.id = :id AND d.state = 'FAILED'")
+    int claimRetry(@Param("id") String id);
+}
@@ -1,13 +1,21 @@
 package org.chatbot.repository;
 
 
+import jakarta.persistence.QueryHint;
 import org.chatbot.model.JournalEntry;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * this repository handles database operations for journalEntry entity
@@ -32,10 +40,38 @@ public interface JournalRepository extends JpaRepository<JournalEntry, Long> {
     Optional<JournalEntry> findByUserIdAndDate(Long userId, LocalDate date);
 
     /**
-     * Delete all journal entries for a specific user
-     * @param userId The user's ID
+     * Journal entries after the (date, id) cursor, oldest first, read from
+     * a cursor in fetch-size rows for the data export
+     * The stream must be closed, inside a transaction
+     * @param userId the user's ID
+     * @param date date of the last entry already read
+     * @param id id of the last entry already read
+     * @param limit rows to read at most
+     * @return stream of journal entries
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE,
+                            value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select j from JournalEntry j where j.userId = :userId " +
+      "and (j.date > :date or (j.date = :date and j.id > :id)) " +
+      "order by j.date asc, j.id asc")
+    Stream<JournalEntry> streamAfter(@Param("userId") Long userId,
+                                     @Param("date") LocalDate date,
+                                     @Param("id") Long id, Limit limit);
+
+    /**
+     * Delete up to {@code limit} journal entries of a user in one statement
+     * Called in a loop, one short transaction per chunk, when the account
+     * is deleted
+     * @param userId the user's ID
+     * @param limit rows to delete at most
+     * @return rows deleted
      */
-    void deleteByUserId(Long userId);
+    @Modifying
+    @Query(value = "DELETE FROM journal_entries WHERE id IN (SELECT id FROM journal_entries " +
+      "WHERE user_id = :userId LIMIT :limit)", nativeQuery = true)
+    int deleteChunkByUserId(@Param("userId") Long userId,
+                            @Param("limit") int limit);
 
     /**
      * Count total journal entries for a user
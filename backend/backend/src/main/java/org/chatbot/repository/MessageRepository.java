@@ -1,11 +1,22 @@
 package org.chatbot.repository;
 
 
+import org.chatbot.dto.MessageView;
+import jakarta.persistence.QueryHint;
 import org.chatbot.model.Message;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 /**
@@ -16,24 +27,79 @@ import java.util.List;
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     /**
-     * Find all messages for a specific user, ordered by timestamp
-     * this is used to fetch chat history
+     * Newest messages for a user, newest first
+     * keyset pages of the history are ordered by (timestamp, id), so the
+     * cost of a page does not grow with the size of the history
      * @param userId the user's ID
-     * @return List of msg ordered from oldest to newest
+     * @param page how many rows to load (only the page size is used)
+     * @return messages newest to oldest
      */
-    List<Message> findByUserIdOrderByTimestampAsc(Long userId);
+    @Query("select new org.chatbot.dto.MessageView(m.id, m.text, m.sender, m.timestamp) " +
+      "from Message m where m.userId = :userId " +
+      "order by m.timestamp desc, m.id desc")
+    List<MessageView> findLatestViews(@Param("userId") Long userId,
+                                      Pageable page);
+
+    /**
+     * Messages older than the (timestamp, id) cursor, newest first
+     */
+    @Query("select new org.chatbot.dto.MessageView(m.id, m.text, m.sender, m.timestamp) " +
+      "from Message m where m.userId = :userId " +
+      "and (m.timestamp < :timestamp or (m.timestamp = :timestamp and m.id < :id)) " +
+      "order by m.timestamp desc, m.id desc")
+    List<MessageView> findViewsBefore(@Param("userId") Long userId,
+                                      @Param("timestamp") LocalDateTime timestamp,
+                                      @Param("id") Long id,
+                                      Pageable page);
+
+    /**
+     * Messages newer than the (timestamp, id) cursor, oldest first
+     */
+    @Query("select new org.chatbot.dto.MessageView(m.id, m.text, m.sender, m.timestamp) " +
+      "from Message m where m.userId = :userId " +
+      "and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id)) " +
+      "order by m.timestamp asc, m.id asc")
+    List<MessageView> findViewsAfter(@Param("userId") Long userId,
+                                     @Param("timestamp") LocalDateTime timestamp,
+                                     @Param("id") Long id,
+                                     Pageable page);
+
+    /**
+     * Messages newer than the (timestamp, id) cursor, oldest first, read
+     * from a cursor in fetch-size rows for the data export
+     * The stream must be closed, inside a transaction
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE,
+                            value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select new org.chatbot.dto.MessageView(m.id, m.text, m.sender, m.timestamp) " +
+      "from Message m where m.userId = :userId " +
+      "and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id)) " +
+      "order by m.timestamp asc, m.id asc")
+    Stream<MessageView> streamViewsAfter(@Param("userId") Long userId,
+                                         @Param("timestamp") LocalDateTime timestamp,
+                                         @Param("id") Long id,
+                                         Limit limit);
 
     /**
      * Find recent messages for a user (for context in AI conversation)
      * @param userId The user's ID
-     * @return Last 10 messages
+     * @param limit how many (ai.context.max-turns)
+     * @return the latest messages, newest first
      */
-    List<Message> findTop10ByUserIdOrderByTimestampDesc(Long userId);
+    List<Message> findByUserIdOrderByTimestampDescIdDesc(Long userId, Limit limit);
 
     /**
-     * Delete all messages for a specific user
-     * Used when user deletes their account
-     * @param userId The user's ID
+     * Delete up to {@code limit} messages of a user in one statement
+     * Called in a loop, one short transaction per chunk, when the account
+     * is deleted
+     * @param userId the user's ID
+     * @param limit rows to delete at most
+     * @return rows deleted
      */
-    void deleteByUserId(Long userId);
+    @Modifying
+    @Query(value = "DELETE FROM messages WHERE id IN (SELECT id FROM messages " +
+      "WHERE user_id = :userId LIMIT :limit)", nativeQuery = true)
+    int deleteChunkByUserId(@Param("userId") Long userId,
+                            @Param("limit") int limit);
 }
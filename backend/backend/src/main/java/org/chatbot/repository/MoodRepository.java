@@ -1,13 +1,22 @@
 package org.chatbot.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.chatbot.model.MoodLog;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * this repository handles database operations for MoodLog entity
@@ -32,6 +41,20 @@ public interface MoodRepository extends JpaRepository<MoodLog, Long> {
      */
     Optional<MoodLog> findByUserIdAndDate(Long userId, LocalDate date);
 
+    /**
+     * Same as findByUserIdAndDate, but the row stays locked until the
+     * transaction ends (SELECT ... FOR UPDATE), so two updates of the same
+     * log can not both apply their change to the rollups from the same
+     * previous mood. Two first logs of a day are kept apart by the unique
+     * index on (user_id, date) instead, the second one fails
+     * @param userId The user's ID
+     * @param date The date to check
+     * @return Optional containing the locked mood log if it exists
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<MoodLog> findForUpdateByUserIdAndDate(Long userId,
+                                                   LocalDate date);
+
     /**
      * Find mood logs within a date range
      * Used for analytics and trend charts
@@ -45,20 +68,32 @@ public interface MoodRepository extends JpaRepository<MoodLog, Long> {
                                                            LocalDate endDate);
 
     /**
-     * Calculate average mood for a user over
-     * last 30 days Used for analythics dashboard
+     * Mood logs after a date, oldest first, read from a cursor in
+     * fetch-size rows for the data export (one log per day, so the date
+     * is the keyset). The stream must be closed, inside a transaction
      * @param userId the user's ID
-     * @param startDate 30 days ago
-     * @return Average mood
-     * as a double
+     * @param date the last date already read
+     * @param limit rows to read at most
+     * @return stream of mood logs
      */
-    @Query("SELECT AVG(m" + ".mood) FROM MoodLog " + "m WHERE m.userId = " +
-      "?1 and m.date >=?2")
-    Double getAverageMoodSince(Long userId, LocalDate startDate);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE,
+                            value = "500"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<MoodLog> streamByUserIdAndDateAfterOrderByDateAsc(Long userId,
+                                                             LocalDate date,
+                                                             Limit limit);
 
     /**
-     * Delete all mood logs for a specific user
+     * Delete up to {@code limit} mood logs of a user in one statement
+     * Called in a loop, one short transaction per chunk, when the account
+     * is deleted
      * @param userId the user's ID
+     * @param limit rows to delete at most
+     * @return rows deleted
      */
-    void deleteByUserId(Long userId);
+    @Modifying
+    @Query(value = "DELETE FROM mood_logs WHERE id IN (SELECT id FROM mood_logs " +
+      "WHERE user_id = :userId LIMIT :limit)", nativeQuery = true)
+    int deleteChunkByUserId(@Param("userId") Long userId,
+                            @Param("limit") int limit);
 }
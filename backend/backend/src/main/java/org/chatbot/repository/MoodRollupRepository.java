@@ -0,0 +1,98 @@
+package org.chatbot.repository;
+
+import org.chatbot.model.MoodRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * this repository keeps the running mood totals (mood_rollups) and reads
+ * the two rows that bound a date range
+ */
+@Repository
+public interface MoodRollupRepository
+  extends JpaRepository<MoodRollup, MoodRollup.Key> {
+
+    /**
+     * The last row before {@code start} and the last row up to
+     * {@code end}, oldest first. Either may be missing, and they are the
+     * same row when nothing was logged in the range
+     * @param userId the user's ID
+     * @param start first day of the range
+     * @param end last day of the range
+     * @return up to two rollup rows
+     */
+    @Query(value = "SELECT * FROM mood_rollups WHERE user_id = :userId " +
+      "AND date IN ((SELECT MAX(date) FROM mood_rollups " +
+      "WHERE user_id = :userId AND date < :start), " +
+      "(SELECT MAX(date) FROM mood_rollups " +
+      "WHERE user_id = :userId AND date <= :end)) ORDER BY date",
+           nativeQuery = true)
+    List<MoodRollup> findRangeBounds(@Param("userId") Long userId,
+                                     @Param("start") LocalDate start,
+                                     @Param("end") LocalDate end);
+
+    /**
+     * Add a row for {@code date} carrying over the totals of the last
+     * earlier row, unless the day already has one
+     * @param userId the user's ID
+     * @param date the day of the mood log
+     */
+    @Modifying
+    @Query(value = "INSERT INTO mood_rollups (user_id, date, log_count, " +
+      "mood_sum, mood_1, mood_2, mood_3, mood_4, mood_5) " +
+      "SELECT :userId, :date, COALESCE(MAX(log_count), 0), " +
+      "COALESCE(MAX(mood_sum), 0), COALESCE(MAX(mood_1), 0), " +
+      "COALESCE(MAX(mood_2), 0), COALESCE(MAX(mood_3), 0), " +
+      "COALESCE(MAX(mood_4), 0), COALESCE(MAX(mood_5), 0) " +
+      "FROM mood_rollups WHERE user_id = :userId AND date = " +
+      "(SELECT MAX(date) FROM mood_rollups " +
+      "WHERE user_id = :userId AND date < :date) " +
+      "ON CONFLICT (user_id, date) DO NOTHING", nativeQuery = true)
+    void insertDay(@Param("userId") Long userId,
+                   @Param("date") LocalDate date);
+
+    /**
+     * Apply one mood log change to the totals of {@code date} and every
+     * later row
+     * @param userId the user's ID
+     * @param date the day of the mood log
+     * @param added the new rating
+     * @param removed the rating it replaces, 0 for a new log
+     * @return rows updated
+     */
+    @Modifying
+    @Query(value = "UPDATE mood_rollups SET " +
+      "log_count = log_count + CASE WHEN :removed = 0 THEN 1 ELSE 0 END, " +
+      "mood_sum = mood_sum + :added - :removed, " +
+      "mood_1 = mood_1 + CASE WHEN :added = 1 THEN 1 ELSE 0 END " +
+      "- CASE WHEN :removed = 1 THEN 1 ELSE 0 END, " +
+      "mood_2 = mood_2 + CASE WHEN :added = 2 THEN 1 ELSE 0 END " +
+      "- CASE WHEN :removed = 2 THEN 1 ELSE 0 END, " +
+      "mood_3 = mood_3 + CASE WHEN :added = 3 THEN 1 ELSE 0 END " +
+      "- CASE WHEN :removed = 3 THEN 1 ELSE 0 END, " +
+      "mood_4 = mood_4 + CASE WHEN :added = 4 THEN 1 ELSE 0 END " +
+      "- CASE WHEN :removed = 4 THEN 1 ELSE 0 END, " +
+      "mood_5 = mood_5 + CASE WHEN :added = 5 THEN 1 ELSE 0 END " +
+      "- CASE WHEN :removed = 5 THEN 1 ELSE 0 END " +
+      "WHERE user_id = :userId AND date >= :date", nativeQuery = true)
+    int applyChange(@Param("userId") Long userId,
+                    @Param("date") LocalDate date,
+                    @Param("added") int added,
+                    @Param("removed") int removed);
+
+    /**
+     * Delete the rollup rows of a user (one per logged day, no chunks)
+     * @param userId the user's ID
+     * @return rows deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM mood_rollups WHERE user_id = :userId",
+           nativeQuery = true)
+    int deleteByUserId(@Param("userId") Long userId);
+}
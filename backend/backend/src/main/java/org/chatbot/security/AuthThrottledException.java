@@ -0,0 +1,23 @@
+package org.chatbot.security;
+
+/**
+ * Thrown when a login or registration is refused for load reasons:
+ * too many attempts for an email or address, or the password hashing
+ * pool is saturated. Answered with 429 and a Retry-After
+ */
+public class AuthThrottledException extends RuntimeException {
+
+      private final long retryAfterSeconds;
+
+      public AuthThrottledException( String message, long retryAfterSeconds ) {
+            super( message );
+            this.retryAfterSeconds = retryAfterSeconds;
+      }
+
+      /**
+       * @return how many seconds the client should wait before retrying
+       */
+      public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+      }
+}
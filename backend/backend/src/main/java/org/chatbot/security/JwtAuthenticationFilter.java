@@ -1,18 +1,30 @@
 package org.chatbot.security;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT Authentication Filter
@@ -21,30 +33,77 @@ import java.io.IOException;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+      private static final Logger log = LoggerFactory.getLogger( JwtAuthenticationFilter.class );
+
+      // request attributes set once the token has been parsed
+      public static final String TOKEN_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".token";
+      public static final String CLAIMS_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".claims";
+      public static final String USER_ID_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".userId";
+
       @Autowired
       private JwtUtil jwtUtil;
 
       @Autowired
       private CustomUserDetailsService userDetailsService;
 
+      @Autowired
+      private UserDetailsCache userDetailsCache;
+
+      @Autowired
+      private RevokedUsers revokedUsers;
+
+      /**
+       * How the principal is built for an authenticated request
+       * STATELESS: from the token claims only, no database access
+       * CACHED: user looked up through UserDetailsCache (revocation within the TTL)
+       * DATABASE: user looked up on every request
+       */
+      public enum AuthMode { STATELESS, CACHED, DATABASE }
+
+      @Value("${jwt.auth.mode:STATELESS}")
+      private AuthMode authMode;
+
+      // auth.filter{result}: time spent authenticating, the rest of the chain not included
+      @Autowired
+      private MeterRegistry meterRegistry;
+
+      // one timer per result, registered on first use
+      private final Map<String, Timer> filterTimers = new ConcurrentHashMap<>();
+
       @Override
       protected  void doFilterInternal( HttpServletRequest request,
                                         HttpServletResponse response,
                                         FilterChain filterChain ) throws ServletException, IOException {
+            long start = System.nanoTime();
+            // no token at all: anonymous, bad token or user: rejected
+            String result = "anonymous";
             try{
                   // Get JWT Token from Authorization header
                   String authorizationHeader = request.getHeader("Authorization");
 
                   String username = null;
                   String jwt = null;
+                  Claims claims = null;
 
                   // Check if Authorization header exists and starts with "Bearer "
                   if (authorizationHeader != null && authorizationHeader.startsWith( "Bearer " )) {
                         jwt = authorizationHeader.substring(7); // remove "Bearer " prefix
                         try{
-                              username = jwtUtil.extractUsername(jwt);
+                              // parse once, controllers read the result from the request
+                              claims = jwtUtil.extractAllClaims( jwt );
+                              // a deleted account: its tokens are still signed and unexpired
+                              if ( revokedUsers.isRevoked( claims.get( "userId", Long.class ) ) ) {
+                                    throw new IllegalStateException( "account deleted" );
+                              }
+                              username = claims.getSubject();
+                              request.setAttribute( TOKEN_ATTRIBUTE, jwt );
+                              request.setAttribute( CLAIMS_ATTRIBUTE, claims );
+                              request.setAttribute( USER_ID_ATTRIBUTE, claims.get( "userId", Long.class ) );
+                              // every log line of this request carries the user id
+                              MDC.put( "userId", String.valueOf( claims.get( "userId", Long.class ) ) );
                         } catch ( Exception e ){
-                              System.err.println("Error extracting username from JWT token: " + e.getMessage());
+                              result = "rejected";
+                              log.debug( "Error extracting username from JWT token: {}", e.getMessage() );
                         }
                   }
 
@@ -52,10 +111,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                   if (username != null && SecurityContextHolder.getContext().getAuthentication() == null){
 
                         // Load user details
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                        UserDetails userDetails = switch ( authMode ) {
+                              // the signed token already vouches for the user
+                              case STATELESS -> new User( username, "", List.of() );
+                              case CACHED -> userDetailsCache.get( username, userDetailsService::loadUserByUsername );
+                              case DATABASE -> userDetailsService.loadUserByUsername( username );
+                        };
 
-                        // validate token
-                        if ( jwtUtil.validateToken( jwt, userDetails ) ){
+                        // token signature and expiry were checked when parsing
+                        if ( username.equals( userDetails.getUsername() ) ){
 
                               // Create authentication token
                               UsernamePasswordAuthenticationToken authToken =
@@ -69,15 +133,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                               // set authentication in context
                               SecurityContextHolder.getContext().setAuthentication(authToken);
 
-                              System.out.println("✅  JWT Authentication successful for user: " + username);
+                              result = "authenticated";
                         }
                   }
 
             }catch (Exception e){
-                  System.err.println("❌  Error authenticating user: " + e.getMessage());
+                  result = "rejected";
+                  log.warn( "Error authenticating user: {}", e.getMessage() );
             }
+            filterTimers.computeIfAbsent( result, tag -> Timer.builder( "auth.filter" )
+                            .tag( "result", tag )
+                            .description( "Time to authenticate a request from its JWT" )
+                            .register( meterRegistry ) )
+                    .record( System.nanoTime() - start, TimeUnit.NANOSECONDS );
 
             // Continue filter chain
-            filterChain.doFilter(request, response);
+            try {
+                  filterChain.doFilter(request, response);
+            } finally {
+                  MDC.remove( "userId" );
+            }
       }
 }
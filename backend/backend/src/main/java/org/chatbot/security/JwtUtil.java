@@ -2,14 +2,24 @@ package org.chatbot.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 /**
@@ -19,18 +29,54 @@ import java.util.function.Function;
 @Component
 public class JwtUtil {
 
+      private static final Logger log = LoggerFactory.getLogger( JwtUtil.class );
+
       @Value("${jwt.secret}")
       private String secret;
 
       @Value("${jwt.expiration}")
       private Long expiration;
 
+      // max number of parsed tokens kept in memory
+      @Value("${jwt.cache.max-entries:10000}")
+      private int cacheMaxEntries;
+
+      // built once on first use, both are immutable and thread-safe
+      private volatile Key signingKey;
+      private volatile JwtParser parser;
+
+      /**
+       * Parsed claims of a verified token, until the token expires
+       */
+      private record CachedClaims(Claims claims, long expiresAtMillis) {
+      }
+
+      // token hash -> claims, least recently used first
+      private final LinkedHashMap<String, CachedClaims> claimsCache =
+              new LinkedHashMap<>( 16, 0.75f, true );
+      private final ReentrantLock cacheLock = new ReentrantLock();
+
       /**
        * Get signing key from secret
        */
       private Key getSigningKey(){
-            byte[] keyBytes = secret.getBytes();
-            return Keys.hmacShaKeyFor( keyBytes);
+            Key key = signingKey;
+            if ( key == null ){
+                  key = Keys.hmacShaKeyFor( secret.getBytes() );
+                  signingKey = key;
+            }
+            return key;
+      }
+
+      private JwtParser getParser(){
+            JwtParser p = parser;
+            if ( p == null ){
+                  p = Jwts.parserBuilder()
+                          .setSigningKey( getSigningKey() )
+                          .build();
+                  parser = p;
+            }
+            return p;
       }
 
       /**
@@ -65,20 +111,91 @@ public class JwtUtil {
 
       /**
        * Extract all claims from a token
+       * the signature is verified once per token, after that the claims come
+       * from the cache until the token expires
+       * @throws JwtException if the token is invalid or expired
        */
-      private Claims extractAllClaims(String token){
-            return Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
+      public Claims extractAllClaims(String token){
+            String key = hash( token );
+            long now = System.currentTimeMillis();
+
+            cacheLock.lock();
+            try{
+                  CachedClaims cached = claimsCache.get( key );
+                  if ( cached != null ){
+                        if ( cached.expiresAtMillis() > now ){
+                              return cached.claims();
+                        }
+                        claimsCache.remove( key );
+                  }
+            } finally {
+                  cacheLock.unlock();
+            }
+
+            // not cached: verify and parse (throws if invalid or expired)
+            Claims claims = getParser().parseClaimsJws( token )
                     .getBody();
+            long expiresAt = claims.getExpiration() != null ?
+                    claims.getExpiration().getTime() : now + expiration;
+
+            cacheLock.lock();
+            try{
+                  claimsCache.put( key, new CachedClaims( claims, expiresAt ) );
+                  if ( claimsCache.size() > cacheMaxEntries ){
+                        Iterator<String> eldest = claimsCache.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                  }
+            } finally {
+                  cacheLock.unlock();
+            }
+            return claims;
+      }
+
+      /**
+       * Drop expired tokens from the cache
+       */
+      @Scheduled(fixedDelayString = "${jwt.cache.sweep-interval-ms:60000}")
+      public void evictExpiredClaims(){
+            long now = System.currentTimeMillis();
+            cacheLock.lock();
+            try{
+                  claimsCache.values().removeIf( cached -> cached.expiresAtMillis() <= now );
+            } finally {
+                  cacheLock.unlock();
+            }
+      }
+
+      /**
+       * @return number of tokens in the claims cache
+       */
+      int cachedTokens(){
+            cacheLock.lock();
+            try{
+                  return claimsCache.size();
+            } finally {
+                  cacheLock.unlock();
+            }
+      }
+
+      /**
+       * Cache key: SHA-256 of the token, so raw tokens are not kept as keys
+       */
+      private static String hash(String token){
+            try{
+                  byte[] digest = MessageDigest.getInstance( "SHA-256" )
+                          .digest( token.getBytes( StandardCharsets.UTF_8 ) );
+                  return HexFormat.of().formatHex( digest );
+            } catch ( NoSuchAlgorithmException e ){
+                  throw new IllegalStateException( e );
+            }
       }
 
       /**
        * Check if token is expired
        */
-      private Boolean isTokenExpired(String token){
-            return extractExpiration(token).before(new Date());
+      private Boolean isTokenExpired(Claims claims){
+            return claims.getExpiration().before(new Date());
       }
 
       /**
@@ -111,10 +228,10 @@ public class JwtUtil {
        */
       public Boolean validateToken(String token, UserDetails userDetails){
             try {
-                  final String username = extractUsername(token);
-                  return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+                  final Claims claims = extractAllClaims(token);
+                  return (claims.getSubject().equals(userDetails.getUsername()) && !isTokenExpired(claims));
             } catch ( JwtException | IllegalArgumentException e ){
-                  System.err.println("JWT token Validation error: " + e.getMessage());
+                  log.debug( "JWT token validation error: {}", e.getMessage() );
                   return false;
             }
       }
@@ -124,13 +241,9 @@ public class JwtUtil {
        */
       public Boolean validateToken(String token){
             try{
-                  Jwts.parserBuilder()
-                          .setSigningKey( getSigningKey() )
-                          .build()
-                          .parseClaimsJws( token );
-                  return !isTokenExpired( token );
+                  return !isTokenExpired( extractAllClaims( token ) );
             }catch ( JwtException | IllegalArgumentException e ){
-                  System.err.println("JWT token Validation error: " + e.getMessage());
+                  log.debug( "JWT token validation error: {}", e.getMessage() );
                   return false;
             }
       }
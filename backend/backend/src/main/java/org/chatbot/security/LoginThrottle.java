@@ -0,0 +1,128 @@
+package org.chatbot.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token-bucket throttling of sign-in attempts, per email and per client address
+ * Checked before any password hashing, so credential stuffing costs us a map
+ * lookup instead of a BCrypt round
+ */
+@Component
+public class LoginThrottle {
+
+      /**
+       * Bucket state, refilled lazily from the elapsed time
+       */
+      private static final class Bucket {
+            private double tokens;
+            private long refilledAtNanos;
+
+            private Bucket( double tokens, long now ) {
+                  this.tokens = tokens;
+                  this.refilledAtNanos = now;
+            }
+      }
+
+      private final int emailCapacity;
+      private final double emailRefillPerNano;
+      private final int addressCapacity;
+      private final double addressRefillPerNano;
+      private final int maxKeys;
+
+      // "e:" + email or "a:" + address -> bucket, least recently used first
+      private final LinkedHashMap<String, Bucket> buckets = new LinkedHashMap<>( 16, 0.75f, true );
+      private final ReentrantLock lock = new ReentrantLock();
+
+      private final Counter emailThrottled;
+      private final Counter addressThrottled;
+
+      public LoginThrottle( @Value("${auth.throttle.email.capacity:5}") int emailCapacity,
+                            @Value("${auth.throttle.email.per-minute:5}") double emailPerMinute,
+                            @Value("${auth.throttle.address.capacity:20}") int addressCapacity,
+                            @Value("${auth.throttle.address.per-minute:20}") double addressPerMinute,
+                            @Value("${auth.throttle.max-keys:100000}") int maxKeys,
+                            MeterRegistry meterRegistry ) {
+            this.emailCapacity = emailCapacity;
+            this.emailRefillPerNano = emailPerMinute / 60e9;
+            this.addressCapacity = addressCapacity;
+            this.addressRefillPerNano = addressPerMinute / 60e9;
+            this.maxKeys = maxKeys;
+
+            this.emailThrottled = Counter.builder( "auth.login.throttled" )
+                    .tag( "key", "email" )
+                    .description( "Sign-in attempts refused by the throttle" )
+                    .register( meterRegistry );
+            this.addressThrottled = Counter.builder( "auth.login.throttled" )
+                    .tag( "key", "address" )
+                    .description( "Sign-in attempts refused by the throttle" )
+                    .register( meterRegistry );
+      }
+
+      /**
+       * Take one attempt from the email and address buckets
+       * nothing is taken unless both have an attempt left
+       *
+       * @param email   normalized email, or null to check the address only
+       * @param address client address, or null to check the email only
+       * @throws AuthThrottledException when either bucket is empty
+       */
+      public void acquire( String email, String address ) {
+            long now = System.nanoTime();
+            lock.lock();
+            try {
+                  Bucket emailBucket = email != null ? bucket( "e:" + email, emailCapacity, now ) : null;
+                  Bucket addressBucket = address != null ? bucket( "a:" + address, addressCapacity, now ) : null;
+
+                  if ( emailBucket != null && refill( emailBucket, emailCapacity, emailRefillPerNano, now ) < 1 ) {
+                        emailThrottled.increment();
+                        throw tooMany( emailBucket, emailRefillPerNano );
+                  }
+                  if ( addressBucket != null && refill( addressBucket, addressCapacity, addressRefillPerNano, now ) < 1 ) {
+                        addressThrottled.increment();
+                        throw tooMany( addressBucket, addressRefillPerNano );
+                  }
+
+                  if ( emailBucket != null ) {
+                        emailBucket.tokens--;
+                  }
+                  if ( addressBucket != null ) {
+                        addressBucket.tokens--;
+                  }
+            } finally {
+                  lock.unlock();
+            }
+      }
+
+      private Bucket bucket( String key, int capacity, long now ) {
+            Bucket bucket = buckets.get( key );
+            if ( bucket == null ) {
+                  bucket = new Bucket( capacity, now );
+                  buckets.put( key, bucket );
+                  if ( buckets.size() > maxKeys ) {
+                        Iterator<String> eldest = buckets.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                  }
+            }
+            return bucket;
+      }
+
+      private static double refill( Bucket bucket, int capacity, double refillPerNano, long now ) {
+            bucket.tokens = Math.min( capacity, bucket.tokens + ( now - bucket.refilledAtNanos ) * refillPerNano );
+            bucket.refilledAtNanos = now;
+            return bucket.tokens;
+      }
+
+      private static AuthThrottledException tooMany( Bucket bucket, double refillPerNano ) {
+            long retryAfterSeconds = (long) Math.ceil( ( 1 - bucket.tokens ) / refillPerNano / 1e9 );
+            return new AuthThrottledException( "Too many sign-in attempts, please try again later",
+                    Math.max( 1, retryAfterSeconds ) );
+      }
+}
@@ -0,0 +1,126 @@
+package org.chatbot.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PasswordEncoder that runs the (deliberately slow) hashing of its delegate
+ * on a small dedicated pool, so a burst of logins can only ever keep
+ * {@code threads} cores busy and the chat path keeps the rest.
+ * Hashing that can not start in time fails with {@link AuthThrottledException}
+ */
+public class OffloadedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+      private final PasswordEncoder delegate;
+      private final ThreadPoolExecutor executor;
+      private final long maxWaitMs;
+      private final long retryAfterSeconds;
+
+      private final Timer queueWaitTimer;
+      private final Timer hashTimer;
+      private final Counter rejectedCounter;
+
+      public OffloadedPasswordEncoder( PasswordEncoder delegate, int threads, int queueCapacity,
+                                       long maxWaitMs, long retryAfterSeconds, MeterRegistry meterRegistry ) {
+            this.delegate = delegate;
+            this.maxWaitMs = maxWaitMs;
+            this.retryAfterSeconds = retryAfterSeconds;
+
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>( queueCapacity ),
+                    runnable -> {
+                          Thread thread = new Thread( runnable, "password-hash-" + threadNumber.incrementAndGet() );
+                          thread.setDaemon( true );
+                          return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy()
+            );
+
+            this.queueWaitTimer = Timer.builder( "auth.hashing.queue.wait" )
+                    .description( "Time a password hash waited for a hashing thread" )
+                    .register( meterRegistry );
+            this.hashTimer = Timer.builder( "auth.hashing.duration" )
+                    .description( "Time spent hashing or checking a password" )
+                    .register( meterRegistry );
+            this.rejectedCounter = Counter.builder( "auth.hashing.rejected" )
+                    .description( "Password hashes refused because the hashing pool was saturated" )
+                    .register( meterRegistry );
+            Gauge.builder( "auth.hashing.queue.depth", executor, e -> e.getQueue().size() )
+                    .description( "Password hashes waiting for a hashing thread" )
+                    .register( meterRegistry );
+            Gauge.builder( "auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount )
+                    .description( "Password hashes running right now" )
+                    .register( meterRegistry );
+      }
+
+      @Override
+      public String encode( CharSequence rawPassword ) {
+            return offload( () -> delegate.encode( rawPassword ) );
+      }
+
+      @Override
+      public boolean matches( CharSequence rawPassword, String encodedPassword ) {
+            return offload( () -> delegate.matches( rawPassword, encodedPassword ) );
+      }
+
+      @Override
+      public boolean upgradeEncoding( String encodedPassword ) {
+            return delegate.upgradeEncoding( encodedPassword );
+      }
+
+      private <T> T offload( Callable<T> work ) {
+            long submittedAt = System.nanoTime();
+            Future<T> future;
+            try {
+                  future = executor.submit( () -> {
+                        long startedAt = System.nanoTime();
+                        queueWaitTimer.record( startedAt - submittedAt, TimeUnit.NANOSECONDS );
+                        try {
+                              return work.call();
+                        } finally {
+                              hashTimer.record( System.nanoTime() - startedAt, TimeUnit.NANOSECONDS );
+                        }
+                  } );
+            } catch ( RejectedExecutionException e ) {
+                  rejectedCounter.increment();
+                  throw new AuthThrottledException( "Too many sign-in requests, please try again shortly", retryAfterSeconds );
+            }
+
+            try {
+                  return future.get( maxWaitMs, TimeUnit.MILLISECONDS );
+            } catch ( TimeoutException e ) {
+                  future.cancel( true );
+                  rejectedCounter.increment();
+                  throw new AuthThrottledException( "Too many sign-in requests, please try again shortly", retryAfterSeconds );
+            } catch ( InterruptedException e ) {
+                  future.cancel( true );
+                  Thread.currentThread().interrupt();
+                  throw new IllegalStateException( "Interrupted while hashing password", e );
+            } catch ( ExecutionException e ) {
+                  if ( e.getCause() instanceof RuntimeException runtimeException ) {
+                        throw runtimeException;
+                  }
+                  throw new IllegalStateException( "Password hashing failed", e.getCause() );
+            }
+      }
+
+      @Override
+      public void close() {
+            executor.shutdownNow();
+      }
+}
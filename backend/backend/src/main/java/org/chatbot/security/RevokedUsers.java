@@ -0,0 +1,74 @@
+package org.chatbot.security;
+
+import jakarta.annotation.PostConstruct;
+import org.chatbot.repository.AccountDeletionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Users whose tokens must no longer be accepted (deleted accounts)
+ * In STATELESS auth mode a token is trusted until it expires, so the JWT
+ * filter checks this set too. The deletions are persisted (account_deletions)
+ * and read again every refresh-ms, so a revocation survives a restart and
+ * reaches every instance; one made here counts right away. A user stays
+ * revoked for the token lifetime after the deletion is done, every token
+ * issued before has expired after that
+ */
+@Component
+public class RevokedUsers {
+
+      private static final Logger log = LoggerFactory.getLogger( RevokedUsers.class );
+
+      private final AccountDeletionRepository accountDeletionRepository;
+
+      private final long retentionMillis;
+
+      // revoked on this instance: user id -> when
+      private final ConcurrentHashMap<Long, Long> revokedAt = new ConcurrentHashMap<>();
+
+      // revoked according to the database, as of the last refresh
+      private volatile Set<Long> persisted = Set.of();
+
+      public RevokedUsers( AccountDeletionRepository accountDeletionRepository,
+                           @Value("${jwt.expiration:86400000}") long retentionMillis ) {
+            this.accountDeletionRepository = accountDeletionRepository;
+            this.retentionMillis = retentionMillis;
+      }
+
+      public void revoke( Long userId ) {
+            revokedAt.put( userId, System.currentTimeMillis() );
+      }
+
+      public boolean isRevoked( Long userId ) {
+            return userId != null && ( revokedAt.containsKey( userId ) || persisted.contains( userId ) );
+      }
+
+      /**
+       * Read the revoked users from the deletion tombstones
+       * on a database error the last list is kept
+       */
+      @PostConstruct
+      @Scheduled(fixedDelayString = "${jwt.revocation.refresh-ms:5000}")
+      public void refresh() {
+            LocalDateTime since = LocalDateTime.now().minus( retentionMillis, ChronoUnit.MILLIS );
+            try {
+                  persisted = Set.copyOf( accountDeletionRepository.findRevokedUserIds( since ) );
+            } catch ( RuntimeException e ) {
+                  log.warn( "Error reading revoked users: {}", e.getMessage() );
+            }
+      }
+
+      @Scheduled(fixedDelayString = "${jwt.cache.sweep-interval-ms:60000}")
+      public void sweep() {
+            long cutoff = System.currentTimeMillis() - retentionMillis;
+            revokedAt.values().removeIf( revoked -> revoked < cutoff );
+      }
+}
@@ -0,0 +1,88 @@
+package org.chatbot.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded, short-lived cache of UserDetails by email
+ * Used by the JWT filter in CACHED auth mode, so a deleted or changed account
+ * is picked up within the TTL (or at once through invalidate)
+ */
+@Component
+public class UserDetailsCache {
+
+      private record Entry(UserDetails userDetails, long loadedAtMillis) {
+      }
+
+      private final long ttlMillis;
+      private final int maxEntries;
+
+      // email -> user details, least recently used first
+      private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+      private final ReentrantLock lock = new ReentrantLock();
+
+      public UserDetailsCache( @Value("${jwt.auth.user-cache.ttl-ms:60000}") long ttlMillis,
+                               @Value("${jwt.auth.user-cache.max-entries:10000}") int maxEntries ) {
+            this.ttlMillis = ttlMillis;
+            this.maxEntries = maxEntries;
+      }
+
+      /**
+       * Cached user details, loading them when missing or stale
+       */
+      public UserDetails get( String email, Function<String, UserDetails> loader ) {
+            long now = System.currentTimeMillis();
+            lock.lock();
+            try {
+                  Entry entry = entries.get( email );
+                  if ( entry != null && now - entry.loadedAtMillis() < ttlMillis ) {
+                        return entry.userDetails();
+                  }
+            } finally {
+                  lock.unlock();
+            }
+
+            // load outside the lock, a concurrent miss just loads twice
+            UserDetails userDetails = loader.apply( email );
+
+            lock.lock();
+            try {
+                  entries.put( email, new Entry( userDetails, now ) );
+                  if ( entries.size() > maxEntries ) {
+                        Iterator<String> eldest = entries.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                  }
+            } finally {
+                  lock.unlock();
+            }
+            return userDetails;
+      }
+
+      /**
+       * Forget a user, call after a password or account change
+       */
+      public void invalidate( String email ) {
+            lock.lock();
+            try {
+                  entries.remove( email );
+            } finally {
+                  lock.unlock();
+            }
+      }
+
+      public void invalidateAll() {
+            lock.lock();
+            try {
+                  entries.clear();
+            } finally {
+                  lock.unlock();
+            }
+      }
+}
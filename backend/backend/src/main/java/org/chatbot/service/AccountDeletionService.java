@@ -0,0 +1,402 @@
+package org.chatbot.service;
+
+import jakarta.annotation.PostConstruct;
+import org.chatbot.AiService.AiResponseCache;
+import org.chatbot.model.AccountDeletion;
+import org.chatbot.model.User;
+import org.chatbot.repository.AccountDeletionRepository;
+import org.chatbot.repository.JournalRepository;
+import org.chatbot.repository.MessageRepository;
+import org.chatbot.repository.MoodRepository;
+import org.chatbot.repository.MoodRollupRepository;
+import org.chatbot.repository.UserRepository;
+import org.chatbot.security.RevokedUsers;
+import org.chatbot.security.UserDetailsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Deletes an account and everything it owns, in the background
+ * A tombstone (account_deletions) is written first: it revokes the user's
+ * tokens on every instance (RevokedUsers) and stops their message
+ * write-behind at the next refresh, and it survives a restart, a deletion
+ * still RUNNING then is resumed at the next start. Each table is emptied
+ * with set-based DELETE statements of chunk-size rows, one short
+ * transaction per chunk, instead of loading and removing every entity; the
+ * account row goes last. A FAILED deletion is run again after retry-base-ms,
+ * doubling up to retry-max-ms, until it is DONE. Progress can be polled by
+ * the deletion id for status-ttl-ms after it ends
+ */
+@Service
+public class AccountDeletionService {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(AccountDeletionService.class);
+
+    public enum State {
+        RUNNING, DONE, FAILED
+    }
+
+    /**
+     * @param deletedRows rows deleted so far per table
+     * @param finishedAt null while running
+     */
+    public record Status(String id, State state, Map<String, Long> deletedRows,
+                         LocalDateTime startedAt, LocalDateTime finishedAt) {
+    }
+
+    private final UserRepository userRepository;
+    private final MessageRepository messageRepository;
+    private final MoodRepository moodRepository;
+    private final JournalRepository journalRepository;
+    private final MoodRollupRepository moodRollupRepository;
+    private final AccountDeletionRepository accountDeletionRepository;
+    private final MessageWriteBehind messageWriteBehind;
+    private final ConversationContextService conversationContextService;
+    private final AiResponseCache aiResponseCache;
+    private final UserDetailsCache userDetailsCache;
+    private final RevokedUsers revokedUsers;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor executor;
+
+    private final int chunkSize;
+    private final long statusTtlMillis;
+    private final long refreshMillis;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+
+    //start of the last discarded users refresh, null before the first
+    private LocalDateTime discardedSince;
+
+    private final ConcurrentHashMap<String, Deletion> deletions =
+      new ConcurrentHashMap<>();
+
+    public AccountDeletionService(UserRepository userRepository,
+                                  MessageRepository messageRepository,
+                                  MoodRepository moodRepository,
+                                  JournalRepository journalRepository,
+                                  MoodRollupRepository moodRollupRepository,
+                                  AccountDeletionRepository accountDeletionRepository,
+                                  MessageWriteBehind messageWriteBehind,
+                                  ConversationContextService conversationContextService,
+                                  AiResponseCache aiResponseCache,
+                                  UserDetailsCache userDetailsCache,
+                                  RevokedUsers revokedUsers,
+                                  PlatformTransactionManager transactionManager,
+                                  @Qualifier("accountDeletionExecutor")
+                                  TaskExecutor executor,
+                                  @Value("${account.deletion.chunk-size:5000}")
+                                  int chunkSize,
+                                  @Value("${account.deletion.status-ttl-ms:3600000}")
+                                  long statusTtlMillis,
+                                  @Value("${jwt.revocation.refresh-ms:5000}")
+                                  long refreshMillis,
+                                  @Value("${account.deletion.retry-base-ms:60000}")
+                                  long retryBaseMillis,
+                                  @Value("${account.deletion.retry-max-ms:3600000}")
+                                  long retryMaxMillis) {
+        this.userRepository = userRepository;
+        this.messageRepository = messageRepository;
+        this.moodRepository = moodRepository;
+        this.journalRepository = journalRepository;
+        this.moodRollupRepository = moodRollupRepository;
+        this.accountDeletionRepository = accountDeletionRepository;
+        this.messageWriteBehind = messageWriteBehind;
+        this.conversationContextService = conversationContextService;
+        this.aiResponseCache = aiResponseCache;
+        this.userDetailsCache = userDetailsCache;
+        this.revokedUsers = revokedUsers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.statusTtlMillis = statusTtlMillis;
+        this.refreshMillis = refreshMillis;
+        this.retryBaseMillis = retryBaseMillis;
+        this.retryMaxMillis = retryMaxMillis;
+    }
+
+    private static final class Deletion {
+        private final String id;
+        private final Long userId;
+        private final LocalDateTime startedAt;
+        //table -> rows, in deletion order
+        private final Map<String, Long> deletedRows =
+          new LinkedHashMap<>();
+        private volatile State state = State.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile long finishedAtMillis;
+
+        private Deletion(String id, Long userId, LocalDateTime startedAt) {
+            this.id = id;
+            this.userId = userId;
+            this.startedAt = startedAt;
+        }
+
+        private synchronized void add(String table, long rows) {
+            deletedRows.merge(table, rows, Long::sum);
+        }
+
+        private synchronized Status status() {
+            return new Status(id, state, Collections.unmodifiableMap(
+              new LinkedHashMap<>(deletedRows)), startedAt, finishedAt);
+        }
+
+        private void finish(State state) {
+            this.finishedAt = LocalDateTime.now();
+            this.finishedAtMillis = System.currentTimeMillis();
+            this.state = state;
+        }
+    }
+
+    /**
+     * Start deleting an account, its tokens stop working right away
+     * @param userId the user's ID
+     * @return the status, its id is what {@link #getStatus} takes
+     */
+    public Status delete(Long userId) {
+        Deletion deletion = new Deletion(UUID.randomUUID()
+                                             .toString(), userId,
+                                         LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(
+          status -> accountDeletionRepository.save(
+            new AccountDeletion(deletion.id, userId, State.RUNNING.name(),
+                                deletion.startedAt)));
+        revokedUsers.revoke(userId);
+        start(deletion);
+        return deletion.status();
+    }
+
+    private void start(Deletion deletion) {
+        deletions.put(deletion.id, deletion);
+        executor.execute(() -> run(deletion));
+    }
+
+    /**
+     * Nothing of a deleted user may be written by this instance: all of them
+     * before the message spool is replayed at start, then the ones deleted
+     * since, also on other instances, on the revocation schedule
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-ms:5000}")
+    public synchronized void discardDeletedUsers() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            //overlapping the last refresh, for clocks of other instances
+            List<Long> userIds = discardedSince == null ?
+              accountDeletionRepository.findDeletedUserIds() :
+              accountDeletionRepository.findUserIdsDeletedSince(
+                discardedSince.minusMinutes(1));
+            userIds.forEach(messageWriteBehind::discard);
+            discardedSince = now;
+        } catch (RuntimeException e) {
+            log.warn("Error reading deleted users: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Resume the deletions that were running when the application stopped,
+     * every step can be repeated
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeDeletions() {
+        for (AccountDeletion row :
+          accountDeletionRepository.findByState(State.RUNNING.name())) {
+            log.info("Resuming deletion of account {}", row.getUserId());
+            revokedUsers.revoke(row.getUserId());
+            start(new Deletion(row.getId(), row.getUserId(),
+                               row.getStartedAt()));
+        }
+    }
+
+    /**
+     * Run the FAILED deletions again once their backoff has passed, claimed
+     * in the database so only one instance runs each
+     */
+    @Scheduled(initialDelayString = "${account.deletion.retry-base-ms:60000}",
+               fixedDelayString = "${account.deletion.retry-base-ms:60000}")
+    public void retryFailedDeletions() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (AccountDeletion row :
+              accountDeletionRepository.findByState(State.FAILED.name())) {
+                if (row.getFinishedAt() != null &&
+                  row.getFinishedAt()
+                     .plus(retryDelayMillis(row.getRetries()),
+                           ChronoUnit.MILLIS)
+                     .isAfter(now)) {
+                    continue;
+                }
+                Integer claimed = transactionTemplate.execute(
+                  status -> accountDeletionRepository.claimRetry(row.getId()));
+                if (claimed == null || claimed == 0) {
+                    continue;
+                }
+                log.info("Retrying deletion of account {}, retry {}",
+                         row.getUserId(), row.getRetries() + 1);
+                start(new Deletion(row.getId(), row.getUserId(),
+                                   row.getStartedAt()));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Error retrying failed deletions: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param retries times the deletion was retried already
+     * @return how long after failing it is run again
+     */
+    long retryDelayMillis(int retries) {
+        return Math.min(retryMaxMillis,
+                        retryBaseMillis << Math.min(retries, 20));
+    }
+
+    /**
+     * @param deletionId id returned by {@link #delete}
+     * @return the status, empty if unknown or expired. Row counts are only
+     * known on the instance that ran the deletion
+     */
+    public Optional<Status> getStatus(String deletionId) {
+        Deletion deletion = deletions.get(deletionId);
+        if (deletion != null) {
+            return Optional.of(deletion.status());
+        }
+        //ran on another instance or before a restart
+        LocalDateTime cutoff = LocalDateTime.now()
+                                            .minus(statusTtlMillis,
+                                                   ChronoUnit.MILLIS);
+        return accountDeletionRepository.findById(deletionId)
+                                        .filter(row -> row.getFinishedAt() ==
+                                          null || row.getFinishedAt()
+                                                     .isAfter(cutoff))
+                                        .map(AccountDeletionService::status);
+    }
+
+    private static Status status(AccountDeletion row) {
+        return new Status(row.getId(), State.valueOf(row.getState()),
+                          Map.of(), row.getStartedAt(), row.getFinishedAt());
+    }
+
+    private void run(Deletion deletion) {
+        Long userId = deletion.userId;
+        long start = System.nanoTime();
+        try {
+            //nothing buffered may be written or served after this
+            messageWriteBehind.discard(userId);
+            conversationContextService.forget(userId);
+            aiResponseCache.clear();
+            awaitOtherInstances(deletion);
+
+            deleteInChunks(deletion, "messages",
+                           id -> messageRepository.deleteChunkByUserId(id,
+                                                                       chunkSize));
+            deleteInChunks(deletion, "mood_logs",
+                           id -> moodRepository.deleteChunkByUserId(id,
+                                                                    chunkSize));
+            deleteInChunks(deletion, "journal_entries",
+                           id -> journalRepository.deleteChunkByUserId(id,
+                                                                       chunkSize));
+            Integer rollups = transactionTemplate.execute(
+              status -> moodRollupRepository.deleteByUserId(userId));
+            deletion.add("mood_rollups", rollups == null ? 0 : rollups);
+
+            //last, a failed deletion is retried with its account in place
+            Optional<User> user = userRepository.findById(userId);
+            if (user.isPresent()) {
+                transactionTemplate.executeWithoutResult(
+                  status -> userRepository.deleteById(userId));
+                userDetailsCache.invalidate(user.get()
+                                                .getEmail());
+                deletion.add("users", 1);
+            }
+
+            deletion.finish(State.DONE);
+            persistFinish(deletion);
+            log.info("Deleted account {}: {} in {} ms", userId,
+                     deletion.status()
+                             .deletedRows(),
+                     (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            deletion.finish(State.FAILED);
+            log.error("Deleting account {} failed after {}", userId,
+                      deletion.status()
+                              .deletedRows(), e);
+            persistFinish(deletion);
+        }
+    }
+
+    /**
+     * Wait until every instance has refreshed its discarded users since the
+     * tombstone was written, none of them writes the user's messages then
+     */
+    private void awaitOtherInstances(Deletion deletion) {
+        long waited = Duration.between(deletion.startedAt, LocalDateTime.now())
+                              .toMillis();
+        long left = 2 * refreshMillis - waited;
+        if (left <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(left);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+
+    private void persistFinish(Deletion deletion) {
+        try {
+            transactionTemplate.executeWithoutResult(
+              status -> accountDeletionRepository.finish(deletion.id,
+                                                         deletion.state.name(),
+                                                         deletion.finishedAt));
+        } catch (RuntimeException e) {
+            //still RUNNING in the database, resumed at the next start
+            log.warn("Error recording the end of deletion {}: {}",
+                     deletion.id, e.getMessage());
+        }
+    }
+
+    private void deleteInChunks(Deletion deletion, String table,
+                                ToIntFunction<Long> deleteChunk) {
+        deletion.add(table, 0);
+        while (true) {
+            Integer rows = transactionTemplate.execute(
+              status -> deleteChunk.applyAsInt(deletion.userId));
+            int deleted = rows == null ? 0 : rows;
+            deletion.add(table, deleted);
+            if (deleted < chunkSize) {
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${account.deletion.status-ttl-ms:3600000}")
+    public void expireStatuses() {
+        long cutoff = System.currentTimeMillis() - statusTtlMillis;
+        deletions.values()
+                 .removeIf(deletion -> deletion.state != State.RUNNING &&
+                   deletion.finishedAtMillis < cutoff);
+    }
+}
@@ -5,15 +5,26 @@ import org.chatbot.dto.LoginRequest;
 import org.chatbot.dto.RegisterRequest;
 import org.chatbot.model.User;
 import org.chatbot.repository.UserRepository;
+import org.chatbot.security.AuthThrottledException;
 import org.chatbot.security.CustomUserDetailsService;
+import org.chatbot.security.JwtAuthenticationFilter;
 import org.chatbot.security.JwtUtil;
+import org.chatbot.security.LoginThrottle;
+import org.chatbot.security.RevokedUsers;
+import org.chatbot.security.UserDetailsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.time.LocalDateTime;
 
@@ -24,6 +35,8 @@ import java.time.LocalDateTime;
 @Service
 public class AuthService {
 
+      private static final Logger log = LoggerFactory.getLogger( AuthService.class );
+
       @Autowired
       private UserRepository userRepository;
 
@@ -39,13 +52,23 @@ public class AuthService {
       @Autowired
       private CustomUserDetailsService userDetailsService;
 
+      @Autowired
+      private UserDetailsCache userDetailsCache;
+
+      @Autowired
+      private LoginThrottle loginThrottle;
+
+      @Autowired
+      private RevokedUsers revokedUsers;
+
       /**
        * Register a new user
        *
-       * @param request Registration details
+       * @param request       Registration details
+       * @param clientAddress Address of the caller, for throttling
        * @return Authentication response with JWT token
        */
-      public AuthResponse register( RegisterRequest request ) {
+      public AuthResponse register( RegisterRequest request, String clientAddress ) {
             //Validate input
             if ( request.getName() == null || request.getName()
                     .trim()
@@ -62,25 +85,37 @@ public class AuthService {
                   throw new IllegalArgumentException( "Password must be at least 6 characters" );
             }
 
+            //throttle before any lookup or hashing
+            loginThrottle.acquire( null, clientAddress );
+
+            //emails are stored in lowercase, so checked that way too
+            String email = request.getEmail()
+                    .toLowerCase();
+
             //check if email already exists
-            if ( userRepository.existsByEmail( request.getEmail() ) ) {
+            if ( userRepository.existsByEmail( email ) ) {
                   throw new IllegalArgumentException( "Email already registered" );
             }
 
             //Create a new user
             User user = new User();
             user.setName( request.getName() );
-            user.setEmail( request.getEmail()
-                    .toLowerCase() ); //store email in lowercase
+            user.setEmail( email );
             user.setPasswordHash(
                     passwordEncoder.encode( request.getPassword() ) ); //hash password with BCrypt
             user.setCreatedAt( LocalDateTime.now() );
 
-            //Save to database
-            User savedUser = userRepository.save( user );
+            //Save to database, a concurrent sign-up with the same email
+            //passes the check above but hits the unique index (ux_users_email)
+            User savedUser;
+            try {
+                  savedUser = userRepository.save( user );
+            } catch ( DataIntegrityViolationException e ) {
+                  throw new IllegalArgumentException( "Email already registered" );
+            }
+            userDetailsCache.invalidate( savedUser.getEmail() );
 
-            System.out.println(
-                    "New user registered: " + savedUser.getEmail() + " (ID: " + savedUser.getId() + ")" );
+            log.info( "New user registered (ID: {})", savedUser.getId() );
 
             //Generate JWT Token
             UserDetails userDetails = userDetailsService.loadUserByUsername( savedUser.getEmail() );
@@ -98,10 +133,11 @@ public class AuthService {
       /**
        * Authenticate user and generate JWT Token
        *
-       * @param request Login credentials
+       * @param request       Login credentials
+       * @param clientAddress Address of the caller, for throttling
        * @return Authentication response with JWT token
        */
-      public AuthResponse login( LoginRequest request ) {
+      public AuthResponse login( LoginRequest request, String clientAddress ) {
             try {
                   //Validate input
                   if ( request.getEmail() == null || request.getEmail()
@@ -118,6 +154,9 @@ public class AuthService {
                   String email = request.getEmail()
                           .toLowerCase();
 
+                  //throttle per email and address before the password check
+                  loginThrottle.acquire( email, clientAddress );
+
                   //Authenticate with Spring Security
                   authenticationManager.authenticate(
                           new UsernamePasswordAuthenticationToken( email, request.getPassword() )
@@ -127,11 +166,15 @@ public class AuthService {
                   UserDetails userDetails = userDetailsService.loadUserByUsername( email );
                   User user = userDetailsService.loadUserEntityByEmail( email );
 
+                  //account being deleted, its tokens would be rejected anyway
+                  if ( revokedUsers.isRevoked( user.getId() ) ) {
+                        throw new IllegalArgumentException( "Invalid email or password" );
+                  }
+
                   //Generate JWT Token
                   String token = jwtUtil.generateToken( userDetails, user.getId() );
 
-                  System.out.println(
-                          "User logged in: " + user.getEmail() + " (ID: " + user.getId() + ")" );
+                  log.info( "User logged in (ID: {})", user.getId() );
 
                   //Return authentication response
                   return new AuthResponse(
@@ -142,6 +185,12 @@ public class AuthService {
                   );
             } catch ( BadCredentialsException e ) {
                   throw new IllegalArgumentException( "Invalid email or password" );
+            } catch ( InternalAuthenticationServiceException e ) {
+                  //hashing pool saturated while looking the user up
+                  if ( e.getCause() instanceof AuthThrottledException throttled ) {
+                        throw throttled;
+                  }
+                  throw e;
             }
       }
 
@@ -155,6 +204,16 @@ public class AuthService {
             if ( token != null && token.startsWith( "Bearer " ) ) {
                   token = token.substring( 7 );
             }
+
+            // reuse what the JWT filter already parsed for this request
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if ( attributes != null && token != null
+                    && token.equals( attributes.getAttribute( JwtAuthenticationFilter.TOKEN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST ) ) ) {
+                  Object userId = attributes.getAttribute( JwtAuthenticationFilter.USER_ID_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST );
+                  if ( userId instanceof Long id ) {
+                        return id;
+                  }
+            }
             return jwtUtil.extractUserId( token );
       }
 
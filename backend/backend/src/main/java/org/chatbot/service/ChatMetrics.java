@@ -0,0 +1,172 @@
+package org.chatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.chatbot.AiService.TokenEstimator;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Timers and counters for the stages of a chat message
+ * chat.stage{stage}: risk check, context build, inference, persistence
+ * chat.inference.ttft: time to the first streamed token
+ * ai.tokens.generated / ai.tokens.rate: output tokens and tokens per second
+ * chat.risk.assessments{result, lexicon}: risk checks per lexicon version
+ */
+@Component
+public class ChatMetrics {
+
+    public enum Stage {
+        RISK, CONTEXT, INFERENCE, PERSISTENCE;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    //weight of the newest generation in the token rate
+    private static final double RATE_DECAY = 0.2;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Timer firstTokenTimer;
+    private final Counter tokenCounter;
+
+    //one per result and lexicon version, a reload adds a version
+    private final Map<RiskTags, Counter> riskCounters =
+      new ConcurrentHashMap<>();
+
+    private record RiskTags(boolean risky, String lexicon) {
+    }
+
+    //tokens per second, moving average, stored as double bits
+    private final AtomicLong tokenRate = new AtomicLong(
+      Double.doubleToLongBits(0));
+
+    public ChatMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("chat.stage")
+                                        .tag("stage", stage.tag)
+                                        .description(
+                                          "Time spent in one stage of a chat message")
+                                        .register(meterRegistry));
+        }
+        this.firstTokenTimer = Timer.builder("chat.inference.ttft")
+                                    .description(
+                                      "Time from starting a streamed reply to its first token")
+                                    .register(meterRegistry);
+        this.tokenCounter = Counter.builder("ai.tokens.generated")
+                                   .description(
+                                     "Tokens generated by the AI (stream chunks, or estimated)")
+                                   .register(meterRegistry);
+        Gauge.builder("ai.tokens.rate", this, ChatMetrics::getTokenRate)
+             .description(
+               "Moving average of generated tokens per second per reply")
+             .register(meterRegistry);
+    }
+
+    public <T> T time(Stage stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            stageTimers.get(stage)
+                       .record(System.nanoTime() - start,
+                               TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void time(Stage stage, Runnable work) {
+        time(stage, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public void recordRisk(RiskAssessment risk) {
+        riskCounters.computeIfAbsent(
+                      new RiskTags(risk.risky(),
+                                   String.valueOf(risk.lexiconVersion())),
+                      tags -> Counter.builder("chat.risk.assessments")
+                                     .tag("result",
+                                          tags.risky() ? "risky" : "safe")
+                                     .tag("lexicon", tags.lexicon())
+                                     .description(
+                                       "Risk checks on user messages")
+                                     .register(meterRegistry))
+                    .increment();
+    }
+
+    /**
+     * Time a whole (not streamed) reply, its tokens are estimated from the
+     * text
+     */
+    public String timeInference(Supplier<String> call) {
+        long start = System.nanoTime();
+        String reply = time(Stage.INFERENCE, call);
+        recordTokens(TokenEstimator.estimate(reply), System.nanoTime() - start);
+        return reply;
+    }
+
+    /**
+     * Start timing a streamed reply, pass {@link InferenceTimer#wrap} on as
+     * the token callback and call {@link InferenceTimer#finish} at the end
+     */
+    public InferenceTimer startInference() {
+        return new InferenceTimer();
+    }
+
+    public final class InferenceTimer {
+        private final long startNanos = System.nanoTime();
+        private long firstTokenNanos;
+        private int chunks;
+
+        public Consumer<String> wrap(Consumer<String> onToken) {
+            return token -> {
+                if (chunks++ == 0) {
+                    firstTokenNanos = System.nanoTime();
+                    firstTokenTimer.record(firstTokenNanos - startNanos,
+                                           TimeUnit.NANOSECONDS);
+                }
+                onToken.accept(token);
+            };
+        }
+
+        public void finish() {
+            long end = System.nanoTime();
+            stageTimers.get(Stage.INFERENCE)
+                       .record(end - startNanos, TimeUnit.NANOSECONDS);
+            if (chunks > 0) {
+                //decode speed, the wait for the first token is in ttft
+                recordTokens(chunks, end - firstTokenNanos);
+            }
+        }
+    }
+
+    private void recordTokens(int tokens, long elapsedNanos) {
+        tokenCounter.increment(tokens);
+        if (tokens < 2 || elapsedNanos <= 0) {
+            return;
+        }
+        double rate = tokens / (elapsedNanos / 1e9);
+        tokenRate.getAndUpdate(bits -> {
+            double current = Double.longBitsToDouble(bits);
+            return Double.doubleToLongBits(current == 0 ? rate :
+                                             current + RATE_DECAY *
+                                               (rate - current));
+        });
+    }
+
+    public double getTokenRate() {
+        return Double.longBitsToDouble(tokenRate.get());
+    }
+}
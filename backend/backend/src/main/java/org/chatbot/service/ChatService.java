@@ -1,18 +1,35 @@
 package org.chatbot.service;
 
 
-import org.chatbot.AiService.GPT4ALLApiService;
-
+import org.chatbot.AiService.ChatTurn;
+import org.chatbot.AiService.InferenceBackend;
+import org.chatbot.AiService.InferenceFailedException;
+import org.chatbot.AiService.InferenceQueueFullException;
+import org.chatbot.AiService.InferenceScheduler;
+
+import org.chatbot.dto.MessagePage;
+import org.chatbot.dto.MessageView;
 import org.chatbot.model.Message;
 import org.chatbot.repository.MessageRepository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 
 /**
@@ -22,6 +39,33 @@ import java.util.List;
 @Service
 public class ChatService {
 
+    private static final Logger log =
+      LoggerFactory.getLogger(ChatService.class);
+
+    private static final String AI_UNAVAILABLE_MESSAGE =
+      "⚠️ AI service is not available. Please make sure " +
+        "GPT4All is running with the API server enabled " +
+        "(Settings > Application > Enable Local API Server).";
+
+    private static final String AI_UNREACHABLE_MESSAGE =
+      "⚠️ Cannot connect to AI service. Please make sure GPT4All is " +
+        "running with API server enabled (Settings > Enable Local API " +
+        "Server).";
+
+    private static final String AI_FAILED_MESSAGE =
+      "I apologize, but i'm having trouble generating a response right " +
+        "now. Please try again.";
+
+    private static final String AI_ERROR_MESSAGE =
+      "I'm here to listen. I'm having a brief technical difficulty, but " +
+        "please know that your wellbeing matters. If you're in crisis, " +
+        "please reach out to a crisis hotline or emergency services.";
+
+    //shown instead of an AI reply, never saved as one
+    private static final Set<String> FALLBACK_MESSAGES = Set.of(
+      AI_UNAVAILABLE_MESSAGE, AI_UNREACHABLE_MESSAGE, AI_FAILED_MESSAGE,
+      AI_ERROR_MESSAGE);
+
     //inject the msg repository for database operations
     @Autowired
     private MessageRepository messageRepository;
@@ -30,35 +74,74 @@ public class ChatService {
     @Autowired
     private SentimentService sentimentService;
 
-    //using GPT4ALL instead of OpenAI
+    //GPT4ALL API or the stub, picked by ai.provider
     @Autowired
-    private GPT4ALLApiService gpt4ALLApiService;
+    private InferenceBackend inferenceBackend;
+
+    //limits how many requests hit the AI at once, fair per user
+    @Autowired
+    private InferenceScheduler inferenceScheduler;
+
+    //writes messages in the background, in batches
+    @Autowired
+    private MessageWriteBehind messageWriteBehind;
+
+    //recent turns of the conversation, sent along as context
+    @Autowired
+    private ConversationContextService conversationContextService;
+
+    //timers for every stage of a msg
+    @Autowired
+    private ChatMetrics chatMetrics;
+
+    //history page size when the client does not ask for one
+    @Value("${chat.history.default-limit:50}")
+    private int historyDefaultLimit;
+
+    @Value("${chat.history.max-limit:200}")
+    private int historyMaxLimit;
 
 
     /**
      * Process a user msg: send to AI, analyze sentiment, save to database
      * @param userMessage the message text from the user
      * @return AI's response text
+     * @throws InferenceQueueFullException if the AI is too busy
      */
 
     //TODO for testing we are accepting userId
     public String processMessage(String userMessage, Long userId) {
         try {
             // step 1: Check msg for risk/crisis indicators
-            boolean isRisky = sentimentService.detectRisk(userMessage);
-
-            // step 2: Get AI response from GPT4All
-            String aiResponse = getAIResponse(userMessage, isRisky);
+            RiskAssessment risk = assessRisk(userMessage);
+            boolean isRisky = risk.risky();
+
+            //earlier turns of the conversation that fit the token budget,
+            //built once for the cache lookup and the request
+            String systemPrompt = buildSystemPrompt(isRisky);
+            List<ChatTurn> history = buildHistory(userId, systemPrompt,
+                                                  userMessage);
+
+            // step 2: Get AI response, from the cache for a repeated first
+            // message, else from GPT4All (waits for a free slot)
+            String aiResponse = getCachedAIResponse(userMessage, isRisky,
+              userId, systemPrompt, history);
+            if (aiResponse == null) {
+                aiResponse = inferenceScheduler.run(userId,
+                  () -> getAIResponse(userMessage, isRisky, userId,
+                                      systemPrompt, history));
+            }
 
-            // step 3: save both messages to database
-            saveMessage(userMessage, "user", userId);
-            saveMessage(aiResponse, "ai", userId);
+            // step 3: queue both messages for the database
+            saveExchange(userMessage, aiResponse, userId);
 
             return aiResponse;
 
+        } catch (InferenceQueueFullException e) {
+            // let the controller answer with 429 + Retry-After
+            throw e;
         } catch (Exception e) {
-            System.err.println(
-              "Error processing message: " + e.getMessage());
+            log.error("Error processing message", e);
             // return a fallback message
             return
               "I'm having trouble connecting right now. Please try again" +
@@ -66,30 +149,53 @@ public class ChatService {
         }
     }
 
+    /**
+     * Get an earlier AI response to the same context-free prompt
+     * answered without waiting for an inference slot
+     * @param userMessage the user's msg
+     * @param isRisky whether the msg contains risk indicators
+     * @param userId the user's ID
+     * @param systemPrompt the system prompt for the AI
+     * @param history earlier turns sent along as context
+     * @return AI's response, or null when it is not cached
+     */
+    private String getCachedAIResponse(String userMessage, boolean isRisky,
+                                       Long userId, String systemPrompt,
+                                       List<ChatTurn> history) {
+        if (!inferenceBackend.isResponseCacheEnabled()) {
+            return null;
+        }
+        String aiResponse = inferenceBackend.cachedResponse(userMessage,
+          systemPrompt, history);
+        if (aiResponse == null) {
+            return null;
+        }
+        conversationContextService.recordExchange(userId, userMessage,
+          aiResponse);
+        return isRisky ?
+          aiResponse + "\n\n" + sentimentService.getCrisisResources() :
+          aiResponse;
+    }
+
     /**
      * Get AI response using GPT4All API
      * @param userMessage the user's msg
      * @param isRisky whether the msg contains risk indicators
+     * @param userId the user's ID
+     * @param systemPrompt the system prompt for the AI
+     * @param history earlier turns sent along as context
      * @return AI' response
      */
-    private String getAIResponse(String userMessage, boolean isRisky) {
+    private String getAIResponse(String userMessage, boolean isRisky,
+                                 Long userId, String systemPrompt,
+                                 List<ChatTurn> history) {
         try {
-            // Check if GPT4All is ready
-            if (!gpt4ALLApiService.isApiAvailable()) {
-                return
-                  "⚠️ AI service is not available. Please make sure " +
-                    "GPT4All is running with the API server enabled " +
-                    "(Settings > Application > Enable Local API Server).";
+            // Check if GPT4All is ready (cached state, no extra request)
+            if (!inferenceBackend.isApiAvailable()) {
+                return AI_UNAVAILABLE_MESSAGE;
             }
 
 
-            //build the request body with system promt and user msg
-            String systemPrompt = isRisky ? "You are a supportive mental" +
-              " health assistant. Respond briefly with empathy in 2-3 " +
-              "sentences. Suggest professional help if needed." : "You " +
-              "are a supportive mental health assistant. Respond briefly" +
-              " with empathy in 2-3 sentences.";
-
             //TODO: use later on prod
 //                                            """
 //                                            You are a compassionate
@@ -119,9 +225,21 @@ public class ChatService {
 //                                                  Limit your reply to
 //                                                  100 words.
 //                                                  """;
+
             //Generate response using GPT4All
-            String aiResponse = gpt4ALLApiService.generateResponse(
-              userMessage, systemPrompt);
+            String aiResponse;
+            try {
+                aiResponse = chatMetrics.timeInference(
+                  () -> inferenceBackend.generateResponse(userMessage,
+                                                          systemPrompt,
+                                                          history));
+            } catch (InferenceFailedException e) {
+                //the fallback msg is shown, but never becomes context
+                return e.isUnreachable() ? AI_UNREACHABLE_MESSAGE :
+                  AI_FAILED_MESSAGE;
+            }
+            conversationContextService.recordExchange(userId, userMessage,
+              aiResponse);
 
             //if response indicates crisis, add resources
             if (isRisky) {
@@ -133,44 +251,210 @@ public class ChatService {
 
 
         } catch (Exception e) {
-            System.err.println(
-              "Error getting AI response: " + e.getMessage());
-            e.printStackTrace();
-            return "I'm here to listen. I'm having a brief technical " +
-              "difficulty, but " +
-              "please know that your wellbeing matters. " +
-              "If you're in crisis, please reach out to a crisis " +
-              "hotline or " + "emergency services.";
+            log.error("Error getting AI response", e);
+            return AI_ERROR_MESSAGE;
         }
     }
 
 
     /**
-     * Save a message to the database
-     * @param text the msg text
-     * @param sender either "user" or "Ai"
+     * Process a user msg as a token stream: analyze risk, stream the AI
+     * response token by token, then save both messages once the stream is
+     * done
+     * @param userMessage the message text from the user
+     * @param userId the user's ID
+     * @param onToken called for every piece of the AI response, in order
+     * @return the full AI response text (as saved to the database)
+     * @throws InferenceQueueFullException if the AI is too busy
      */
-    //TODO accept userId while testing
-    private void saveMessage(String text, String sender, Long userId) {
-        Message message = new Message();
-        message.setText(text);
-        message.setSender(sender);
-        message.setTimestamp(LocalDateTime.now());
-        //todo while tesitng
-        message.setUserId(userId);
-
-        //todo remember to add authentication to userId
-
-        messageRepository.save(message);
+    public String streamMessage(String userMessage, Long userId,
+                                Consumer<String> onToken) {
+        // step 1: Check msg for risk/crisis indicators
+        RiskAssessment risk = assessRisk(userMessage);
+        boolean isRisky = risk.risky();
+
+        String systemPrompt = buildSystemPrompt(isRisky);
+        List<ChatTurn> history = buildHistory(userId, systemPrompt,
+                                              userMessage);
+
+        // a repeated first message may already have an answer
+        String aiResponse = inferenceBackend.cachedResponse(userMessage,
+          systemPrompt, history);
+        if (aiResponse != null) {
+            onToken.accept(aiResponse);
+        } else {
+            // Check if GPT4All is ready (cached state, no extra request)
+            if (!inferenceBackend.isApiAvailable()) {
+                onToken.accept(AI_UNAVAILABLE_MESSAGE);
+                //like on the sync path, only the user msg is saved
+                saveExchange(userMessage, AI_UNAVAILABLE_MESSAGE, userId);
+                return AI_UNAVAILABLE_MESSAGE;
+            }
+
+            // step 2: stream AI response from GPT4All (waits for a free slot)
+            // timed from the slot, the queue wait has its own timer
+            aiResponse = inferenceScheduler.run(userId, () -> {
+                ChatMetrics.InferenceTimer timer =
+                  chatMetrics.startInference();
+                try {
+                    return inferenceBackend.streamResponse(userMessage,
+                      systemPrompt, history, timer.wrap(onToken));
+                } finally {
+                    timer.finish();
+                }
+            });
+        }
+        conversationContextService.recordExchange(userId, userMessage,
+          aiResponse);
+
+        //if response indicates crisis, add resources as the last piece
+        if (isRisky) {
+            String resources = "\n\n" + sentimentService.getCrisisResources();
+            onToken.accept(resources);
+            aiResponse += resources;
+        }
+
+        // step 3: queue both messages once the stream has completed
+        saveExchange(userMessage, aiResponse, userId);
+
+        return aiResponse;
+    }
+
+    /**
+     * Risk check, timed and counted per lexicon version
+     */
+    private RiskAssessment assessRisk(String userMessage) {
+        RiskAssessment risk = chatMetrics.time(ChatMetrics.Stage.RISK,
+          () -> sentimentService.assessRisk(userMessage));
+        chatMetrics.recordRisk(risk);
+        return risk;
+    }
+
+    private List<ChatTurn> buildHistory(Long userId, String systemPrompt,
+                                        String userMessage) {
+        return chatMetrics.time(ChatMetrics.Stage.CONTEXT,
+          () -> conversationContextService.buildHistory(userId, systemPrompt,
+                                                        userMessage));
+    }
+
+    /**
+     * Build the system prompt for the AI
+     * @param isRisky whether the msg contains risk indicators
+     * @return system prompt text
+     */
+    private String buildSystemPrompt(boolean isRisky) {
+        return isRisky ? "You are a supportive mental" +
+          " health assistant. Respond briefly with empathy in 2-3 " +
+          "sentences. Suggest professional help if needed." : "You " +
+          "are a supportive mental health assistant. Respond briefly" +
+          " with empathy in 2-3 sentences.";
+    }
+
+    /**
+     * Save the user msg and the AI reply to the database
+     * they are queued and written together in the background. A fallback
+     * msg is not an AI reply: only the user msg is saved then, and it is
+     * left out of the context loaded from the database
+     * @param userMessage the user's msg text
+     * @param aiResponse the AI's reply text
+     * @param userId the user's ID
+     */
+    private void saveExchange(String userMessage, String aiResponse,
+                              Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        Message message = new Message(userMessage, "user", now, userId);
+        List<Message> exchange = FALLBACK_MESSAGES.contains(aiResponse) ?
+          List.of(message) :
+          List.of(message, new Message(aiResponse, "ai", now, userId));
+        chatMetrics.time(ChatMetrics.Stage.PERSISTENCE,
+          () -> messageWriteBehind.enqueue(exchange));
     }
 
     /**
-     *  Get chat history for a specific user
+     * One page of chat history, keyset-paged on (timestamp, id)
+     * without a cursor the latest {@code limit} messages are returned
      * @param userId the user's ID
-     * @return list of msg
+     * @param before cursor: only messages older than this one
+     * @param after cursor: only messages newer than this one
+     * @param limit page size, null for the default
+     * @return the page, oldest message first
+     * @throws IllegalArgumentException on a bad cursor or both cursors given
+     */
+    public MessagePage getChatHistoryPage(Long userId, String before,
+                                          String after, Integer limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException(
+              "Use either before or after, not both");
+        }
+        int size = limit == null ? historyDefaultLimit :
+          Math.max(1, Math.min(limit, historyMaxLimit));
+        //one extra row tells if there is more
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<MessageView> rows;
+        if (after != null) {
+            Cursor cursor = Cursor.decode(after);
+            rows = messageRepository.findViewsAfter(userId,
+                                                    cursor.timestamp(),
+                                                    cursor.id(), page);
+        } else if (before != null) {
+            Cursor cursor = Cursor.decode(before);
+            rows = messageRepository.findViewsBefore(userId,
+                                                     cursor.timestamp(),
+                                                     cursor.id(), page);
+        } else {
+            rows = messageRepository.findLatestViews(userId, page);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<MessageView> messages =
+          new ArrayList<>(rows.subList(0, Math.min(size, rows.size())));
+        if (after == null) {
+            //queried newest first, pages are oldest first
+            Collections.reverse(messages);
+        }
+
+        if (messages.isEmpty()) {
+            //keep polling from the same place when there is nothing newer
+            return new MessagePage(messages, null, after, false);
+        }
+        return new MessagePage(messages,
+                               Cursor.of(messages.get(0)).encode(),
+                               Cursor.of(messages.get(messages.size() - 1))
+                                     .encode(),
+                               hasMore);
+    }
+
+    /**
+     * Position of a message in the (timestamp, id) order, sent to the
+     * client as an opaque base64 string
      */
-    public List<Message> getChatHistory(Long userId) {
-        return messageRepository.findByUserIdOrderByTimestampAsc(userId);
+    private record Cursor(LocalDateTime timestamp, Long id) {
+
+        static Cursor of(MessageView message) {
+            return new Cursor(message.getTimestamp(), message.getId());
+        }
+
+        String encode() {
+            String raw = timestamp + "|" + id;
+            return Base64.getUrlEncoder()
+                         .withoutPadding()
+                         .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value) {
+            try {
+                String raw = new String(Base64.getUrlDecoder()
+                                              .decode(value),
+                                        StandardCharsets.UTF_8);
+                int bar = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, bar)),
+                                  Long.parseLong(raw.substring(bar + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException |
+                     IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid history cursor");
+            }
+        }
     }
 
 
@@ -0,0 +1,376 @@
+package org.chatbot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Population-level mood statistics: daily average and distribution, the
+ * shift in distribution over the last days, and the share of users whose
+ * mood trends down
+ * A batch job, not per-user queries: the user id range is split into
+ * partitions that are read in parallel (fork-join) with a server-side
+ * cursor, each into a {@link CohortSummary}; the summaries are merged and
+ * written to cohort_mood_runs / cohort_mood_days
+ */
+@Service
+public class CohortAnalyticsService {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(CohortAnalyticsService.class);
+
+    private static final String SCAN_SQL =
+      "SELECT user_id, date, mood FROM mood_logs " +
+        "WHERE user_id >= ? AND user_id < ? AND date BETWEEN ? AND ? " +
+        "ORDER BY user_id, date";
+
+    private final JdbcTemplate jdbcTemplate;
+    //same data source, reads row by row instead of the whole result
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final Timer runTimer;
+    //scheduled runs, off the @Scheduled threads
+    private final TaskExecutor executor;
+
+    private final int windowDays;
+    private final int recentDays;
+    private final int usersPerPartition;
+    private final int parallelism;
+    private final int minLogs;
+    private final double trendSlope;
+    private final int keepRuns;
+
+    //a scheduled run and a slow previous one must not overlap
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    public CohortAnalyticsService(DataSource dataSource,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Qualifier("cohortAnalyticsExecutor")
+                                  TaskExecutor executor,
+                                  @Value("${analytics.cohort.days:90}")
+                                  int windowDays,
+                                  @Value("${analytics.cohort.recent-days:7}")
+                                  int recentDays,
+                                  @Value("${analytics.cohort.users-per-partition:5000}")
+                                  int usersPerPartition,
+                                  @Value("${analytics.cohort.parallelism:4}")
+                                  int parallelism,
+                                  @Value("${analytics.cohort.fetch-size:1000}")
+                                  int fetchSize,
+                                  @Value("${analytics.cohort.trend.min-logs:5}")
+                                  int minLogs,
+                                  @Value("${analytics.cohort.trend.slope-per-day:0.02}")
+                                  double trendSlope,
+                                  @Value("${analytics.cohort.keep-runs:30}")
+                                  int keepRuns) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        //the PostgreSQL driver only uses a cursor outside auto-commit
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.runTimer = Timer.builder("analytics.cohort.run")
+                             .description(
+                               "Time to compute and store the cohort mood statistics")
+                             .register(meterRegistry);
+        this.executor = executor;
+        this.windowDays = windowDays;
+        this.recentDays = recentDays;
+        this.usersPerPartition = usersPerPartition;
+        this.parallelism = parallelism;
+        this.minLogs = minLogs;
+        this.trendSlope = trendSlope;
+        this.keepRuns = keepRuns;
+    }
+
+    /**
+     * Start the run for yesterday on the cohort executor and return, the
+     * scheduler thread is free for the other jobs right away
+     */
+    @Scheduled(cron = "${analytics.cohort.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        try {
+            executor.execute(() -> {
+                try {
+                    run(LocalDate.now()
+                                 .minusDays(1));
+                } catch (RuntimeException e) {
+                    log.error("Cohort analytics run failed", e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.info("Cohort analytics already running, skipped");
+        }
+    }
+
+    /**
+     * Compute the statistics of the window ending on {@code lastDay} and
+     * store them as the newest run
+     * @return the merged summary, empty if a run was already going on
+     */
+    public Optional<CohortSummary> run(LocalDate lastDay) {
+        if (!runLock.tryLock()) {
+            log.info("Cohort analytics already running, skipped");
+            return Optional.empty();
+        }
+        try {
+            long start = System.nanoTime();
+            LocalDate firstDay = lastDay.minusDays(windowDays - 1);
+            CohortSummary summary = aggregate(firstDay, lastDay);
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            store(summary, lastDay, durationMs);
+            runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.info("Cohort analytics for {} to {}: {} logs, {} users, {} " +
+                       "trending down, took {} ms", firstDay, lastDay,
+                     summary.getTotalLogs(), summary.getActiveUsers(),
+                     summary.getUsersTrendingDown(), durationMs);
+            return Optional.of(summary);
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private CohortSummary aggregate(LocalDate firstDay, LocalDate lastDay) {
+        long[] range = jdbcTemplate.queryForObject(
+          "SELECT MIN(user_id), MAX(user_id) FROM mood_logs " +
+            "WHERE date BETWEEN ? AND ?",
+          (rs, i) -> rs.getObject(1) == null ? null :
+            new long[]{rs.getLong(1), rs.getLong(2)},
+          Date.valueOf(firstDay), Date.valueOf(lastDay));
+        if (range == null) {
+            return new CohortSummary(firstDay, windowDays);
+        }
+        try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+            return pool.invoke(
+              new PartitionTask(firstDay, lastDay, range[0], range[1] + 1));
+        }
+    }
+
+    /**
+     * Users [fromUser, toUser), split in halves down to
+     * usersPerPartition ids, each leaf read in its own transaction
+     */
+    private final class PartitionTask extends RecursiveTask<CohortSummary> {
+
+        private final LocalDate firstDay;
+        private final LocalDate lastDay;
+        private final long fromUser;
+        private final long toUser;
+
+        PartitionTask(LocalDate firstDay, LocalDate lastDay, long fromUser,
+                      long toUser) {
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.fromUser = fromUser;
+            this.toUser = toUser;
+        }
+
+        @Override
+        protected CohortSummary compute() {
+            if (toUser - fromUser <= usersPerPartition) {
+                return scan(firstDay, lastDay, fromUser, toUser);
+            }
+            long middle = fromUser + (toUser - fromUser) / 2;
+            PartitionTask lower = new PartitionTask(firstDay, lastDay,
+                                                    fromUser, middle);
+            lower.fork();
+            CohortSummary upper = new PartitionTask(firstDay, lastDay, middle,
+                                                    toUser).compute();
+            return upper.merge(lower.join());
+        }
+    }
+
+    private CohortSummary scan(LocalDate firstDay, LocalDate lastDay,
+                               long fromUser, long toUser) {
+        CohortSummary summary = new CohortSummary(firstDay, windowDays);
+        UserTrend trend = new UserTrend();
+        long firstEpochDay = firstDay.toEpochDay();
+        //rows come ordered by user, a new user id closes the previous one
+        RowCallbackHandler handler = rs -> {
+            long userId = rs.getLong(1);
+            int day = (int) (rs.getDate(2)
+                               .toLocalDate()
+                               .toEpochDay() - firstEpochDay);
+            int mood = rs.getInt(3);
+            if (userId != trend.userId) {
+                finishUser(summary, trend);
+                trend.reset(userId);
+            }
+            summary.addLog(day, mood);
+            trend.add(day, mood);
+        };
+        readOnlyTemplate.executeWithoutResult(
+          status -> cursorTemplate.query(SCAN_SQL, handler, fromUser, toUser,
+                                         Date.valueOf(firstDay),
+                                         Date.valueOf(lastDay)));
+        finishUser(summary, trend);
+        return summary;
+    }
+
+    private void finishUser(CohortSummary summary, UserTrend trend) {
+        if (trend.logs == 0) {
+            return;
+        }
+        double slope = trend.logs >= minLogs ? trend.slope() : 0;
+        summary.addUser(slope <= -trendSlope ? -1 : slope >= trendSlope ? 1 : 0);
+    }
+
+    /**
+     * Least squares slope of one user's ratings over the days of the window
+     */
+    private static final class UserTrend {
+        long userId = Long.MIN_VALUE;
+        int logs;
+        double sumX;
+        double sumY;
+        double sumXY;
+        double sumXX;
+
+        void reset(long userId) {
+            this.userId = userId;
+            logs = 0;
+            sumX = sumY = sumXY = sumXX = 0;
+        }
+
+        void add(int day, int mood) {
+            logs++;
+            sumX += day;
+            sumY += mood;
+            sumXY += (double) day * mood;
+            sumXX += (double) day * day;
+        }
+
+        //rating change per day
+        double slope() {
+            double denominator = logs * sumXX - sumX * sumX;
+            return denominator == 0 ? 0 :
+              (logs * sumXY - sumX * sumY) / denominator;
+        }
+    }
+
+    private void store(CohortSummary summary, LocalDate lastDay,
+                       long durationMs) {
+        transactionTemplate.executeWithoutResult(status -> {
+            KeyHolder key = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement insert = connection.prepareStatement(
+                  "INSERT INTO cohort_mood_runs (computed_at, first_day, " +
+                    "last_day, log_count, active_users, users_trending_down, " +
+                    "users_trending_up, distribution_shift, duration_ms) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                  new String[]{"id"});
+                insert.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                insert.setDate(2, Date.valueOf(summary.getFirstDay()));
+                insert.setDate(3, Date.valueOf(lastDay));
+                insert.setLong(4, summary.getTotalLogs());
+                insert.setInt(5, summary.getActiveUsers());
+                insert.setInt(6, summary.getUsersTrendingDown());
+                insert.setInt(7, summary.getUsersTrendingUp());
+                insert.setDouble(8, summary.distributionShift(recentDays));
+                insert.setLong(9, durationMs);
+                return insert;
+            }, key);
+            long runId = key.getKey()
+                            .longValue();
+
+            List<Object[]> days = new ArrayList<>();
+            for (int day = 0; day < summary.getDays(); day++) {
+                days.add(new Object[]{runId,
+                  Date.valueOf(summary.getFirstDay()
+                                      .plusDays(day)),
+                  summary.getLogCount(day), summary.getMoodSum(day),
+                  summary.getMoodCount(day, 1), summary.getMoodCount(day, 2),
+                  summary.getMoodCount(day, 3), summary.getMoodCount(day, 4),
+                  summary.getMoodCount(day, 5)});
+            }
+            jdbcTemplate.batchUpdate(
+              "INSERT INTO cohort_mood_days (run_id, date, log_count, " +
+                "mood_sum, mood_1, mood_2, mood_3, mood_4, mood_5) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", days);
+
+            jdbcTemplate.update(
+              "DELETE FROM cohort_mood_runs WHERE id NOT IN (SELECT id FROM " +
+                "cohort_mood_runs ORDER BY id DESC LIMIT ?)", keepRuns);
+        });
+    }
+
+    /**
+     * @return the newest run, empty if the job has not run yet
+     */
+    public Optional<CohortReport> getLatestReport() {
+        Long runId = jdbcTemplate.queryForObject(
+          "SELECT MAX(id) FROM cohort_mood_runs", Long.class);
+        if (runId == null) {
+            return Optional.empty();
+        }
+        List<CohortReport.Day> days = readDays(runId);
+        return Optional.ofNullable(jdbcTemplate.queryForObject(
+          "SELECT computed_at, first_day, last_day, active_users, " +
+            "users_trending_down, users_trending_up, distribution_shift " +
+            "FROM cohort_mood_runs WHERE id = ?", (rs, i) -> {
+              int activeUsers = rs.getInt("active_users");
+              int trendingDown = rs.getInt("users_trending_down");
+              return new CohortReport(rs.getTimestamp("computed_at")
+                                        .toLocalDateTime(),
+                                      rs.getDate("first_day")
+                                        .toLocalDate(),
+                                      rs.getDate("last_day")
+                                        .toLocalDate(), activeUsers,
+                                      trendingDown,
+                                      rs.getInt("users_trending_up"),
+                                      activeUsers == 0 ? 0 :
+                                        (double) trendingDown / activeUsers,
+                                      rs.getDouble("distribution_shift"),
+                                      days);
+          }, runId));
+    }
+
+    private List<CohortReport.Day> readDays(long runId) {
+        return jdbcTemplate.query(
+          "SELECT date, log_count, mood_sum, mood_1, mood_2, mood_3, mood_4, " +
+            "mood_5 FROM cohort_mood_days WHERE run_id = ? ORDER BY date",
+          (rs, i) -> {
+              int logCount = rs.getInt("log_count");
+              return new CohortReport.Day(rs.getDate("date")
+                                            .toLocalDate(), logCount,
+                                          logCount == 0 ? 0 :
+                                            (double) rs.getLong("mood_sum") /
+                                              logCount,
+                                          new int[]{rs.getInt("mood_1"),
+                                            rs.getInt("mood_2"),
+                                            rs.getInt("mood_3"),
+                                            rs.getInt("mood_4"),
+                                            rs.getInt("mood_5")});
+          }, runId);
+    }
+}
@@ -0,0 +1,34 @@
+package org.chatbot.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The newest cohort analytics run, as served by /actuator/cohort on the
+ * management port
+ * @param computedAt when the run finished
+ * @param firstDay first day of the window
+ * @param lastDay last day of the window
+ * @param activeUsers users with a mood log in the window
+ * @param usersTrendingDown users whose mood went down over the window
+ * @param usersTrendingUp users whose mood went up over the window
+ * @param shareTrendingDown usersTrendingDown / activeUsers
+ * @param distributionShift rating distribution of the last days against
+ * the rest of the window, 0 to 1
+ * @param days one entry per day of the window
+ */
+public record CohortReport(LocalDateTime computedAt, LocalDate firstDay,
+                           LocalDate lastDay, int activeUsers,
+                           int usersTrendingDown, int usersTrendingUp,
+                           double shareTrendingDown, double distributionShift,
+                           List<Day> days) {
+
+    /**
+     * @param averageMood mean rating of the day's logs (0 if none)
+     * @param moodDistribution logs per rating, 1 first
+     */
+    public record Day(LocalDate date, int logCount, double averageMood,
+                      int[] moodDistribution) {
+    }
+}
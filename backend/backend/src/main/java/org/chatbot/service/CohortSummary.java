@@ -0,0 +1,148 @@
+package org.chatbot.service;
+
+import java.time.LocalDate;
+
+/**
+ * Mood statistics of a group of users over a window of days, built from a
+ * partition of the mood logs and merged with the other partitions
+ * Per day: number of logs, sum and count per rating. Per user: whether
+ * their mood trends down or up over the window
+ */
+public final class CohortSummary {
+
+    private final LocalDate firstDay;
+    private final int days;
+    private final int[] logCount;
+    private final long[] moodSum;
+    //days x 5 ratings
+    private final int[] moodCounts;
+
+    private long totalLogs;
+    private int activeUsers;
+    private int usersTrendingDown;
+    private int usersTrendingUp;
+
+    public CohortSummary(LocalDate firstDay, int days) {
+        this.firstDay = firstDay;
+        this.days = days;
+        this.logCount = new int[days];
+        this.moodSum = new long[days];
+        this.moodCounts = new int[days * 5];
+    }
+
+    /**
+     * @param day days since firstDay
+     * @param mood rating 1-5
+     */
+    public void addLog(int day, int mood) {
+        logCount[day]++;
+        moodSum[day] += mood;
+        moodCounts[day * 5 + mood - 1]++;
+        totalLogs++;
+    }
+
+    /**
+     * Count a user with logs in the window
+     * @param trend below 0 trending down, above 0 trending up, 0 neither
+     */
+    public void addUser(int trend) {
+        activeUsers++;
+        if (trend < 0) {
+            usersTrendingDown++;
+        } else if (trend > 0) {
+            usersTrendingUp++;
+        }
+    }
+
+    /**
+     * Add the counts of another partition of the same window
+     * @return this summary
+     */
+    public CohortSummary merge(CohortSummary other) {
+        if (!firstDay.equals(other.firstDay) || days != other.days) {
+            throw new IllegalArgumentException(
+              "Summaries of different windows cannot be merged");
+        }
+        for (int i = 0; i < days; i++) {
+            logCount[i] += other.logCount[i];
+            moodSum[i] += other.moodSum[i];
+        }
+        for (int i = 0; i < moodCounts.length; i++) {
+            moodCounts[i] += other.moodCounts[i];
+        }
+        totalLogs += other.totalLogs;
+        activeUsers += other.activeUsers;
+        usersTrendingDown += other.usersTrendingDown;
+        usersTrendingUp += other.usersTrendingUp;
+        return this;
+    }
+
+    /**
+     * How far the rating distribution of the last {@code recentDays} days
+     * moved from the days before them: total variation distance, 0 (same
+     * shares per rating) to 1 (no rating in common)
+     */
+    public double distributionShift(int recentDays) {
+        int split = Math.max(0, days - recentDays);
+        long[] before = new long[5];
+        long[] recent = new long[5];
+        for (int day = 0; day < days; day++) {
+            long[] target = day < split ? before : recent;
+            for (int mood = 0; mood < 5; mood++) {
+                target[mood] += moodCounts[day * 5 + mood];
+            }
+        }
+        long beforeTotal = before[0] + before[1] + before[2] + before[3] +
+          before[4];
+        long recentTotal = recent[0] + recent[1] + recent[2] + recent[3] +
+          recent[4];
+        if (beforeTotal == 0 || recentTotal == 0) {
+            return 0;
+        }
+        double distance = 0;
+        for (int mood = 0; mood < 5; mood++) {
+            distance += Math.abs((double) before[mood] / beforeTotal -
+                                   (double) recent[mood] / recentTotal);
+        }
+        return distance / 2;
+    }
+
+    public LocalDate getFirstDay() {
+        return firstDay;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public int getLogCount(int day) {
+        return logCount[day];
+    }
+
+    public long getMoodSum(int day) {
+        return moodSum[day];
+    }
+
+    /**
+     * @param mood rating 1-5
+     */
+    public int getMoodCount(int day, int mood) {
+        return moodCounts[day * 5 + mood - 1];
+    }
+
+    public long getTotalLogs() {
+        return totalLogs;
+    }
+
+    public int getActiveUsers() {
+        return activeUsers;
+    }
+
+    public int getUsersTrendingDown() {
+        return usersTrendingDown;
+    }
+
+    public int getUsersTrendingUp() {
+        return usersTrendingUp;
+    }
+}
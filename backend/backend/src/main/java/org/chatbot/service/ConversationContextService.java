@@ -0,0 +1,210 @@
+package org.chatbot.service;
+
+import org.chatbot.AiService.ChatTurn;
+import org.chatbot.AiService.TokenEstimator;
+import org.chatbot.model.Message;
+import org.chatbot.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This service builds the conversation history sent along with each msg
+ * Recent turns are kept per user in a small in-memory ring buffer, so
+ * building the context costs no database query on the hot path. The
+ * buffer is filled from the database only the first time a user chats
+ * after a restart (or after being evicted). Turns are kept, trimmed and
+ * loaded as whole exchanges (user msg + AI reply), so the history never
+ * starts with a reply to a msg that is not in it
+ */
+@Service
+public class ConversationContextService {
+
+    /**
+     * One user msg and the AI reply to it
+     */
+    private record Exchange(ChatTurn user, ChatTurn assistant) {
+    }
+
+    /**
+     * Ring buffer with the most recent exchanges of one user
+     */
+    private static final class RecentTurns {
+        private final ArrayDeque<Exchange> exchanges;
+        private final int capacity;
+        //a lock, not synchronized: a virtual thread waiting for a monitor
+        //pins its carrier thread
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private RecentTurns(int capacity) {
+            this.capacity = capacity;
+            this.exchanges = new ArrayDeque<>(capacity);
+        }
+
+        private void add(Exchange exchange) {
+            lock.lock();
+            try {
+                if (exchanges.size() == capacity) {
+                    exchanges.pollFirst();
+                }
+                exchanges.addLast(exchange);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private List<Exchange> newestFirst() {
+            lock.lock();
+            try {
+                List<Exchange> copy = new ArrayList<>(exchanges.size());
+                Iterator<Exchange> it = exchanges.descendingIterator();
+                while (it.hasNext()) {
+                    copy.add(it.next());
+                }
+                return copy;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    // model context window: system prompt + history + user msg + reply
+    @Value("${ai.context.max-tokens:2048}")
+    private int maxContextTokens;
+
+    // room kept free for the reply
+    @Value("${ai.max.tokens:150}")
+    private int replyTokens;
+
+    // how many turns (user + ai msgs) are kept per user, as
+    // max-turns / 2 exchanges
+    @Value("${ai.context.max-turns:10}")
+    private int maxTurns;
+
+    // how many users keep their buffer in memory (least recently used
+    // users are dropped and reloaded from the database when they return)
+    @Value("${ai.context.max-users:10000}")
+    private int maxUsers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, RecentTurns> buffers =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Build the history to send before the new user msg, oldest first,
+     * trimmed so that system prompt + history + msg + the reply fit the
+     * context window
+     * @param userId the user's ID
+     * @param systemPrompt the system prompt that will be sent
+     * @param userMessage the new user msg
+     * @return history turns that fit, oldest first (may be empty)
+     */
+    public List<ChatTurn> buildHistory(Long userId, String systemPrompt,
+                                       String userMessage) {
+        int budget = maxContextTokens - replyTokens - TokenEstimator.estimate(
+          ChatTurn.system(systemPrompt)) - TokenEstimator.estimate(
+          ChatTurn.user(userMessage));
+
+        //newest exchange first, reversed at the end
+        List<ChatTurn> history = new ArrayList<>();
+        for (Exchange exchange : recentTurns(userId).newestFirst()) {
+            budget -= TokenEstimator.estimate(exchange.user()) +
+              TokenEstimator.estimate(exchange.assistant());
+            if (budget < 0) {
+                break;
+            }
+            history.add(exchange.assistant());
+            history.add(exchange.user());
+        }
+        Collections.reverse(history);
+        return history;
+    }
+
+    /**
+     * Remember a finished exchange so it is part of the next context
+     * @param userId the user's ID
+     * @param userMessage what the user sent
+     * @param aiResponse what the AI answered
+     */
+    public void recordExchange(Long userId, String userMessage,
+                               String aiResponse) {
+        recentTurns(userId).add(new Exchange(ChatTurn.user(userMessage),
+                                             ChatTurn.assistant(aiResponse)));
+    }
+
+    /**
+     * Drop the buffered turns of a user (e.g. when the account is deleted)
+     * @param userId the user's ID
+     */
+    public void forget(Long userId) {
+        lock.lock();
+        try {
+            buffers.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the ring buffer for a user, loading it from the database once
+     */
+    private RecentTurns recentTurns(Long userId) {
+        lock.lock();
+        try {
+            RecentTurns turns = buffers.get(userId);
+            if (turns != null) {
+                return turns;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // cold start: load outside the lock so other users are not blocked
+        // one msg more, the oldest may be a reply whose msg was cut off
+        RecentTurns loaded = new RecentTurns(Math.max(1, maxTurns / 2));
+        List<Message> recent =
+          messageRepository.findByUserIdOrderByTimestampDescIdDesc(
+            userId, Limit.of(maxTurns + 1));
+        for (int i = recent.size() - 1; i > 0; i--) {
+            //a user msg with the reply right after it, a user msg without
+            //one (no AI reply was saved) is skipped
+            Message message = recent.get(i);
+            Message reply = recent.get(i - 1);
+            if (!"ai".equals(message.getSender()) &&
+              "ai".equals(reply.getSender())) {
+                loaded.add(new Exchange(ChatTurn.user(message.getText()),
+                                        ChatTurn.assistant(reply.getText())));
+                i--;
+            }
+        }
+
+        lock.lock();
+        try {
+            RecentTurns existing = buffers.putIfAbsent(userId, loaded);
+            if (buffers.size() > maxUsers) {
+                // access order: first entry is the least recently used
+                Iterator<Map.Entry<Long, RecentTurns>> eldest =
+                  buffers.entrySet()
+                         .iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return existing != null ? existing : loaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
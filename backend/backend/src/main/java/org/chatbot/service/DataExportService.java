@@ -0,0 +1,241 @@
+package org.chatbot.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.chatbot.dto.MessageView;
+import org.chatbot.model.JournalEntry;
+import org.chatbot.model.MoodLog;
+import org.chatbot.model.User;
+import org.chatbot.repository.JournalRepository;
+import org.chatbot.repository.MessageRepository;
+import org.chatbot.repository.MoodRepository;
+import org.chatbot.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export of everything a user owns: profile, chat messages, mood logs and
+ * journal entries, as NDJSON (one {"type", "data"} object per line) or as
+ * a zip with one NDJSON file per kind
+ * Rows are read in keyset chunks, each from a cursor in its own short
+ * read-only transaction, and written to the output between chunks. Memory
+ * stays at one chunk and no connection is held while the client reads
+ */
+@Service
+public class DataExportService {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(DataExportService.class);
+
+    public enum Format {
+        NDJSON, ZIP
+    }
+
+    //keyset start, before any row
+    private static final LocalDate FIRST_DATE = LocalDate.EPOCH;
+    private static final LocalDateTime FIRST_TIME = FIRST_DATE.atStartOfDay();
+
+    private final UserRepository userRepository;
+    private final MessageRepository messageRepository;
+    private final MoodRepository moodRepository;
+    private final JournalRepository journalRepository;
+    private final TransactionTemplate readOnlyTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final int chunkSize;
+    private final Semaphore exports;
+
+    public DataExportService(UserRepository userRepository,
+                             MessageRepository messageRepository,
+                             MoodRepository moodRepository,
+                             JournalRepository journalRepository,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${account.export.chunk-size:500}")
+                             int chunkSize,
+                             @Value("${account.export.max-concurrent:4}")
+                             int maxConcurrent) {
+        this.userRepository = userRepository;
+        this.messageRepository = messageRepository;
+        this.moodRepository = moodRepository;
+        this.journalRepository = journalRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.exports = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Take one of the account.export.max-concurrent export slots
+     * @return the slot, to close when the export is done, or empty if all
+     * are in use
+     */
+    public Optional<Slot> reserve() {
+        return exports.tryAcquire() ? Optional.of(new Slot()) :
+          Optional.empty();
+    }
+
+    public final class Slot implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                exports.release();
+            }
+        }
+    }
+
+    /**
+     * Write the user's data to {@code out}, left open
+     */
+    public void export(Long userId, Format format, OutputStream out)
+      throws IOException {
+        long start = System.nanoTime();
+        long rows;
+        if (format == Format.ZIP) {
+            rows = exportZip(userId, out);
+        } else {
+            rows = exportNdjson(userId, out);
+        }
+        log.info("Exported {} rows for user {} as {} in {} ms", rows, userId,
+                 format, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long exportNdjson(Long userId, OutputStream out)
+      throws IOException {
+        try (JsonGenerator generator = generator(out)) {
+            long rows = 0;
+            for (Kind<?> kind : kinds(userId)) {
+                rows += kind.write(generator, true);
+            }
+            return rows;
+        }
+    }
+
+    private long exportZip(Long userId, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        long rows = 0;
+        for (Kind<?> kind : kinds(userId)) {
+            zip.putNextEntry(new ZipEntry(kind.name + ".ndjson"));
+            try (JsonGenerator generator = generator(zip)) {
+                rows += kind.write(generator, false);
+            }
+            zip.closeEntry();
+        }
+        //ends the archive, the response stream stays open
+        zip.finish();
+        return rows;
+    }
+
+    private JsonGenerator generator(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory()
+                                              .createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private List<Kind<?>> kinds(Long userId) {
+        Limit limit = Limit.of(chunkSize);
+        Kind<User> profile = new Kind<>("profile", last -> last != null ?
+          Stream.empty() : userRepository.findById(userId)
+                                         .stream(), DataExportService::profile);
+        Kind<MessageView> messages = new Kind<>("messages", last ->
+          messageRepository.streamViewsAfter(userId, last == null ?
+            FIRST_TIME : last.getTimestamp(), last == null ? 0L :
+            last.getId(), limit), null);
+        Kind<MoodLog> moods = new Kind<>("moods", last ->
+          moodRepository.streamByUserIdAndDateAfterOrderByDateAsc(userId,
+            last == null ? FIRST_DATE : last.getDate(), limit), null);
+        Kind<JournalEntry> journal = new Kind<>("journal", last ->
+          journalRepository.streamAfter(userId, last == null ? FIRST_DATE :
+            last.getDate(), last == null ? 0L : last.getId(), limit), null);
+        return List.of(profile, messages, moods, journal);
+    }
+
+    //the account without the password hash and the entity relations
+    private static Object profile(User user) {
+        return new Profile(user.getId(), user.getName(), user.getEmail(),
+                           user.getCreatedAt());
+    }
+
+    record Profile(Long id, String name, String email,
+                   LocalDateTime createdAt) {
+    }
+
+    /**
+     * One kind of row: how to read the chunk after a row, and what to write
+     * @param <T> row type
+     */
+    private final class Kind<T> {
+        private final String name;
+        //next chunk after the given row (null: from the start)
+        private final Function<T, Stream<T>> chunkAfter;
+        //what is written for a row (null: the row itself)
+        private final Function<T, Object> view;
+
+        Kind(String name, Function<T, Stream<T>> chunkAfter,
+             Function<T, Object> view) {
+            this.name = name;
+            this.chunkAfter = chunkAfter;
+            this.view = view;
+        }
+
+        /**
+         * @param typed wrap each row as {"type": name, "data": row}
+         * @return rows written
+         */
+        long write(JsonGenerator generator, boolean typed) throws IOException {
+            long rows = 0;
+            T last = null;
+            while (true) {
+                T after = last;
+                List<T> chunk = readOnlyTemplate.execute(status -> {
+                    try (Stream<T> stream = chunkAfter.apply(after)) {
+                        return stream.toList();
+                    }
+                });
+                for (T row : chunk) {
+                    Object data = view == null ? row : view.apply(row);
+                    if (typed) {
+                        generator.writeStartObject();
+                        generator.writeStringField("type", name);
+                        generator.writeFieldName("data");
+                        generator.writeObject(data);
+                        generator.writeEndObject();
+                    } else {
+                        generator.writeObject(data);
+                    }
+                    generator.writeRaw('\n');
+                }
+                //push the chunk to the client before reading the next one
+                generator.flush();
+                rows += chunk.size();
+                if (chunk.size() < chunkSize) {
+                    return rows;
+                }
+                last = chunk.get(chunk.size() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.chatbot.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick multi-keyword matcher
+ * All keywords are compiled once into an automaton, then a message is
+ * scanned a single time no matter how many keywords there are. Case is
+ * folded while scanning, so the message is never copied or lowercased,
+ * and a scan does not allocate.
+ * Matching is on substrings, like {@code String.contains}.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class KeywordMatcher {
+
+    /**
+     * What kind of keyword was found
+     */
+    public enum Category {
+        CRISIS, DISTRESS, POSITIVE, NEGATIVE
+    }
+
+    /**
+     * Receives every keyword hit of a scan, in order of where it ends
+     */
+    @FunctionalInterface
+    public interface HitListener {
+        /**
+         * @param keywordIndex index of the keyword (see {@link #keyword(int)})
+         * @param category category of the keyword
+         * @param start index of the first char of the hit in the text
+         * @param end index after the last char of the hit
+         * @return true to keep scanning, false to stop
+         */
+        boolean onHit(int keywordIndex, Category category, int start, int end);
+    }
+
+    private final String[] keywords;
+    private final Category[] categories;
+
+    // transitions of state s are edgeChars/edgeTargets[edgeStart[s] ..
+    // edgeStart[s + 1]), sorted by char for binary search
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+
+    private final int[] fail;
+    // keyword ending exactly in this state, or -1
+    private final int[] output;
+    // next state on the fail chain that has an output, or -1
+    private final int[] outputLink;
+
+    private KeywordMatcher(List<String> keywordList,
+                           List<Category> categoryList) {
+        this.keywords = keywordList.toArray(new String[0]);
+        this.categories = categoryList.toArray(new Category[0]);
+
+        // 1. build the trie (only here we allocate freely)
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        outputs.add(-1);
+        for (int k = 0; k < keywords.length; k++) {
+            int state = 0;
+            String keyword = keywords[k];
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = fold(keyword.charAt(i));
+                Integer next = trie.get(state)
+                                   .get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    outputs.add(-1);
+                    trie.get(state)
+                        .put(c, next);
+                }
+                state = next;
+            }
+            // duplicates: the first occurrence wins
+            if (outputs.get(state) < 0) {
+                outputs.set(state, k);
+            }
+        }
+
+        // 2. flatten the trie into arrays
+        int states = trie.size();
+        int edges = 0;
+        for (TreeMap<Character, Integer> node : trie) {
+            edges += node.size();
+        }
+        edgeStart = new int[states + 1];
+        edgeChars = new char[edges];
+        edgeTargets = new int[edges];
+        output = new int[states];
+        int e = 0;
+        for (int s = 0; s < states; s++) {
+            edgeStart[s] = e;
+            for (Map.Entry<Character, Integer> edge : trie.get(s)
+                                                          .entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+            output[s] = outputs.get(s);
+        }
+        edgeStart[states] = e;
+
+        // 3. fail and output links, breadth first
+        fail = new int[states];
+        outputLink = new int[states];
+        outputLink[0] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int i = edgeStart[0]; i < edgeStart[1]; i++) {
+            fail[edgeTargets[i]] = 0;
+            outputLink[edgeTargets[i]] = -1;
+            queue.add(edgeTargets[i]);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int i = edgeStart[s]; i < edgeStart[s + 1]; i++) {
+                int child = edgeTargets[i];
+                char c = edgeChars[i];
+                int f = fail[s];
+                int next;
+                while ((next = transition(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next < 0 ? 0 : next;
+                int failState = fail[child];
+                outputLink[child] = output[failState] >= 0 ? failState :
+                                    outputLink[failState];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Start building a matcher
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Scan a text once and report every keyword hit
+     * @param text the text to scan
+     * @param listener receives each hit
+     */
+    public void scan(CharSequence text, HitListener listener) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next < 0 ? 0 : next;
+
+            int hit = output[state] >= 0 ? state : outputLink[state];
+            while (hit >= 0) {
+                int k = output[hit];
+                if (!listener.onHit(k, categories[k],
+                                    i + 1 - keywords[k].length(), i + 1)) {
+                    return;
+                }
+                hit = outputLink[hit];
+            }
+        }
+    }
+
+    /**
+     * @return the keyword at this index (as it was added)
+     */
+    public String keyword(int index) {
+        return keywords[index];
+    }
+
+    /**
+     * @return the category of the keyword at this index
+     */
+    public Category category(int index) {
+        return categories[index];
+    }
+
+    /**
+     * @return number of keywords in this matcher
+     */
+    public int size() {
+        return keywords.length;
+    }
+
+    private int transition(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Case folding applied to keywords and text alike
+     * typographic apostrophes count as a plain ' so "can’t" matches "can't"
+     */
+    private static char fold(char c) {
+        if (c == '’' || c == '‘') {
+            return '\'';
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Collects keywords before compiling them into a matcher
+     */
+    public static final class Builder {
+        private final List<String> keywords = new ArrayList<>();
+        private final List<Category> categories = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Add keywords of one category (empty keywords are ignored)
+         */
+        public Builder add(Category category, List<String> words) {
+            for (String word : words) {
+                if (word != null && !word.isEmpty()) {
+                    keywords.add(word);
+                    categories.add(category);
+                }
+            }
+            return this;
+        }
+
+        public KeywordMatcher build() {
+            return new KeywordMatcher(keywords, categories);
+        }
+    }
+}
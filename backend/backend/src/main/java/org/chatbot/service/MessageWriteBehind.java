@@ -0,0 +1,557 @@
+package org.chatbot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.chatbot.model.Message;
+import org.chatbot.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind persistence for chat messages
+ * An exchange (the user msg and the AI reply) is queued as one unit and
+ * written later by a background thread, many units per transaction and
+ * JDBC batch, so the reply does not wait for the database.
+ * - queue full: the exchange is written right away on the caller's thread
+ * - flush fails: on a bad row each exchange is tried on its own, what still
+ *   fails is appended to a spool file and replayed later, one exchange per
+ *   transaction; an exchange the database keeps refusing is moved to a
+ *   .rejected file so it can not hold up the rest
+ * - shutdown: the queue is drained before the database goes away
+ */
+@Service
+public class MessageWriteBehind implements SmartLifecycle {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(MessageWriteBehind.class);
+
+    /**
+     * One spooled message, the id is assigned again on replay
+     */
+    record SpooledMessage(String text, String sender, LocalDateTime timestamp,
+                          long userId) {
+    }
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long shutdownTimeoutMs;
+    private final Path spoolPath;
+    private final int replayMaxAttempts;
+
+    //one element per exchange, so a pair always lands in the same batch
+    private final BlockingQueue<List<Message>> queue;
+
+    //read: enqueueing, write: stopping (no offer can slip past the drain)
+    private final ReentrantReadWriteLock acceptLock =
+      new ReentrantReadWriteLock();
+    private boolean accepting;
+    private volatile boolean running;
+    private Thread flusher;
+
+    private final ReentrantLock spoolLock = new ReentrantLock();
+
+    //read: writing messages, write: discarding a user (waits for the writes
+    //already under way, later ones see the user as discarded)
+    private final ReentrantReadWriteLock writeLock =
+      new ReentrantReadWriteLock();
+
+    //deleted accounts, ids are never reused so one Long per deletion is kept
+    private final Set<Long> discarded = ConcurrentHashMap.newKeySet();
+
+    //spool line -> replays the database refused it in
+    private final Map<String, Integer> replayFailures =
+      new ConcurrentHashMap<>();
+
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+    private final Counter directCounter;
+    private final Counter spooledCounter;
+
+    public MessageWriteBehind(MessageRepository messageRepository,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.persist.write-behind:true}")
+                              boolean enabled,
+                              @Value("${chat.persist.queue-capacity:10000}")
+                              int queueCapacity,
+                              @Value("${chat.persist.batch-size:50}")
+                              int batchSize,
+                              @Value("${chat.persist.flush-interval-ms:200}")
+                              long flushIntervalMs,
+                              @Value("${chat.persist.shutdown-timeout-ms:10000}")
+                              long shutdownTimeoutMs,
+                              @Value("${chat.persist.spool-path:data/message-spool.ndjson}")
+                              String spoolPath,
+                              @Value("${chat.persist.replay-max-attempts:3}")
+                              int replayMaxAttempts) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.spoolPath = Path.of(spoolPath);
+        this.replayMaxAttempts = replayMaxAttempts;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.flushTimer = Timer.builder("chat.persist.flush")
+                               .description(
+                                 "Time to write one batch of chat messages")
+                               .register(meterRegistry);
+        this.writtenCounter = Counter.builder("chat.persist.messages")
+                                     .tag("path", "batch")
+                                     .description("Chat messages written")
+                                     .register(meterRegistry);
+        this.directCounter = Counter.builder("chat.persist.messages")
+                                    .tag("path", "direct")
+                                    .description("Chat messages written")
+                                    .register(meterRegistry);
+        this.spooledCounter = Counter.builder("chat.persist.messages")
+                                     .tag("path", "spooled")
+                                     .description("Chat messages written")
+                                     .register(meterRegistry);
+        Gauge.builder("chat.persist.queue.depth", queue, BlockingQueue::size)
+             .description("Chat exchanges waiting to be written")
+             .register(meterRegistry);
+    }
+
+    /**
+     * Drop the queued exchanges of a user and refuse later ones (a reply
+     * still being generated, the spool), nothing of a deleted account may
+     * be written after its rows are gone. Returns once a batch being
+     * written meanwhile is committed, the user's rows can be deleted then
+     */
+    public void discard(Long userId) {
+        if (discarded.add(userId)) {
+            queue.removeIf(exchange -> exchange.get(0)
+                                               .getUserId() == userId);
+        }
+        writeLock.writeLock()
+                 .lock();
+        writeLock.writeLock()
+                 .unlock();
+    }
+
+    /**
+     * Queue the messages of one exchange, written together in one transaction
+     * @param messages the user msg and the AI reply, in order
+     */
+    public void enqueue(List<Message> messages) {
+        if (discarded.contains(messages.get(0)
+                                       .getUserId())) {
+            return;
+        }
+        acceptLock.readLock()
+                  .lock();
+        try {
+            if (accepting && queue.offer(messages)) {
+                return;
+            }
+        } finally {
+            acceptLock.readLock()
+                      .unlock();
+        }
+        //disabled, stopped or full: write it now
+        writeDirect(messages);
+    }
+
+    private void writeDirect(List<Message> messages) {
+        try {
+            directCounter.increment(save(messages));
+        } catch (Exception e) {
+            log.warn("Error saving chat messages: {}", e.getMessage());
+            spool(List.of(messages));
+        }
+    }
+
+    /**
+     * Background loop: wait for the first exchange, then collect more until
+     * the batch is full or the flush interval has passed
+     */
+    private void runFlusher() {
+        List<List<Message>> batch = new ArrayList<>();
+        while (running) {
+            try {
+                List<Message> first = queue.poll(flushIntervalMs,
+                                                 TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                int count = first.size();
+                long deadline = System.nanoTime() +
+                  TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (count < batchSize) {
+                    long left = deadline - System.nanoTime();
+                    List<Message> next = left > 0 ?
+                      queue.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    count += next.size();
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write the exchanges in one transaction; if a row is refused, write
+     * them one by one so only the bad exchange is spooled
+     */
+    private void flush(List<List<Message>> batch) {
+        List<Message> messages = new ArrayList<>();
+        batch.forEach(messages::addAll);
+        long start = System.nanoTime();
+        try {
+            writtenCounter.increment(save(messages));
+        } catch (Exception e) {
+            log.warn("Error writing chat message batch: {}", e.getMessage());
+            if (!isRowError(e) || batch.size() == 1) {
+                //database trouble, one by one would only fail slower
+                spool(batch);
+                return;
+            }
+            List<List<Message>> failed = new ArrayList<>();
+            for (List<Message> exchange : batch) {
+                List<Message> copy = unsaved(exchange);
+                try {
+                    writtenCounter.increment(save(copy));
+                } catch (Exception ex) {
+                    failed.add(exchange);
+                }
+            }
+            spool(failed);
+        } finally {
+            flushTimer.record(System.nanoTime() - start,
+                              TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Write messages in one transaction, leaving out those of deleted
+     * accounts
+     * @return messages written
+     */
+    private int save(List<Message> messages) {
+        writeLock.readLock()
+                 .lock();
+        try {
+            List<Message> kept = messages.stream()
+                                         .filter(m -> !discarded.contains(
+                                           m.getUserId()))
+                                         .toList();
+            if (!kept.isEmpty()) {
+                transactionTemplate.executeWithoutResult(
+                  status -> messageRepository.saveAll(kept));
+            }
+            return kept.size();
+        } finally {
+            writeLock.readLock()
+                     .unlock();
+        }
+    }
+
+    /**
+     * Copies without the ids a rolled back save left on the messages, a
+     * message with an id would be merged instead of inserted
+     */
+    private static List<Message> unsaved(List<Message> messages) {
+        List<Message> copies = new ArrayList<>();
+        for (Message m : messages) {
+            copies.add(new Message(m.getText(), m.getSender(),
+                                   m.getTimestamp(), m.getUserId()));
+        }
+        return copies;
+    }
+
+    /**
+     * @return true if the database refused the rows themselves (a
+     * constraint, a value too long), retrying will not help them; false
+     * when the database could not be reached
+     */
+    static boolean isRowError(Exception e) {
+        return e instanceof NonTransientDataAccessException &&
+          !(e instanceof NonTransientDataAccessResourceException);
+    }
+
+    /**
+     * Append exchanges to the spool file, one JSON array per line
+     */
+    private void spool(List<List<Message>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        spoolLock.lock();
+        try {
+            Path parent = spoolPath.toAbsolutePath()
+                                   .getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(spoolPath,
+              StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+              StandardOpenOption.APPEND)) {
+                for (List<Message> exchange : batch) {
+                    List<SpooledMessage> line = new ArrayList<>();
+                    for (Message m : exchange) {
+                        line.add(new SpooledMessage(m.getText(), m.getSender(),
+                                                    m.getTimestamp(),
+                                                    m.getUserId()));
+                    }
+                    writer.write(objectMapper.writeValueAsString(line));
+                    writer.newLine();
+                    spooledCounter.increment(line.size());
+                }
+            }
+        } catch (IOException e) {
+            //nowhere left to put them
+            log.error("Lost {} chat exchanges, spool failed", batch.size(), e);
+        } finally {
+            spoolLock.unlock();
+        }
+    }
+
+    /**
+     * Write spooled exchanges back to the database, each in its own
+     * transaction. The file is moved aside first, so new failures can keep
+     * appending; once it is done the spool written meanwhile is replayed too
+     */
+    @Scheduled(initialDelayString = "${chat.persist.replay-interval-ms:60000}",
+               fixedDelayString = "${chat.persist.replay-interval-ms:60000}")
+    public void replaySpool() {
+        Path replaying = spoolPath.resolveSibling(
+          spoolPath.getFileName() + ".replay");
+        boolean done = true;
+        while (done) {
+            List<String> lines;
+            spoolLock.lock();
+            try {
+                if (!Files.exists(replaying)) {
+                    if (!Files.exists(spoolPath)) {
+                        return;
+                    }
+                    Files.move(spoolPath, replaying,
+                               StandardCopyOption.ATOMIC_MOVE);
+                }
+                lines = Files.readAllLines(replaying, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                log.warn("Error reading message spool: {}", e.getMessage());
+                return;
+            } finally {
+                spoolLock.unlock();
+            }
+            done = replay(replaying, lines);
+        }
+    }
+
+    /**
+     * Replay the lines of one file, then keep only the ones to try again
+     * @return true if nothing is left in the file
+     */
+    private boolean replay(Path replaying, List<String> lines) {
+        List<String> kept = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+        int written = 0;
+        boolean unreachable = false;
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (unreachable) {
+                kept.add(line);
+                continue;
+            }
+            List<Message> exchange;
+            try {
+                exchange = readExchange(line);
+            } catch (JsonProcessingException e) {
+                //a torn line can not be fixed by retrying
+                log.warn("Rejecting unreadable spool line: {}",
+                         e.getMessage());
+                rejected.add(line);
+                continue;
+            }
+            try {
+                written += save(exchange);
+                replayFailures.remove(line);
+            } catch (Exception e) {
+                if (!isRowError(e)) {
+                    //the rest is left in place, tried again on the next run
+                    log.warn("Error replaying message spool: {}",
+                             e.getMessage());
+                    unreachable = true;
+                    kept.add(line);
+                    continue;
+                }
+                int failures = replayFailures.merge(line, 1, Integer::sum);
+                if (failures < replayMaxAttempts) {
+                    kept.add(line);
+                } else {
+                    log.warn("Rejecting spooled chat exchange after {} " +
+                               "attempts: {}", failures, e.getMessage());
+                    replayFailures.remove(line);
+                    rejected.add(line);
+                }
+            }
+        }
+        writtenCounter.increment(written);
+        if (written > 0) {
+            log.info("Replayed {} spooled chat messages", written);
+        }
+
+        spoolLock.lock();
+        try {
+            if (!rejected.isEmpty()) {
+                Files.write(spoolPath.resolveSibling(
+                              spoolPath.getFileName() + ".rejected"),
+                            rejected, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+            }
+            if (kept.isEmpty()) {
+                Files.delete(replaying);
+                return true;
+            }
+            //written next to it and moved, a crash leaves one whole file
+            Path rewritten = replaying.resolveSibling(
+              replaying.getFileName() + ".tmp");
+            Files.write(rewritten, kept, StandardCharsets.UTF_8);
+            Files.move(rewritten, replaying,
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Error rewriting message spool: {}", e.getMessage());
+        } finally {
+            spoolLock.unlock();
+        }
+        return false;
+    }
+
+    /**
+     * @return the messages of one spool line
+     */
+    private List<Message> readExchange(String line)
+      throws JsonProcessingException {
+        List<SpooledMessage> spooled = objectMapper.readValue(line,
+          new TypeReference<List<SpooledMessage>>() {
+          });
+        List<Message> exchange = new ArrayList<>();
+        for (SpooledMessage s : spooled) {
+            exchange.add(new Message(s.text(), s.sender(), s.timestamp(),
+                                     s.userId()));
+        }
+        return exchange;
+    }
+
+    @Override
+    public void start() {
+        acceptLock.writeLock()
+                  .lock();
+        try {
+            accepting = enabled;
+        } finally {
+            acceptLock.writeLock()
+                      .unlock();
+        }
+        running = true;
+        if (enabled) {
+            flusher = new Thread(this::runFlusher, "message-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        //write what a previous run left behind
+        replaySpool();
+    }
+
+    @Override
+    public void stop() {
+        acceptLock.writeLock()
+                  .lock();
+        try {
+            accepting = false;
+        } finally {
+            acceptLock.writeLock()
+                      .unlock();
+        }
+        running = false;
+        if (flusher != null) {
+            try {
+                flusher.join(shutdownTimeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+        }
+
+        //drain what is left, nothing new can be queued now
+        List<List<Message>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += batchSize) {
+            flush(rest.subList(i, Math.min(rest.size(), i + batchSize)));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stopped after the web server, so replies sent during shutdown are
+     * still queued and drained
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+}
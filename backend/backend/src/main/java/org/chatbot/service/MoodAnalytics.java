@@ -0,0 +1,38 @@
+package org.chatbot.service;
+
+import java.time.LocalDate;
+
+/**
+ * Mood analytics of one user, computed by {@link MoodSeries#analyze}
+ * @param firstDay first day of the series (the user's first mood log)
+ * @param lastDay last day of the series (today)
+ * @param loggedDays days with a mood log
+ * @param averageMood mean rating over the logged days (0 if none)
+ * @param stdDev standard deviation of the ratings, the volatility
+ * @param currentStreak logged days in a row up to today, or up to
+ * yesterday while today is not logged yet
+ * @param longestStreak most logged days in a row
+ * @param window days in the moving average
+ * @param movingAverage per day from firstDay, mean rating of the logged
+ * days in the window ending that day (0 if none)
+ * @param weekdayAverages mean rating per weekday, Monday first (0 if none)
+ * @param changePoint the most likely shift in mood level, null if there is
+ * no clear one
+ */
+public record MoodAnalytics(LocalDate firstDay, LocalDate lastDay,
+                            int loggedDays, double averageMood, double stdDev,
+                            int currentStreak, int longestStreak, int window,
+                            float[] movingAverage, double[] weekdayAverages,
+                            ChangePoint changePoint) {
+
+    /**
+     * A shift in the mean rating
+     * @param date first logged day after the shift
+     * @param averageBefore mean rating of the logs before it
+     * @param averageAfter mean rating of the logs from it on
+     * @param score size of the shift in standard errors
+     */
+    public record ChangePoint(LocalDate date, double averageBefore,
+                              double averageAfter, double score) {
+    }
+}
@@ -0,0 +1,172 @@
+package org.chatbot.service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * One user's mood ratings indexed by day, a byte per day from the first
+ * day on (0 = nothing logged). Five years fit in under 2 KB, and
+ * {@link #analyze} gets every statistic from a single pass over it
+ */
+public final class MoodSeries {
+
+    public static final int MAX_WINDOW = 365;
+
+    //fewest logs on each side of a change point
+    static final int MIN_SEGMENT = 7;
+
+    //a shift smaller than this many standard errors is noise
+    static final double CHANGE_THRESHOLD = 3.0;
+
+    private final LocalDate firstDay;
+    private final long firstEpochDay;
+    private byte[] moods;
+
+    /**
+     * @param firstDay day of the first rating
+     * @param lastDay last day of the series, usually today
+     */
+    public MoodSeries(LocalDate firstDay, LocalDate lastDay) {
+        this.firstDay = firstDay;
+        this.firstEpochDay = firstDay.toEpochDay();
+        this.moods = new byte[(int) (lastDay.toEpochDay() - firstEpochDay) +
+          1];
+    }
+
+    /**
+     * Set the rating of a day, the series grows when the day is past the end
+     * @param mood rating 1-5
+     */
+    public void set(LocalDate date, int mood) {
+        if (mood < 1 || mood > 5) {
+            throw new IllegalArgumentException("Mood must be between 1 and 5");
+        }
+        long day = date.toEpochDay() - firstEpochDay;
+        if (day < 0) {
+            throw new IllegalArgumentException(
+              date + " is before the series starts (" + firstDay + ")");
+        }
+        if (day >= moods.length) {
+            moods = Arrays.copyOf(moods, (int) day + 1);
+        }
+        moods[(int) day] = (byte) mood;
+    }
+
+    public LocalDate getFirstDay() {
+        return firstDay;
+    }
+
+    public int length() {
+        return moods.length;
+    }
+
+    /**
+     * @param window days in the moving average, 1 to {@link #MAX_WINDOW}
+     */
+    public MoodAnalytics analyze(int window) {
+        if (window < 1 || window > MAX_WINDOW) {
+            throw new IllegalArgumentException(
+              "Window must be between 1 and " + MAX_WINDOW + " days");
+        }
+        int days = moods.length;
+        float[] movingAverage = new float[days];
+        int[] weekdaySum = new int[7];
+        int[] weekdayCount = new int[7];
+        //per logged day, in order: its index and the running sum through it
+        int[] loggedDay = new int[days];
+        int[] runningSum = new int[days];
+
+        int count = 0;
+        int sum = 0;
+        long sumOfSquares = 0;
+        int windowSum = 0;
+        int windowCount = 0;
+        int run = 0;
+        int longestRun = 0;
+        int runBeforeLastDay = 0;
+        int weekday = firstDay.getDayOfWeek()
+                              .ordinal();
+
+        for (int i = 0; i < days; i++) {
+            if (i == days - 1) {
+                runBeforeLastDay = run;
+            }
+            int mood = moods[i];
+            if (mood != 0) {
+                sum += mood;
+                sumOfSquares += mood * mood;
+                weekdaySum[weekday] += mood;
+                weekdayCount[weekday]++;
+                windowSum += mood;
+                windowCount++;
+                loggedDay[count] = i;
+                runningSum[count] = sum;
+                count++;
+                longestRun = Math.max(longestRun, ++run);
+            } else {
+                run = 0;
+            }
+            if (i >= window) {
+                int dropped = moods[i - window];
+                if (dropped != 0) {
+                    windowSum -= dropped;
+                    windowCount--;
+                }
+            }
+            movingAverage[i] = windowCount == 0 ? 0f :
+              (float) windowSum / windowCount;
+            if (++weekday == 7) {
+                weekday = 0;
+            }
+        }
+
+        double mean = count == 0 ? 0 : (double) sum / count;
+        double stdDev = count == 0 ? 0 :
+          Math.sqrt(Math.max(0, (double) sumOfSquares / count - mean * mean));
+        double[] weekdayAverages = new double[7];
+        for (int d = 0; d < 7; d++) {
+            weekdayAverages[d] = weekdayCount[d] == 0 ? 0 :
+              (double) weekdaySum[d] / weekdayCount[d];
+        }
+        int currentStreak = moods[days - 1] != 0 ? run : runBeforeLastDay;
+
+        return new MoodAnalytics(firstDay, firstDay.plusDays(days - 1), count,
+                                 mean, stdDev, currentStreak, longestRun,
+                                 window, movingAverage, weekdayAverages,
+                                 changePoint(loggedDay, runningSum, count,
+                                             sum, stdDev));
+    }
+
+    /**
+     * Split of the logs where the means on both sides differ the most, in
+     * standard errors (two-sample z with the overall deviation)
+     */
+    private MoodAnalytics.ChangePoint changePoint(int[] loggedDay,
+                                                  int[] runningSum, int count,
+                                                  int sum, double stdDev) {
+        if (count < 2 * MIN_SEGMENT || stdDev == 0) {
+            return null;
+        }
+        int bestSplit = 0;
+        double bestScore = 0;
+        for (int k = MIN_SEGMENT; k <= count - MIN_SEGMENT; k++) {
+            int before = runningSum[k - 1];
+            double shift = (double) before / k - (double) (sum - before) /
+              (count - k);
+            double score = Math.abs(shift) / stdDev *
+              Math.sqrt((double) k * (count - k) / count);
+            if (score > bestScore) {
+                bestScore = score;
+                bestSplit = k;
+            }
+        }
+        if (bestScore < CHANGE_THRESHOLD) {
+            return null;
+        }
+        int before = runningSum[bestSplit - 1];
+        return new MoodAnalytics.ChangePoint(
+          firstDay.plusDays(loggedDay[bestSplit]),
+          (double) before / bestSplit,
+          (double) (sum - before) / (count - bestSplit), bestScore);
+    }
+}
@@ -1,15 +1,22 @@
 package org.chatbot.service;
 
 import org.chatbot.model.MoodLog;
+import org.chatbot.model.MoodRollup;
 import org.chatbot.repository.MoodRepository;
+import org.chatbot.repository.MoodRollupRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * this service handles business logic for mood tracking
@@ -21,28 +28,43 @@ public class MoodService {
     @Autowired
     private MoodRepository moodRepository;
 
+    @Autowired
+    private MoodRollupRepository moodRollupRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    //trend windows in days the dashboard may ask for
+    @Value("${mood.trends.windows:7,30,90,365}")
+    private Set<Integer> trendWindows;
+
     /**
-     * Save a mood log for today
+     * Save a mood log for today, and apply the change to the running totals
+     * in the same transaction
      * @param mood Mood rating 1-5
      * @param userId the user's ID
      * @param notes Optional notes about the mood
      * @return the saved mood log
      */
+    @Transactional
     public MoodLog logMood(Integer mood, Long userId, String notes) {
         //validate mood is between 1 and 5
         if (mood < 1 || mood > 5) {
             throw new IllegalArgumentException("Mood must be between 1 and 5");
         }
 
-        // Check if user already logged mood today
+        // Check if user already logged mood today, locked until commit:
+        // the previous mood read here is taken off the rollups below
         LocalDate today = LocalDate.now();
-        Optional<MoodLog> existingLog = moodRepository.findByUserIdAndDate(userId,
-          today);
+        Optional<MoodLog> existingLog =
+          moodRepository.findForUpdateByUserIdAndDate(userId, today);
 
         MoodLog moodLog;
+        int previousMood = 0;
         if (existingLog.isPresent()) {
             // update existing mood log for today
             moodLog = existingLog.get();
+            previousMood = moodLog.getMood();
             moodLog.setMood(mood);
             moodLog.setNote(notes);
         } else {
@@ -51,8 +73,15 @@ public class MoodService {
             moodLog.setNote(notes);
         }
 
-        // save and return
-        return moodRepository.save(moodLog);
+        MoodLog saved = moodRepository.save(moodLog);
+
+        //a new log counts once more, an update moves it between ratings
+        if (previousMood != mood) {
+            moodRollupRepository.insertDay(userId, saved.getDate());
+            moodRollupRepository.applyChange(userId, saved.getDate(), mood,
+                                             previousMood);
+        }
+        return saved;
     }
 
     /**
@@ -79,43 +108,124 @@ public class MoodService {
     }
 
     /**
-     * Get mood trends for the last 30 days
+     * Get mood trends for the last {@code days} days (today included)
+     * Read from the running totals: two rows whatever the window length
      * @param userId the user's ID
+     * @param days window length, one of mood.trends.windows
      * @return Map with trend analysis
      */
-    public Map<String, Object> getMoodTrends(Long userId) {
-        //get date 30 days ago
-        LocalDate thirtyDaysAgo = LocalDate.now()
-                                           .minusDays(30);
-
-        // Get mood logs for last 30 days
-        List<MoodLog> recentLogs = getMoodLogsInRange(userId, thirtyDaysAgo,
-          LocalDate.now());
-
-        // calculate average mood
-        Double averageMood = moodRepository.getAverageMoodSince(userId,
-          thirtyDaysAgo);
+    public Map<String, Object> getMoodTrends(Long userId, int days) {
+        if (!trendWindows.contains(days)) {
+            throw new IllegalArgumentException(
+              "Trend window must be one of " + trendWindows + " days");
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate start = today.minusDays(days - 1);
+
+        //totals before the window, and totals through today
+        MoodRollup before = null;
+        MoodRollup through = null;
+        for (MoodRollup rollup : moodRollupRepository.findRangeBounds(userId,
+          start, today)) {
+            if (rollup.getDate()
+                      .isBefore(start)) {
+                before = rollup;
+            } else {
+                through = rollup;
+            }
+        }
 
-        // count days by mood level
+        long totalDays = 0;
+        long moodSum = 0;
         Map<Integer, Long> moodCounts = new HashMap<>();
         for (int i = 1; i <= 5; i++) {
-            final int mood = i;
-            long count = recentLogs.stream()
-                                   .filter(log -> log.getMood() == mood)
-                                   .count();
+            long count = 0;
+            if (through != null) {
+                count = through.getMoodCount(i) -
+                  (before != null ? before.getMoodCount(i) : 0);
+            }
             moodCounts.put(i, count);
         }
+        if (through != null) {
+            totalDays = through.getLogCount() -
+              (before != null ? before.getLogCount() : 0);
+            moodSum = through.getMoodSum() -
+              (before != null ? before.getMoodSum() : 0);
+        }
 
         // build response map
         Map<String, Object> trends = new HashMap<>();
-        trends.put("averageMood", averageMood != null ? averageMood : 0.0);
-        trends.put("totalDays", recentLogs.size());
+        trends.put("days", days);
+        trends.put("averageMood",
+                   totalDays > 0 ? (double) moodSum / totalDays : 0.0);
+        trends.put("totalDays", totalDays);
         trends.put("moodDistribution", moodCounts);
-        trends.put("recentLogs", recentLogs);
 
         return trends;
     }
 
+    /**
+     * Get moving average, streaks, volatility, weekday averages and change
+     * point over the user's whole mood history
+     * @param userId the user's ID
+     * @param window days in the moving average
+     * @return the analytics, all zero if nothing was logged
+     */
+    public MoodAnalytics getMoodAnalytics(Long userId, int window) {
+        return getMoodAnalytics(List.of(userId), window).get(userId);
+    }
+
+    /**
+     * Same as {@link #getMoodAnalytics(Long, int)} for many users, their
+     * logs are read in one query
+     * @param userIds the users' IDs
+     * @param window days in the moving average
+     * @return analytics per user ID
+     */
+    public Map<Long, MoodAnalytics> getMoodAnalytics(Collection<Long> userIds,
+                                                     int window) {
+        if (window < 1 || window > MoodSeries.MAX_WINDOW) {
+            throw new IllegalArgumentException(
+              "Window must be between 1 and " + MoodSeries.MAX_WINDOW +
+                " days");
+        }
+        LocalDate today = LocalDate.now();
+        Map<Long, MoodSeries> series = loadMoodSeries(userIds, today);
+
+        Map<Long, MoodAnalytics> analytics = new HashMap<>();
+        for (Long userId : userIds) {
+            MoodSeries userSeries = series.get(userId);
+            if (userSeries == null) {
+                userSeries = new MoodSeries(today, today);
+            }
+            analytics.put(userId, userSeries.analyze(window));
+        }
+        return analytics;
+    }
+
+    /**
+     * Read only the date and rating of each log straight into the day
+     * series, no MoodLog entities
+     */
+    private Map<Long, MoodSeries> loadMoodSeries(Collection<Long> userIds,
+                                                 LocalDate today) {
+        Map<Long, MoodSeries> series = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return series;
+        }
+        //ordered by user and date, the first row of a user starts its series
+        jdbcTemplate.query("SELECT user_id, date, mood FROM mood_logs " +
+                             "WHERE user_id IN (:userIds) " +
+                             "ORDER BY user_id, date",
+                           Map.of("userIds", userIds), rs -> {
+              long userId = rs.getLong(1);
+              LocalDate date = rs.getObject(2, LocalDate.class);
+              series.computeIfAbsent(userId, id -> new MoodSeries(date, today))
+                    .set(date, rs.getInt(3));
+          });
+        return series;
+    }
+
     /**
      * Check if user has logged mood today
      * @param userId the user's ID
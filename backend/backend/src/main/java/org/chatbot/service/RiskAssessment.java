@@ -0,0 +1,12 @@
+package org.chatbot.service;
+
+/**
+ * Result of a risk check on a msg
+ * @param risky whether the msg contains risk indicators
+ * @param trigger the crisis keyword or reason that made it risky (null if
+ * not risky)
+ * @param lexiconVersion version of the lexicon the decision was made with
+ */
+public record RiskAssessment(boolean risky, String trigger,
+                             String lexiconVersion) {
+}
@@ -0,0 +1,97 @@
+package org.chatbot.service;
+
+import org.chatbot.service.KeywordMatcher.Category;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable, compiled version of the keyword lexicon
+ * A new instance is built for every reload and swapped in as a whole,
+ * so a msg is always scanned against one consistent version
+ * @param version the "# version:" line plus a hash of the content (only
+ *                the hash without that line), two different files never
+ *                share a version
+ * @param matcher all keywords compiled into one matcher
+ */
+public record RiskLexicon(String version, KeywordMatcher matcher) {
+
+    private static final String VERSION_PREFIX = "# version:";
+
+    /**
+     * Parse and compile a lexicon file
+     * Format: "[crisis]", "[distress]", "[positive]" or "[negative]" section
+     * headers, one keyword per line, lines starting with # are comments
+     * @param content the file content
+     * @return the compiled lexicon
+     * @throws IllegalArgumentException if the content is not a valid lexicon
+     */
+    public static RiskLexicon parse(String content) {
+        Map<Category, List<String>> words = new EnumMap<>(Category.class);
+        String version = null;
+        Category section = null;
+
+        for (String rawLine : content.split("\\R")) {
+            String line = rawLine.strip();
+            if (line.regionMatches(true, 0, VERSION_PREFIX, 0,
+                                   VERSION_PREFIX.length())) {
+                version = line.substring(VERSION_PREFIX.length())
+                              .strip();
+                continue;
+            }
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                String name = line.substring(1, line.length() - 1)
+                                  .strip()
+                                  .toUpperCase(Locale.ROOT);
+                try {
+                    section = Category.valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                      "Unknown lexicon section: " + line);
+                }
+                continue;
+            }
+            if (section == null) {
+                throw new IllegalArgumentException(
+                  "Keyword outside of a section: " + line);
+            }
+            words.computeIfAbsent(section, c -> new ArrayList<>())
+                 .add(line);
+        }
+
+        if (words.getOrDefault(Category.CRISIS, List.of())
+                 .isEmpty()) {
+            // never go live with a lexicon that can not detect a crisis
+            throw new IllegalArgumentException(
+              "Lexicon has no [crisis] keywords");
+        }
+
+        KeywordMatcher.Builder builder = KeywordMatcher.builder();
+        words.forEach(builder::add);
+        String hash = hash(content);
+        return new RiskLexicon(version != null ? version + "+" + hash : hash,
+                               builder.build());
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                                         .digest(content.getBytes(
+                                           StandardCharsets.UTF_8));
+            return "sha256:" + HexFormat.of()
+                                        .formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
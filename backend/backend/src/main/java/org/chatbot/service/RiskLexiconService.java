@@ -0,0 +1,123 @@
+package org.chatbot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * This service loads the keyword lexicon used for risk detection
+ * and reloads it while the app is running when the file changes
+ * Reloads are copy-on-write: a new lexicon is compiled on the side and
+ * swapped in with a single volatile write, readers never take a lock
+ */
+@Service
+public class RiskLexiconService {
+
+    private static final Logger log =
+      LoggerFactory.getLogger(RiskLexiconService.class);
+
+    private static final String DEFAULT_LEXICON = "/lexicon/risk-lexicon.txt";
+
+    // optional external lexicon file, the built-in one is used when empty
+    private final String lexiconPath;
+
+    private volatile RiskLexicon current;
+
+    // last seen state of the external file, only touched by reload()
+    private FileTime lastModified;
+    private long lastSize = -1;
+
+    public RiskLexiconService(@Value("${sentiment.lexicon.path:}")
+                              String lexiconPath) {
+        this.lexiconPath = lexiconPath;
+        this.current = loadInitial();
+    }
+
+    /**
+     * @return the lexicon to use right now (never null)
+     */
+    public RiskLexicon current() {
+        return current;
+    }
+
+    /**
+     * Check the external lexicon file and swap it in if its content
+     * changed, whether or not the "# version:" line was bumped. A broken
+     * file is reported and the current version is kept.
+     */
+    @Scheduled(initialDelayString = "${sentiment.lexicon.reload-interval-ms:10000}",
+               fixedDelayString = "${sentiment.lexicon.reload-interval-ms:10000}")
+    public void reload() {
+        if (lexiconPath == null || lexiconPath.isBlank()) {
+            return;
+        }
+        Path path = Path.of(lexiconPath);
+        try {
+            FileTime modified = Files.getLastModifiedTime(path);
+            long size = Files.size(path);
+            if (modified.equals(lastModified) && size == lastSize) {
+                return;
+            }
+
+            RiskLexicon loaded = RiskLexicon.parse(
+              Files.readString(path, StandardCharsets.UTF_8));
+            lastModified = modified;
+            lastSize = size;
+            //the version includes a content hash: same version, same file
+            if (loaded.version()
+                      .equals(current.version())) {
+                return;
+            }
+            current = loaded;
+            log.info("Risk lexicon reloaded, version {} ({} keywords)",
+                     loaded.version(), loaded.matcher()
+                                             .size());
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not reload risk lexicon from {}: {} - keeping " +
+                       "version {}", path, e.getMessage(), current.version());
+        }
+    }
+
+    /**
+     * Load the external file if configured, else the built-in lexicon
+     */
+    private RiskLexicon loadInitial() {
+        if (lexiconPath != null && !lexiconPath.isBlank()) {
+            Path path = Path.of(lexiconPath);
+            try {
+                RiskLexicon loaded = RiskLexicon.parse(
+                  Files.readString(path, StandardCharsets.UTF_8));
+                lastModified = Files.getLastModifiedTime(path);
+                lastSize = Files.size(path);
+                log.info("Risk lexicon loaded from {}, version {}", path,
+                         loaded.version());
+                return loaded;
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Could not load risk lexicon from {}: {} - using " +
+                           "the built-in lexicon", path, e.getMessage());
+            }
+        }
+
+        try (InputStream in = RiskLexiconService.class.getResourceAsStream(
+          DEFAULT_LEXICON)) {
+            if (in == null) {
+                throw new IllegalStateException(
+                  "Built-in lexicon missing: " + DEFAULT_LEXICON);
+            }
+            return RiskLexicon.parse(
+              new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read built-in lexicon",
+                                            e);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package org.chatbot.service;
 
 
+import org.chatbot.service.KeywordMatcher.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * This service analyzes msg for crisis indicators and harmful content
@@ -13,17 +15,67 @@ import java.util.List;
 @Service
 public class SentimentService {
 
-    //TODO will have to update this as things progress, will ' be a problem?
-    //keywords that indicate potential crisis or self-harm
-    private static final List<String> CRISIS_KEYWORDS = Arrays.asList("suicide",
-      "kill myself", "end my life", "want to die", "hurt myself", "self harm",
-      "cut myself", "overdose", "no reason to live", "better off dead",
-      "can't go on");
+    private static final Logger log =
+      LoggerFactory.getLogger(SentimentService.class);
 
-    //keywords indicating severe distress
-    private static final List<String> DISTRESS_KEYWORDS = Arrays.asList("hopeless",
-      "worthless", "can't take it", "give up", "no point", "too much", "can't cope",
-      "breaking down");
+    //keyword lists live in the lexicon file (lexicon/risk-lexicon.txt) and
+    // can be updated while the app is running
+    private final RiskLexiconService lexiconService;
+
+    public SentimentService(RiskLexiconService lexiconService) {
+        this.lexiconService = lexiconService;
+    }
+
+    /**
+     * Counts distinct keyword hits per category during one scan
+     * kept per thread and reused, so scanning a msg allocates nothing
+     */
+    private static final class Tally implements KeywordMatcher.HitListener {
+        // seen[k] == stamp means keyword k was already counted in this scan
+        private int[] seen = new int[0];
+        private int stamp;
+        private final int[] distinct = new int[Category.values().length];
+        private int firstCrisis;
+        private boolean stopAtCrisis;
+
+        private Tally reset(KeywordMatcher matcher, boolean stopAtCrisis) {
+            if (seen.length < matcher.size()) {
+                // a bigger lexicon was loaded
+                seen = new int[matcher.size()];
+                stamp = 0;
+            }
+            if (++stamp == 0) {
+                Arrays.fill(seen, 0);
+                stamp = 1;
+            }
+            Arrays.fill(distinct, 0);
+            firstCrisis = -1;
+            this.stopAtCrisis = stopAtCrisis;
+            return this;
+        }
+
+        @Override
+        public boolean onHit(int keywordIndex, Category category, int start,
+                             int end) {
+            if (seen[keywordIndex] == stamp) {
+                return true;
+            }
+            seen[keywordIndex] = stamp;
+            distinct[category.ordinal()]++;
+            if (category == Category.CRISIS && firstCrisis < 0) {
+                firstCrisis = keywordIndex;
+                return !stopAtCrisis;
+            }
+            return true;
+        }
+
+        private int count(Category category) {
+            return distinct[category.ordinal()];
+        }
+    }
+
+    private static final ThreadLocal<Tally> TALLY =
+      ThreadLocal.withInitial(Tally::new);
 
     /**
      * Detect if a message contains crisis or self-harm indicators
@@ -31,31 +83,42 @@ public class SentimentService {
      * @return true if message contains risk indicators
      */
     public boolean detectRisk(String message) {
-        // Convert to lowercase for case-insensitive matching
-        String lowerMessage = message.toLowerCase();
+        return assessRisk(message).risky();
+    }
+
+    /**
+     * Check a message for crisis or self-harm indicators
+     * @param message the msg text to analyze
+     * @return the decision, tagged with the lexicon version it was made with
+     */
+    public RiskAssessment assessRisk(String message) {
+        // one lexicon version for the whole decision, even if a reload
+        // happens meanwhile
+        RiskLexicon lexicon = lexiconService.current();
+        KeywordMatcher matcher = lexicon.matcher();
+
+        // one case-insensitive pass over the msg for all keywords
+        Tally tally = TALLY.get()
+                           .reset(matcher, true);
+        matcher.scan(message, tally);
 
         //check for crisis keywords
-        for (String keyword : CRISIS_KEYWORDS) {
-            if (lowerMessage.contains(keyword)) {
-                //log this for monitoring (with user consent! <- super important)
-                logRiskDetection(keyword);
-                return true;
-            }
+        if (tally.firstCrisis >= 0) {
+            String keyword = matcher.keyword(tally.firstCrisis);
+            //log this for monitoring (with user consent! <- super important)
+            logRiskDetection(keyword, lexicon.version());
+            return new RiskAssessment(true, keyword, lexicon.version());
         }
 
-        //check for multiple distress Keywords (indicates high distress)
-        long distressCount = DISTRESS_KEYWORDS.stream()
-                                              .filter(lowerMessage::contains)
-                                              .count();
-
         //TODO change if to low or high
         // if msg contains 2 or more distress keywords flag as risky
-        if (distressCount >= 2) {
-            logRiskDetection("Multiple distress indicators");
-            return true;
+        if (tally.count(Category.DISTRESS) >= 2) {
+            logRiskDetection("Multiple distress indicators", lexicon.version());
+            return new RiskAssessment(true, "Multiple distress indicators",
+                                      lexicon.version());
         }
 
-        return false;
+        return new RiskAssessment(false, null, lexicon.version());
     }
 
     /**
@@ -65,24 +128,16 @@ public class SentimentService {
      * @return Sentiment classification
      */
     public String analyzeSentiment(String message) {
-        String lowerMessage = message.toLowerCase();
-
         //simple keyword based sentiment analysis
         //TODO in prod check against NLP library or API
+        KeywordMatcher matcher = lexiconService.current()
+                                               .matcher();
+        Tally tally = TALLY.get()
+                           .reset(matcher, false);
+        matcher.scan(message, tally);
 
-        List<String> positiveWords = Arrays.asList("good", "great", "happy",
-          "better", "hopeful", "grateful", "thankful", "peaceful", "calm");
-
-        List<String> negativeWords = Arrays.asList("bad", "terrible", "sad", "worse",
-          "anxious", "depressed", "scared", "worried", "upset");
-
-        long positiveCount = positiveWords.stream()
-                                          .filter(lowerMessage::contains)
-                                          .count();
-
-        long negativeCount = negativeWords.stream()
-                                          .filter(lowerMessage::contains)
-                                          .count();
+        long positiveCount = tally.count(Category.POSITIVE);
+        long negativeCount = tally.count(Category.NEGATIVE);
 
         if (positiveCount > negativeCount) {
             return "positive";
@@ -97,16 +152,16 @@ public class SentimentService {
      * Log risk detection for monitoring and safety
      * TODO in prod this could alert appropriate personnel
      * @param indicator what triggerd the risk detection
+     * @param lexiconVersion version of the lexicon that matched
      */
 
-    private void logRiskDetection(String indicator) {
+    private void logRiskDetection(String indicator, String lexiconVersion) {
         //TODO for prod. this should:
         // log to a secure monitoring system
         // Alert appropriate personnel if severity is high
         // store with timestamp and user ID (anonymized)
 
-        System.out.println(
-          "Risk DETECTED: " + indicator + " at " + java.time.LocalDateTime.now());
+        log.warn("Risk DETECTED: {} (lexicon {})", indicator, lexiconVersion);
 
         //TODO implement proper logging and alerting system...
     }
@@ -0,0 +1,36 @@
+-- Baseline: the schema as Hibernate (ddl-auto=update) created it.
+-- Existing databases are baselined at this version and skip this script.
+
+CREATE TABLE IF NOT EXISTS users (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name          VARCHAR(255) NOT NULL,
+    email         VARCHAR(255) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    created_at    TIMESTAMP(6) NOT NULL,
+    updated_at    TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS messages (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    text        TEXT         NOT NULL,
+    sender      VARCHAR(255) NOT NULL,
+    "timestamp" TIMESTAMP(6) NOT NULL,
+    user_id     BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS mood_logs (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    mood       INTEGER      NOT NULL,
+    "date"     DATE         NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    user_id    BIGINT       NOT NULL,
+    note       TEXT
+);
+
+CREATE TABLE IF NOT EXISTS journal_entries (
+    id         INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    text       TEXT         NOT NULL,
+    "date"     DATE         NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    user_id    BIGINT       NOT NULL
+);
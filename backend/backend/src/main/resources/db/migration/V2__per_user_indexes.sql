@@ -0,0 +1,26 @@
+-- Composite indexes for the per-user lookup paths.
+
+-- chat history: keyset pages on (timestamp, id), recent turns for context
+CREATE INDEX IF NOT EXISTS ix_messages_user_timestamp_id
+    ON messages (user_id, "timestamp", id);
+
+-- one mood log per user and day (logMood updates the existing row).
+-- keep the newest row of any duplicates left from before the constraint
+DELETE FROM mood_logs m
+WHERE EXISTS (SELECT 1
+              FROM mood_logs newer
+              WHERE newer.user_id = m.user_id
+                AND newer."date" = m."date"
+                AND newer.id > m.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mood_logs_user_date
+    ON mood_logs (user_id, "date");
+
+-- journal list, entry per day and count per user
+CREATE INDEX IF NOT EXISTS ix_journal_entries_user_date
+    ON journal_entries (user_id, "date");
+
+-- login looks users up by email on every request; registration stores it
+-- lower-cased, a duplicate here has to be resolved by hand
+CREATE UNIQUE INDEX IF NOT EXISTS ux_users_email
+    ON users (email);
@@ -0,0 +1,32 @@
+-- Running mood totals per user: one row per day with a mood log, holding
+-- the totals of every log up to and including that day. The totals of a
+-- window are the difference of two rows, whatever its length.
+-- MoodService.logMood keeps this in step with mood_logs.
+CREATE TABLE IF NOT EXISTS mood_rollups (
+    user_id   BIGINT  NOT NULL,
+    "date"    DATE    NOT NULL,
+    log_count INTEGER NOT NULL,
+    mood_sum  BIGINT  NOT NULL,
+    mood_1    INTEGER NOT NULL,
+    mood_2    INTEGER NOT NULL,
+    mood_3    INTEGER NOT NULL,
+    mood_4    INTEGER NOT NULL,
+    mood_5    INTEGER NOT NULL,
+    PRIMARY KEY (user_id, "date")
+);
+
+-- backfill from the existing logs (at most one per user and day since V2)
+INSERT INTO mood_rollups (user_id, "date", log_count, mood_sum,
+                          mood_1, mood_2, mood_3, mood_4, mood_5)
+SELECT user_id,
+       "date",
+       COUNT(*) OVER running,
+       SUM(mood) OVER running,
+       SUM(CASE WHEN mood = 1 THEN 1 ELSE 0 END) OVER running,
+       SUM(CASE WHEN mood = 2 THEN 1 ELSE 0 END) OVER running,
+       SUM(CASE WHEN mood = 3 THEN 1 ELSE 0 END) OVER running,
+       SUM(CASE WHEN mood = 4 THEN 1 ELSE 0 END) OVER running,
+       SUM(CASE WHEN mood = 5 THEN 1 ELSE 0 END) OVER running
+FROM mood_logs
+WINDOW running AS (PARTITION BY user_id ORDER BY "date"
+                   ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW);
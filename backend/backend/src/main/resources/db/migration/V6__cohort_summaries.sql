@@ -0,0 +1,29 @@
+-- Population-level mood statistics written by CohortAnalyticsService, one
+-- row per run and one per day of the run's window. Only the newest runs
+-- are kept (analytics.cohort.keep-runs).
+CREATE TABLE IF NOT EXISTS cohort_mood_runs (
+    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    computed_at         TIMESTAMP(6)     NOT NULL,
+    first_day           DATE             NOT NULL,
+    last_day            DATE             NOT NULL,
+    log_count           BIGINT           NOT NULL,
+    active_users        INTEGER          NOT NULL,
+    users_trending_down INTEGER          NOT NULL,
+    users_trending_up   INTEGER          NOT NULL,
+    distribution_shift  DOUBLE PRECISION NOT NULL,
+    duration_ms         BIGINT           NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS cohort_mood_days (
+    run_id    BIGINT  NOT NULL REFERENCES cohort_mood_runs (id)
+        ON DELETE CASCADE,
+    "date"    DATE    NOT NULL,
+    log_count INTEGER NOT NULL,
+    mood_sum  BIGINT  NOT NULL,
+    mood_1    INTEGER NOT NULL,
+    mood_2    INTEGER NOT NULL,
+    mood_3    INTEGER NOT NULL,
+    mood_4    INTEGER NOT NULL,
+    mood_5    INTEGER NOT NULL,
+    PRIMARY KEY (run_id, "date")
+);
@@ -0,0 +1,15 @@
+-- One row per account deletion (AccountDeletionService), written before
+-- anything is deleted and kept afterwards. The JWT filter rejects the
+-- user's tokens while it is not DONE and for the token lifetime after
+-- (RevokedUsers); a deletion still RUNNING when the application stopped
+-- is resumed at the next start. Holds no personal data, only the user id.
+CREATE TABLE IF NOT EXISTS account_deletions (
+    id          VARCHAR(36)  PRIMARY KEY,
+    user_id     BIGINT       NOT NULL,
+    state       VARCHAR(16)  NOT NULL,
+    started_at  TIMESTAMP(6) NOT NULL,
+    finished_at TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS ix_account_deletions_state
+    ON account_deletions (state);
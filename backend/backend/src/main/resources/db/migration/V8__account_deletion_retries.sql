@@ -0,0 +1,4 @@
+-- A FAILED account deletion is run again with a backoff that doubles per
+-- retry (AccountDeletionService.retryFailedDeletions), counted here.
+ALTER TABLE account_deletions
+    ADD COLUMN IF NOT EXISTS retries INT NOT NULL DEFAULT 0;
@@ -0,0 +1,75 @@
+package org.chatbot.AiService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiEndpointBalancerTest {
+
+    private static AiEndpointBalancer balancer(String urls) {
+        return new AiEndpointBalancer(urls, 2, 60_000, 3.0, 2000, 0.2,
+                                      new SimpleMeterRegistry());
+    }
+
+    @Test
+    void parsesCommaSeparatedUrls() {
+        AiEndpointBalancer balancer = balancer(
+          " http://a:4891/v1/ ,http://b:4891/v1,,http://a:4891/v1");
+        assertEquals(List.of("http://a:4891/v1", "http://b:4891/v1"),
+                     balancer.getEndpoints()
+                             .stream()
+                             .map(AiEndpointBalancer.Endpoint::getUrl)
+                             .toList());
+    }
+
+    @Test
+    void prefersTheLessLoadedEndpoint() {
+        AiEndpointBalancer balancer = balancer("http://a,http://b");
+        AiEndpointBalancer.Lease busy = balancer.acquire();
+        for (int i = 0; i < 20; i++) {
+            AiEndpointBalancer.Lease lease = balancer.acquire();
+            assertFalse(lease.url()
+                             .equals(busy.url()));
+            lease.success();
+        }
+        busy.success();
+        assertEquals(0, balancer.getEndpoints()
+                                .stream()
+                                .mapToInt(AiEndpointBalancer.Endpoint::getOutstanding)
+                                .sum());
+    }
+
+    @Test
+    void ejectsAfterFailuresButKeepsTheLastEndpoint() {
+        AiEndpointBalancer balancer = balancer("http://a,http://b");
+        AiEndpointBalancer.Endpoint a = balancer.getEndpoints()
+                                                .get(0);
+        AiEndpointBalancer.Endpoint b = balancer.getEndpoints()
+                                                .get(1);
+
+        balancer.recordProbeFailure(a, "refused");
+        assertTrue(balancer.hasOtherHealthy("http://b"));
+        balancer.recordProbeFailure(a, "refused");
+        assertFalse(balancer.hasOtherHealthy("http://b"));
+        for (int i = 0; i < 20; i++) {
+            AiEndpointBalancer.Lease lease = balancer.acquire();
+            assertEquals("http://b", lease.url());
+            lease.success();
+        }
+
+        //b is the only one left, failures do not eject it
+        balancer.recordProbeFailure(b, "refused");
+        balancer.recordProbeFailure(b, "refused");
+        assertFalse(balancer.getStatus()
+                            .get(1)
+                            .ejected());
+        assertTrue(balancer.getStatus()
+                           .get(0)
+                           .ejected());
+    }
+}
@@ -0,0 +1,60 @@
+package org.chatbot.AiService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiResponseCacheTest {
+
+    @Test
+    void normalizedPromptsShareAnEntry() {
+        AiResponseCache cache = new AiResponseCache(true, 0.7, 10, 60_000,
+                                                    new SimpleMeterRegistry());
+        cache.put(cache.key("m", 0.5, "sys", List.of(), "I feel anxious."),
+                  "answer");
+
+        assertEquals("answer", cache.get(
+          cache.key("m", 0.5, "sys", List.of(), "  i feel   ANXIOUS ")));
+        assertNull(cache.get(
+          cache.key("m", 0.5, "other", List.of(), "I feel anxious")));
+        assertNull(cache.get(
+          cache.key("m", 0.9, "sys", List.of(), "I feel anxious")));
+        assertEquals(1.0 / 3, cache.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void onlyContextFreeTurnsAtLowTemperatureAreCacheable() {
+        AiResponseCache cache = new AiResponseCache(true, 0.7, 10, 60_000,
+                                                    new SimpleMeterRegistry());
+        assertTrue(cache.isCacheable(List.of(), 0.7));
+        assertFalse(cache.isCacheable(List.of(), 0.8));
+        assertFalse(cache.isCacheable(List.of(ChatTurn.user("hi")), 0.2));
+
+        AiResponseCache disabled = new AiResponseCache(false, 0.7, 10, 60_000,
+                                                       new SimpleMeterRegistry());
+        assertFalse(disabled.isCacheable(List.of(), 0.2));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        AiResponseCache cache = new AiResponseCache(true, 0.7, 2, 60_000,
+                                                    new SimpleMeterRegistry());
+        AiResponseCache.Key a = cache.key("m", 0.5, "sys", List.of(), "a");
+        AiResponseCache.Key b = cache.key("m", 0.5, "sys", List.of(), "b");
+        AiResponseCache.Key c = cache.key("m", 0.5, "sys", List.of(), "c");
+        cache.put(a, "1");
+        cache.put(b, "2");
+        cache.get(a);
+        cache.put(c, "3");
+
+        assertEquals("1", cache.get(a));
+        assertNull(cache.get(b));
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,84 @@
+package org.chatbot.AiService;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompletionCodecTest {
+
+    private final CompletionCodec codec =
+      new CompletionCodec("Mistral \"Instruct\"", 150, 0.7);
+
+    @Test
+    void writesTheConstantFieldsAndEveryMessage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.writeRequest(new CompletionCodec.Request(
+          List.of(ChatTurn.system("be kind"), ChatTurn.user("héllo\n\"you\"")),
+          true), out);
+        codec.writeRequest(new CompletionCodec.Request(List.of(), false), out);
+
+        String[] bodies = out.toString(StandardCharsets.UTF_8)
+                             .split("(?<=})(?=\\{)");
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode streamed = mapper.readTree(bodies[0]);
+        assertEquals("Mistral \"Instruct\"", streamed.get("model")
+                                                     .asText());
+        assertEquals(150, streamed.get("max_tokens")
+                                  .asInt());
+        assertEquals(0.7, streamed.get("temperature")
+                                  .asDouble());
+        assertTrue(streamed.get("stream")
+                           .asBoolean());
+        assertEquals("héllo\n\"you\"", streamed.at("/messages/1/content")
+                                               .asText());
+        assertEquals("system", streamed.at("/messages/0/role")
+                                       .asText());
+
+        JsonNode plain = mapper.readTree(bodies[1]);
+        assertFalse(plain.has("stream"));
+        assertEquals(0, plain.get("messages")
+                             .size());
+    }
+
+    @Test
+    void readsOnlyTheFirstChoiceAndUsage() throws Exception {
+        String json = "{\"id\":\"x\",\"choices\":[{\"index\":0," +
+          "\"logprobs\":{\"content\":[{\"token\":\"no\"}]}," +
+          "\"message\":{\"role\":\"assistant\",\"content\":\"I hear you.\"}}," +
+          "{\"message\":{\"content\":\"second\"}}]," +
+          "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":4," +
+          "\"total_tokens\":16,\"details\":{\"cached\":0}}}";
+        CompletionCodec.Completion completion = codec.readCompletion(
+          new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("I hear you.", completion.content());
+        assertEquals(new CompletionCodec.Usage(12, 4, 16), completion.usage());
+    }
+
+    @Test
+    void readsStreamChunks() throws Exception {
+        CompletionCodec.Completion token = codec.readChunk(
+          "{\"choices\":[{\"delta\":{\"content\":\" there\"}," +
+            "\"finish_reason\":null}]}");
+        assertEquals(" there", token.content());
+        assertNull(token.usage());
+
+        CompletionCodec.Completion last = codec.readChunk(
+          "{\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}]," +
+            "\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":2," +
+            "\"total_tokens\":5}}");
+        assertNull(last.content());
+        assertEquals(5, last.usage()
+                            .totalTokens());
+    }
+}
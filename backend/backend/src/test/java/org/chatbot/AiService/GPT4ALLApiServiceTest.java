@@ -0,0 +1,117 @@
+package org.chatbot.AiService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.ConnectException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withException;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class GPT4ALLApiServiceTest {
+
+    private static final String COMPLETIONS = "http://a/chat/completions";
+
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final MockRestServiceServer server =
+      MockRestServiceServer.bindTo(restTemplate)
+                           .build();
+    private final AiHealthMonitor healthMonitor = new AiHealthMonitor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AiEndpointBalancer balancer =
+      new AiEndpointBalancer("http://a", 3, 30_000, 3.0, 2000, 0.2,
+                             meterRegistry);
+    private final GPT4ALLApiService service =
+      new GPT4ALLApiService(restTemplate);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "modelName", "m");
+        ReflectionTestUtils.setField(service, "temperature", 0.7);
+        ReflectionTestUtils.setField(service, "healthMonitor", healthMonitor);
+        ReflectionTestUtils.setField(service, "balancer", balancer);
+        ReflectionTestUtils.setField(service, "responseCache",
+                                     new AiResponseCache(false, 0.7, 10,
+                                                         60_000,
+                                                         new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "completionCodec",
+                                     new CompletionCodec("m", 150, 0.7));
+    }
+
+    @Test
+    void aFailedGenerationDoesNotMarkTheServiceDown() {
+        server.expect(requestTo(COMPLETIONS))
+              .andRespond(withServerError());
+
+        assertThrows(InferenceFailedException.class,
+                     () -> service.generateResponse("hi", "be kind",
+                                                    List.of()));
+        //the only server, still tried by the next request
+        assertTrue(service.isApiAvailable());
+    }
+
+    @Test
+    void aServerThatCanNotBeConnectedToMarksTheServiceDown() {
+        server.expect(requestTo(COMPLETIONS))
+              .andRespond(withException(new ConnectException("refused")));
+
+        InferenceFailedException e = assertThrows(
+          InferenceFailedException.class,
+          () -> service.generateResponse("hi", "be kind", List.of()));
+        assertTrue(e.isUnreachable());
+        assertFalse(service.isApiAvailable());
+    }
+
+    @Test
+    void aCancelledStreamIsNeitherSuccessNorFailure() {
+        server.expect(requestTo(COMPLETIONS))
+              .andRespond(withSuccess(
+                "data: {\"choices\":[{\"delta\":{\"content\":\"hi\"}}]}\n\n" +
+                  "data: [DONE]\n\n", MediaType.TEXT_EVENT_STREAM));
+
+        assertThrows(IllegalStateException.class,
+                     () -> service.streamResponse("hi", "be kind", List.of(),
+                                                  token -> {
+                                                      throw new IllegalStateException(
+                                                        "client gone");
+                                                  }));
+
+        assertEquals(0, balancer.getEndpoints()
+                                .get(0)
+                                .getOutstanding());
+        assertEquals(0, requests("success"));
+        assertEquals(0, requests("failure"));
+    }
+
+    @Test
+    void aFinishedStreamCountsOneSuccess() {
+        server.expect(requestTo(COMPLETIONS))
+              .andRespond(withSuccess(
+                "data: {\"choices\":[{\"delta\":{\"content\":\"hi\"}}]}\n\n" +
+                  "data: [DONE]\n\n", MediaType.TEXT_EVENT_STREAM));
+
+        assertEquals("hi", service.streamResponse("hi", "be kind", List.of(),
+                                                  token -> {
+                                                  }));
+        assertEquals(1, requests("success"));
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("ai.endpoint.requests")
+                            .tag("result", result)
+                            .counter()
+                            .count();
+    }
+}
@@ -0,0 +1,99 @@
+package org.chatbot.AiService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InferenceSchedulerTest {
+
+    @Test
+    void waitingRequestsAreGrantedRoundRobinByUser() throws Exception {
+        InferenceScheduler scheduler = new InferenceScheduler(1, 10, 10_000,
+                                                              5,
+                                                              new SimpleMeterRegistry());
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        // user 1 takes the only slot and holds it
+        pool.submit(() -> scheduler.run(1L, () -> {
+            awaitQuietly(blocker);
+            return null;
+        }));
+        waitUntil(() -> scheduler.getRunning() == 1);
+
+        // user 1 queues three more, then user 2 queues one
+        for (String name : List.of("a1", "a2", "a3")) {
+            int before = scheduler.getQueued();
+            pool.submit(() -> scheduler.run(1L, () -> order.add(name)));
+            waitUntil(() -> scheduler.getQueued() == before + 1);
+        }
+        pool.submit(() -> scheduler.run(2L, () -> order.add("b1")));
+        waitUntil(() -> scheduler.getQueued() == 4);
+
+        blocker.countDown();
+        waitUntil(() -> order.size() == 4);
+        pool.shutdown();
+
+        assertEquals(List.of("a1", "b1", "a2", "a3"), order);
+        assertEquals(0, scheduler.getRunning());
+    }
+
+    @Test
+    void fullQueueFailsFastWithRetryAfter() throws Exception {
+        InferenceScheduler scheduler = new InferenceScheduler(1, 1, 10_000, 7,
+                                                              new SimpleMeterRegistry());
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch blocker = new CountDownLatch(1);
+
+        pool.submit(() -> scheduler.run(1L, () -> {
+            awaitQuietly(blocker);
+            return null;
+        }));
+        waitUntil(() -> scheduler.getRunning() == 1);
+        pool.submit(() -> scheduler.run(2L, () -> null));
+        waitUntil(() -> scheduler.getQueued() == 1);
+
+        InferenceQueueFullException e = assertThrows(
+          InferenceQueueFullException.class,
+          () -> scheduler.run(3L, () -> null));
+        assertEquals(7, e.getRetryAfterSeconds());
+        assertThrows(InferenceQueueFullException.class,
+                     scheduler::checkAdmission);
+
+        blocker.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getQueued());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition)
+      throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not reached in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
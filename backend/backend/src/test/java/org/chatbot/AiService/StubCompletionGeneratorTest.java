@@ -0,0 +1,43 @@
+package org.chatbot.AiService;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StubCompletionGeneratorTest {
+
+    @Test
+    void samePromptGivesSameTokens() {
+        StubCompletionGenerator generator = new StubCompletionGenerator(
+          StubProfile.INSTANT, "stub", -1, -1, -1);
+
+        List<String> first = generator.tokens("sys", List.of(), "hello", 0);
+        assertEquals(first, generator.tokens("sys", List.of(), "hello", 0));
+        assertEquals(StubProfile.INSTANT.getResponseTokens(), first.size());
+        assertNotEquals(first, generator.tokens("sys", List.of(), "bye", 0));
+        assertEquals(5, generator.tokens("sys", List.of(), "hello", 5)
+                                 .size());
+    }
+
+    @Test
+    void tokensArePacedByTheProfile() {
+        //100 ms to the first token, then 50 tokens/s
+        StubCompletionGenerator generator = new StubCompletionGenerator(
+          StubProfile.INSTANT, "stub", 100, 50, 6);
+        List<String> tokens = generator.tokens("sys", List.of(), "hi", 0);
+
+        List<Long> arrivals = new ArrayList<>();
+        long start = System.nanoTime();
+        generator.emit(tokens, token -> arrivals.add(
+          (System.nanoTime() - start) / 1_000_000));
+
+        assertEquals(6, arrivals.size());
+        assertTrue(arrivals.get(0) >= 100, "first token at " + arrivals);
+        assertTrue(arrivals.get(5) >= 200, "last token at " + arrivals);
+    }
+}
@@ -0,0 +1,129 @@
+package org.chatbot.benchmark;
+
+import org.chatbot.model.MoodLog;
+import org.chatbot.service.MoodAnalytics;
+import org.chatbot.service.MoodSeries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Mood analytics for one user with a multi-year history: the day series
+ * ({@link MoodSeries#analyze}, one pass over a byte per day) against the
+ * same statistics from MoodLog entities with stream chains, the way the
+ * trends used to be computed. The series is built from the logs in the
+ * benchmark as the service does, only the query is left out
+ * mvn -Pbenchmark test -Dbenchmark=MoodAnalytics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoodAnalyticsBenchmark {
+
+    @Param({"1", "5", "10"})
+    public int years;
+
+    //share of days with a mood log
+    @Param({"0.7"})
+    public double density;
+
+    private List<MoodLog> logs;
+    private LocalDate today;
+
+    @Setup
+    public void createHistory() {
+        SplittableRandom random = new SplittableRandom(42);
+        today = LocalDate.of(2026, 6, 30);
+        logs = new ArrayList<>();
+        int mood = 3;
+        for (LocalDate day = today.minusYears(years); !day.isAfter(today);
+             day = day.plusDays(1)) {
+            mood = Math.clamp(mood + random.nextInt(-1, 2), 1, 5);
+            if (random.nextDouble() < density) {
+                MoodLog log = new MoodLog(mood, 1L);
+                log.setDate(day);
+                logs.add(log);
+            }
+        }
+    }
+
+    @Benchmark
+    public MoodAnalytics daySeries() {
+        MoodSeries series = new MoodSeries(logs.get(0)
+                                               .getDate(), today);
+        for (MoodLog log : logs) {
+            series.set(log.getDate(), log.getMood());
+        }
+        return series.analyze(7);
+    }
+
+    @Benchmark
+    public Map<String, Object> entityStreams() {
+        Map<String, Object> result = new HashMap<>();
+        double average = logs.stream()
+                             .mapToInt(MoodLog::getMood)
+                             .average()
+                             .orElse(0);
+        double variance = logs.stream()
+                              .mapToDouble(log -> Math.pow(
+                                log.getMood() - average, 2))
+                              .average()
+                              .orElse(0);
+        Map<Integer, Long> distribution = new HashMap<>();
+        for (int i = 1; i <= 5; i++) {
+            final int mood = i;
+            distribution.put(i, logs.stream()
+                                    .filter(log -> log.getMood() == mood)
+                                    .count());
+        }
+        Map<DayOfWeek, Double> weekdays = logs.stream()
+                                              .collect(Collectors.groupingBy(
+                                                log -> log.getDate()
+                                                          .getDayOfWeek(),
+                                                Collectors.averagingInt(
+                                                  MoodLog::getMood)));
+        //trailing 7-day average for every day of the history
+        List<Double> moving = new ArrayList<>();
+        for (LocalDate day = logs.get(0)
+                                 .getDate(); !day.isAfter(today);
+             day = day.plusDays(1)) {
+            LocalDate from = day.minusDays(6);
+            LocalDate to = day;
+            moving.add(logs.stream()
+                           .filter(log -> !log.getDate()
+                                              .isBefore(from) &&
+                             !log.getDate()
+                                 .isAfter(to))
+                           .mapToInt(MoodLog::getMood)
+                           .average()
+                           .orElse(0));
+        }
+        result.put("averageMood", average);
+        result.put("stdDev", Math.sqrt(variance));
+        result.put("moodDistribution", distribution);
+        result.put("weekdays", weekdays);
+        result.put("movingAverage", moving);
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package org.chatbot.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of concurrent chats, each blocked on a slow AI call, handled by
+ * a platform thread pool the size of Tomcat's default (200) or by one
+ * virtual thread per chat.
+ * The pool can only have 200 calls in flight, so 2000 chats take ten AI
+ * round trips; virtual threads run them all at once
+ * mvn -Pbenchmark test -Dbenchmark=VirtualThread
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+//the fake AI keeps every client connection (the JDK server closes idle
+//ones above 200, the client would then write to a dead socket)
+@Fork(value = 1,
+      jvmArgsAppend = "-Dsun.net.httpserver.maxIdleConnections=10000")
+public class VirtualThreadBenchmark {
+
+    private static final String COMPLETION =
+      "{\"choices\":[{\"message\":{\"role\":\"assistant\"," +
+        "\"content\":\"I hear you.\"}}]}";
+
+    //Tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_POOL_SIZE = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"200", "2000"})
+    public int chats;
+
+    //time the fake AI takes per completion
+    @Param({"50"})
+    public long aiLatencyMs;
+
+    private HttpServer ai;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private String url;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void startAi() throws Exception {
+        ai = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        ai.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        ai.createContext("/v1/chat/completions", exchange -> {
+            try {
+                Thread.sleep(aiLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            byte[] body = COMPLETION.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders()
+                    .set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        ai.start();
+        url = "http://127.0.0.1:" + ai.getAddress()
+                                      .getPort() + "/v1/chat/completions";
+
+        //the connection pool must not be what limits the chats
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                                                                     .setMaxConnPerRoute(
+                                                                       chats)
+                                                                     .setMaxConnTotal(
+                                                                       chats)
+                                                                     .build();
+        httpClient = HttpClients.custom()
+                                .setConnectionManager(connectionManager)
+                                .build();
+        restTemplate = new RestTemplate(
+          new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        executor = threads.equals("virtual") ?
+          Executors.newVirtualThreadPerTaskExecutor() :
+          Executors.newFixedThreadPool(PLATFORM_POOL_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopAi() throws Exception {
+        executor.shutdownNow();
+        httpClient.close();
+        connectionManager.close();
+        ai.stop(0);
+    }
+
+    @Benchmark
+    public int burstOfChats() throws Exception {
+        Map<String, Object> request = Map.of("model", "bench", "messages",
+                                             List.of(Map.of("role", "user",
+                                                            "content",
+                                                            "hello")));
+        List<Future<String>> replies = new ArrayList<>(chats);
+        for (int i = 0; i < chats; i++) {
+            replies.add(executor.submit(
+              () -> restTemplate.postForObject(url, request, String.class)));
+        }
+        int length = 0;
+        for (Future<String> reply : replies) {
+            length += reply.get()
+                           .length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,73 @@
+package org.chatbot.config;
+
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiRequestDeadlinesTest {
+
+    private final AiRequestDeadlines deadlines = new AiRequestDeadlines(100);
+    private final MockClientHttpRequest request =
+      new MockClientHttpRequest(HttpMethod.POST,
+                                URI.create("http://ai/chat/completions"));
+
+    @AfterEach
+    void tearDown() {
+        deadlines.close();
+    }
+
+    @Test
+    void openResponseIsCancelledAtTheDeadline() throws Exception {
+        HttpPost upstream = new HttpPost("http://ai/chat/completions");
+        //not referenced by the test after this, the deadline holds it
+        ClientHttpResponse response = deadlines.intercept(request, new byte[0],
+          (req, body) -> {
+              deadlines.start(upstream);
+              return new MockClientHttpResponse();
+          });
+
+        Thread.sleep(300);
+        assertTrue(upstream.isCancelled());
+        response.close();
+    }
+
+    @Test
+    void closingTheResponseCancelsTheDeadline() throws Exception {
+        HttpPost upstream = new HttpPost("http://ai/chat/completions");
+        ClientHttpResponse response = deadlines.intercept(request, new byte[0],
+          (req, body) -> {
+              deadlines.start(upstream);
+              return new MockClientHttpResponse();
+          });
+        assertEquals(1, deadlines.pending());
+
+        response.close();
+        assertEquals(0, deadlines.pending());
+        Thread.sleep(300);
+        assertFalse(upstream.isCancelled());
+    }
+
+    @Test
+    void failedRequestCancelsTheDeadline() {
+        assertThrows(IOException.class,
+                     () -> deadlines.intercept(request, new byte[0],
+                       (req, body) -> {
+                           deadlines.start(
+                             new HttpPost("http://ai/chat/completions"));
+                           throw new IOException("Connection refused");
+                       }));
+        assertEquals(0, deadlines.pending());
+    }
+}
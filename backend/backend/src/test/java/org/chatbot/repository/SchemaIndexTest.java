@@ -0,0 +1,101 @@
+package org.chatbot.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the Flyway migrations on H2 (PostgreSQL mode) and checks that the
+ * per-user queries are planned on the composite indexes
+ */
+class SchemaIndexTest {
+
+    private static final String URL =
+      "jdbc:h2:mem:schema_index;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;" +
+        "DB_CLOSE_DELAY=-1";
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+              .dataSource(URL, "sa", "")
+              .locations("classpath:db/migration",
+                         "classpath:org/chatbot/migration")
+              .load()
+              .migrate();
+    }
+
+    @Test
+    void chatHistoryUsesMessagesIndex() throws SQLException {
+        assertPlanUses("ix_messages_user_timestamp_id",
+                       "select id, text, sender, timestamp from messages " +
+                         "where user_id = 1 and (timestamp < " +
+                         "timestamp '2026-01-01 00:00:00' or " +
+                         "(timestamp = timestamp '2026-01-01 00:00:00' " +
+                         "and id < 10)) order by timestamp desc, id desc " +
+                         "limit 51");
+        assertPlanUses("ix_messages_user_timestamp_id",
+                       "select * from messages where user_id = 1 " +
+                         "order by timestamp desc limit 10");
+    }
+
+    @Test
+    void moodLookupsUseMoodIndex() throws SQLException {
+        assertPlanUses("ux_mood_logs_user_date",
+                       "select * from mood_logs where user_id = 1 " +
+                         "and date = date '2026-01-01'");
+        assertPlanUses("ux_mood_logs_user_date",
+                       "select * from mood_logs where user_id = 1 and date " +
+                         "between date '2026-01-01' and date '2026-02-01' " +
+                         "order by date");
+        assertPlanUses("ux_mood_logs_user_date",
+                       "select avg(mood) from mood_logs where user_id = 1 " +
+                         "and date >= date '2026-01-01'");
+    }
+
+    @Test
+    void journalAndUserLookupsUseIndexes() throws SQLException {
+        assertPlanUses("ix_journal_entries_user_date",
+                       "select count(*) from journal_entries where user_id = 1");
+        assertPlanUses("ix_journal_entries_user_date",
+                       "select * from journal_entries where user_id = 1 " +
+                         "order by date desc");
+        assertPlanUses("ux_users_email",
+                       "select * from users where email = 'a@x.se'");
+    }
+
+    @Test
+    void moodLogIsUniquePerUserAndDay() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            String insert = "insert into mood_logs (id, mood, date, " +
+              "created_at, user_id) values (%d, 3, date '2026-03-01', " +
+              "now(), 42)";
+            statement.executeUpdate(insert.formatted(1));
+            assertThrows(SQLException.class,
+                         () -> statement.executeUpdate(insert.formatted(2)));
+        }
+    }
+
+    private static void assertPlanUses(String index, String sql)
+      throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("explain " + sql)) {
+            StringBuilder text = new StringBuilder();
+            while (plan.next()) {
+                text.append(plan.getString(1));
+            }
+            assertTrue(text.toString().toLowerCase().contains(index),
+                       "expected " + index + " in plan:\n" + text);
+        }
+    }
+}
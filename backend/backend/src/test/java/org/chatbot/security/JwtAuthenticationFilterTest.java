@@ -0,0 +1,166 @@
+package org.chatbot.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.chatbot.repository.AccountDeletionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationFilterTest {
+
+      private final UserDetails user = User.withUsername( "a@x.se" )
+              .password( "hash" )
+              .build();
+
+      private final JwtUtil jwtUtil = new JwtUtil();
+      private final CustomUserDetailsService userDetailsService = mock( CustomUserDetailsService.class );
+      private final AccountDeletionRepository accountDeletionRepository = mock( AccountDeletionRepository.class );
+      private final RevokedUsers revokedUsers = new RevokedUsers( accountDeletionRepository, 60_000 );
+      private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+      private final String token;
+
+      JwtAuthenticationFilterTest() {
+            ReflectionTestUtils.setField( jwtUtil, "secret", "0123456789abcdef0123456789abcdef" );
+            ReflectionTestUtils.setField( jwtUtil, "expiration", 60_000L );
+            ReflectionTestUtils.setField( jwtUtil, "cacheMaxEntries", 100 );
+            token = jwtUtil.generateToken( user, 7L );
+      }
+
+      @AfterEach
+      void tearDown() {
+            SecurityContextHolder.clearContext();
+      }
+
+      private JwtAuthenticationFilter filter( JwtAuthenticationFilter.AuthMode mode ) {
+            JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+            ReflectionTestUtils.setField( filter, "jwtUtil", jwtUtil );
+            ReflectionTestUtils.setField( filter, "userDetailsService", userDetailsService );
+            ReflectionTestUtils.setField( filter, "userDetailsCache", new UserDetailsCache( 60_000, 100 ) );
+            ReflectionTestUtils.setField( filter, "revokedUsers", revokedUsers );
+            ReflectionTestUtils.setField( filter, "meterRegistry", meterRegistry );
+            ReflectionTestUtils.setField( filter, "authMode", mode );
+            return filter;
+      }
+
+      /**
+       * Run one request through the filter
+       * @return who was authenticated when the chain ran, null if nobody
+       */
+      private Authentication authenticate( JwtAuthenticationFilter filter, String authorization ) throws Exception {
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/api/mood/trends" );
+            if ( authorization != null ) {
+                  request.addHeader( "Authorization", authorization );
+            }
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter( request, new MockHttpServletResponse(), chain );
+
+            // the chain always runs, rejecting is left to the security config
+            assertNotNull( chain.getRequest() );
+            if ( SecurityContextHolder.getContext().getAuthentication() != null ) {
+                  assertEquals( 7L, request.getAttribute( JwtAuthenticationFilter.USER_ID_ATTRIBUTE ) );
+            }
+            return SecurityContextHolder.getContext().getAuthentication();
+      }
+
+      private double count( String result ) {
+            return meterRegistry.get( "auth.filter" )
+                    .tag( "result", result )
+                    .timer()
+                    .count();
+      }
+
+      @Test
+      void statelessModeTrustsTheTokenWithoutALookup() throws Exception {
+            Authentication authentication = authenticate( filter( JwtAuthenticationFilter.AuthMode.STATELESS ),
+                    "Bearer " + token );
+
+            assertEquals( "a@x.se", authentication.getName() );
+            verifyNoInteractions( userDetailsService );
+            assertEquals( 1, count( "authenticated" ) );
+      }
+
+      @Test
+      void cachedModeLooksTheUserUpOnce() throws Exception {
+            when( userDetailsService.loadUserByUsername( "a@x.se" ) ).thenReturn( user );
+            JwtAuthenticationFilter filter = filter( JwtAuthenticationFilter.AuthMode.CACHED );
+
+            assertNotNull( authenticate( filter, "Bearer " + token ) );
+            assertNotNull( authenticate( filter, "Bearer " + token ) );
+
+            verify( userDetailsService, times( 1 ) ).loadUserByUsername( "a@x.se" );
+      }
+
+      @Test
+      void databaseModeLooksTheUserUpEveryTime() throws Exception {
+            when( userDetailsService.loadUserByUsername( "a@x.se" ) ).thenReturn( user );
+            JwtAuthenticationFilter filter = filter( JwtAuthenticationFilter.AuthMode.DATABASE );
+
+            assertNotNull( authenticate( filter, "Bearer " + token ) );
+            assertNotNull( authenticate( filter, "Bearer " + token ) );
+
+            verify( userDetailsService, times( 2 ) ).loadUserByUsername( "a@x.se" );
+      }
+
+      @Test
+      void databaseModeRejectsAUserThatIsGone() throws Exception {
+            when( userDetailsService.loadUserByUsername( "a@x.se" ) )
+                    .thenThrow( new UsernameNotFoundException( "User not found with email: a@x.se" ) );
+
+            assertNull( authenticate( filter( JwtAuthenticationFilter.AuthMode.DATABASE ), "Bearer " + token ) );
+            assertEquals( 1, count( "rejected" ) );
+      }
+
+      @Test
+      void revokedUserIsRejectedInEveryMode() throws Exception {
+            when( userDetailsService.loadUserByUsername( "a@x.se" ) ).thenReturn( user );
+            revokedUsers.revoke( 7L );
+
+            for ( JwtAuthenticationFilter.AuthMode mode : JwtAuthenticationFilter.AuthMode.values() ) {
+                  assertNull( authenticate( filter( mode ), "Bearer " + token ) );
+            }
+            assertEquals( 3, count( "rejected" ) );
+      }
+
+      @Test
+      void revocationIsReadFromTheDatabase() throws Exception {
+            // deleted on another instance, or before a restart
+            when( accountDeletionRepository.findRevokedUserIds( any() ) ).thenReturn( List.of( 7L ) );
+            revokedUsers.refresh();
+
+            assertNull( authenticate( filter( JwtAuthenticationFilter.AuthMode.STATELESS ), "Bearer " + token ) );
+            assertEquals( 1, count( "rejected" ) );
+      }
+
+      @Test
+      void badOrMissingTokenIsNotAuthenticated() throws Exception {
+            JwtAuthenticationFilter filter = filter( JwtAuthenticationFilter.AuthMode.STATELESS );
+
+            assertNull( authenticate( filter, "Bearer " + token.substring( 0, token.length() - 2 ) + "xx" ) );
+            assertNull( authenticate( filter, null ) );
+
+            assertEquals( 1, count( "rejected" ) );
+            assertEquals( 1, count( "anonymous" ) );
+      }
+}
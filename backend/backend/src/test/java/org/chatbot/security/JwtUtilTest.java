@@ -0,0 +1,93 @@
+package org.chatbot.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtUtilTest {
+
+      private final UserDetails user = User.withUsername( "a@x.se" )
+              .password( "hash" )
+              .build();
+
+      private JwtUtil jwtUtil( long expirationMs, int maxEntries ) {
+            JwtUtil jwtUtil = new JwtUtil();
+            ReflectionTestUtils.setField( jwtUtil, "secret", "0123456789abcdef0123456789abcdef" );
+            ReflectionTestUtils.setField( jwtUtil, "expiration", expirationMs );
+            ReflectionTestUtils.setField( jwtUtil, "cacheMaxEntries", maxEntries );
+            return jwtUtil;
+      }
+
+      @Test
+      void secondParseIsACacheHit() {
+            JwtUtil jwtUtil = jwtUtil( 60_000, 100 );
+            String token = jwtUtil.generateToken( user, 7L );
+
+            Claims first = jwtUtil.extractAllClaims( token );
+            Claims second = jwtUtil.extractAllClaims( token );
+
+            assertSame( first, second );
+            assertEquals( 1, jwtUtil.cachedTokens() );
+            assertEquals( 7L, jwtUtil.extractUserId( token ) );
+            assertTrue( jwtUtil.validateToken( token, user ) );
+      }
+
+      @Test
+      void cachedTokenIsRejectedOnceExpired() throws Exception {
+            // exp has whole seconds: this token lives between 0.5 and 1.5 seconds
+            JwtUtil jwtUtil = jwtUtil( 1500, 100 );
+            String token = jwtUtil.generateToken( user, 7L );
+            jwtUtil.extractAllClaims( token );
+
+            Thread.sleep( 1600 );
+
+            assertThrows( ExpiredJwtException.class, () -> jwtUtil.extractAllClaims( token ) );
+            assertFalse( jwtUtil.validateToken( token ) );
+            assertEquals( 0, jwtUtil.cachedTokens() );
+      }
+
+      @Test
+      void tamperedTokenIsNotCached() {
+            JwtUtil jwtUtil = jwtUtil( 60_000, 100 );
+            String token = jwtUtil.generateToken( user, 7L );
+
+            assertFalse( jwtUtil.validateToken( token.substring( 0, token.length() - 2 ) + "xx" ) );
+            assertEquals( 0, jwtUtil.cachedTokens() );
+      }
+
+      @Test
+      void sweepDropsOnlyExpiredTokens() throws Exception {
+            JwtUtil shortLived = jwtUtil( 1500, 100 );
+            String expiring = shortLived.generateToken( user, 7L );
+            shortLived.extractAllClaims( expiring );
+            ReflectionTestUtils.setField( shortLived, "expiration", 60_000L );
+            String valid = shortLived.generateToken( user, 7L );
+            shortLived.extractAllClaims( valid );
+            assertEquals( 2, shortLived.cachedTokens() );
+
+            Thread.sleep( 1600 );
+            shortLived.evictExpiredClaims();
+
+            assertEquals( 1, shortLived.cachedTokens() );
+            assertTrue( shortLived.validateToken( valid ) );
+      }
+
+      @Test
+      void cacheIsBounded() {
+            JwtUtil jwtUtil = jwtUtil( 60_000, 2 );
+            for ( long userId = 1; userId <= 3; userId++ ) {
+                  jwtUtil.extractAllClaims( jwtUtil.generateToken( user, userId ) );
+            }
+
+            assertEquals( 2, jwtUtil.cachedTokens() );
+      }
+}
@@ -0,0 +1,42 @@
+package org.chatbot.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginThrottleTest {
+
+      @Test
+      void emailBucketRunsDryAndTellsWhenToRetry() {
+            LoginThrottle throttle = new LoginThrottle( 3, 6, 100, 100, 1000, new SimpleMeterRegistry() );
+
+            for ( int i = 0; i < 3; i++ ) {
+                  assertDoesNotThrow( () -> throttle.acquire( "a@x.se", "10.0.0.1" ) );
+            }
+            AuthThrottledException e = assertThrows( AuthThrottledException.class,
+                    () -> throttle.acquire( "a@x.se", "10.0.0.2" ) );
+            // 6 per minute: one attempt back within 10 seconds
+            assertTrue( e.getRetryAfterSeconds() >= 1 && e.getRetryAfterSeconds() <= 10 );
+
+            // other emails from the same address are not affected
+            assertDoesNotThrow( () -> throttle.acquire( "b@x.se", "10.0.0.1" ) );
+      }
+
+      @Test
+      void refusedAttemptDoesNotSpendTheOtherBucket() {
+            LoginThrottle throttle = new LoginThrottle( 100, 1, 2, 1, 1000, new SimpleMeterRegistry() );
+
+            throttle.acquire( "a@x.se", "10.0.0.1" );
+            throttle.acquire( "b@x.se", "10.0.0.1" );
+            assertThrows( AuthThrottledException.class, () -> throttle.acquire( "c@x.se", "10.0.0.1" ) );
+
+            // c@x.se still has its full bucket from another address
+            for ( int i = 0; i < 100; i++ ) {
+                  String address = "10.0.1." + i;
+                  assertDoesNotThrow( () -> throttle.acquire( "c@x.se", address ) );
+            }
+      }
+}
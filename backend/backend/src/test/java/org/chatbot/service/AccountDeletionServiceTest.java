@@ -0,0 +1,221 @@
+package org.chatbot.service;
+
+import org.chatbot.AiService.AiResponseCache;
+import org.chatbot.model.AccountDeletion;
+import org.chatbot.model.User;
+import org.chatbot.repository.AccountDeletionRepository;
+import org.chatbot.repository.JournalRepository;
+import org.chatbot.repository.MessageRepository;
+import org.chatbot.repository.MoodRepository;
+import org.chatbot.repository.MoodRollupRepository;
+import org.chatbot.repository.UserRepository;
+import org.chatbot.security.RevokedUsers;
+import org.chatbot.security.UserDetailsCache;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountDeletionServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final MessageRepository messageRepository =
+      mock(MessageRepository.class);
+    private final MoodRepository moodRepository = mock(MoodRepository.class);
+    private final JournalRepository journalRepository =
+      mock(JournalRepository.class);
+    private final MoodRollupRepository rollupRepository =
+      mock(MoodRollupRepository.class);
+    private final MessageWriteBehind writeBehind =
+      mock(MessageWriteBehind.class);
+    private final UserDetailsCache userDetailsCache =
+      mock(UserDetailsCache.class);
+    private final AccountDeletionRepository deletionRepository =
+      mock(AccountDeletionRepository.class);
+    private final RevokedUsers revokedUsers =
+      new RevokedUsers(deletionRepository, 60_000);
+
+    //runs the job on the calling thread, chunks of 2 rows, no wait for
+    //other instances, retries after 1 s doubling up to 1 min
+    private final AccountDeletionService service = new AccountDeletionService(
+      userRepository, messageRepository, moodRepository, journalRepository,
+      rollupRepository, deletionRepository, writeBehind, mock(ConversationContextService.class),
+      mock(AiResponseCache.class), userDetailsCache, revokedUsers,
+      mock(PlatformTransactionManager.class), Runnable::run, 2, 60_000, 0,
+      1_000, 60_000);
+
+    @Test
+    void deletesEveryTableInChunksUntilAShortOne() {
+        when(userRepository.findById(7L)).thenReturn(
+          Optional.of(new User("Ann", "ann@x.se", "hash")));
+        when(messageRepository.deleteChunkByUserId(7L, 2)).thenReturn(2, 2, 1);
+        when(moodRepository.deleteChunkByUserId(7L, 2)).thenReturn(2, 0);
+        when(journalRepository.deleteChunkByUserId(7L, 2)).thenReturn(0);
+        when(rollupRepository.deleteByUserId(7L)).thenReturn(3);
+
+        AccountDeletionService.Status started = service.delete(7L);
+        AccountDeletionService.Status status = service.getStatus(started.id())
+                                                      .orElseThrow();
+
+        assertTrue(revokedUsers.isRevoked(7L));
+        assertEquals(AccountDeletionService.State.DONE, status.state());
+        assertNotNull(status.finishedAt());
+        assertEquals(1L, status.deletedRows()
+                               .get("users"));
+        assertEquals(5L, status.deletedRows()
+                               .get("messages"));
+        assertEquals(2L, status.deletedRows()
+                               .get("mood_logs"));
+        assertEquals(0L, status.deletedRows()
+                               .get("journal_entries"));
+        assertEquals(3L, status.deletedRows()
+                               .get("mood_rollups"));
+        verify(messageRepository, times(3)).deleteChunkByUserId(7L, 2);
+
+        //tombstone first, nothing buffered is written after the rows are
+        //gone, the account row last
+        InOrder order = inOrder(deletionRepository, writeBehind,
+                                messageRepository, rollupRepository,
+                                userRepository);
+        order.verify(deletionRepository)
+             .save(any(AccountDeletion.class));
+        order.verify(writeBehind)
+             .discard(7L);
+        order.verify(messageRepository, atLeastOnce())
+             .deleteChunkByUserId(7L, 2);
+        order.verify(rollupRepository)
+             .deleteByUserId(7L);
+        order.verify(userRepository)
+             .deleteById(7L);
+        order.verify(deletionRepository)
+             .finish(eq(started.id()), eq("DONE"), any());
+        verify(userDetailsCache).invalidate("ann@x.se");
+    }
+
+    @Test
+    void failureIsReported() {
+        when(userRepository.findById(7L)).thenReturn(Optional.empty());
+        when(messageRepository.deleteChunkByUserId(7L, 2)).thenThrow(
+          new IllegalStateException("connection lost"));
+
+        AccountDeletionService.Status started = service.delete(7L);
+
+        assertEquals(AccountDeletionService.State.FAILED,
+                     service.getStatus(started.id())
+                            .orElseThrow()
+                            .state());
+        assertTrue(service.getStatus("unknown")
+                          .isEmpty());
+        //the account stays to retry from, its tokens stay rejected
+        verify(userRepository, never()).deleteById(anyLong());
+        verify(deletionRepository).finish(eq(started.id()), eq("FAILED"),
+                                          any());
+        assertTrue(revokedUsers.isRevoked(7L));
+    }
+
+    @Test
+    void runningDeletionIsResumedAfterARestart() {
+        LocalDateTime startedAt = LocalDateTime.now()
+                                               .minusMinutes(5);
+        when(deletionRepository.findByState("RUNNING")).thenReturn(List.of(
+          new AccountDeletion("d-1", 7L, "RUNNING", startedAt)));
+        when(deletionRepository.findDeletedUserIds()).thenReturn(List.of(7L));
+        when(messageRepository.deleteChunkByUserId(7L, 2)).thenReturn(1);
+
+        service.discardDeletedUsers();
+        service.resumeDeletions();
+
+        //the spool is filtered before it is replayed
+        verify(writeBehind, atLeastOnce()).discard(7L);
+        AccountDeletionService.Status status = service.getStatus("d-1")
+                                                      .orElseThrow();
+        assertEquals(AccountDeletionService.State.DONE, status.state());
+        assertEquals(startedAt, status.startedAt());
+        assertEquals(1L, status.deletedRows()
+                               .get("messages"));
+        verify(deletionRepository).finish(eq("d-1"), eq("DONE"), any());
+    }
+
+    @Test
+    void failedDeletionIsRetriedUntilDone() {
+        when(deletionRepository.findByState("FAILED")).thenReturn(List.of(
+          new AccountDeletion("d-3", 7L, "FAILED", LocalDateTime.now())));
+        when(deletionRepository.claimRetry("d-3")).thenReturn(1);
+        when(userRepository.findById(7L)).thenReturn(
+          Optional.of(new User("Ann", "ann@x.se", "hash")));
+
+        service.retryFailedDeletions();
+
+        assertEquals(AccountDeletionService.State.DONE,
+                     service.getStatus("d-3")
+                            .orElseThrow()
+                            .state());
+        verify(userRepository).deleteById(7L);
+        verify(deletionRepository).finish(eq("d-3"), eq("DONE"), any());
+    }
+
+    @Test
+    void failedDeletionClaimedElsewhereIsNotRun() {
+        when(deletionRepository.findByState("FAILED")).thenReturn(List.of(
+          new AccountDeletion("d-4", 7L, "FAILED", LocalDateTime.now())));
+        when(deletionRepository.claimRetry("d-4")).thenReturn(0);
+
+        service.retryFailedDeletions();
+
+        verify(messageRepository, never()).deleteChunkByUserId(anyLong(),
+                                                               anyInt());
+        assertTrue(service.getStatus("d-4")
+                          .isEmpty());
+    }
+
+    @Test
+    void retryBackoffDoublesUpToTheMax() {
+        assertEquals(1_000, service.retryDelayMillis(0));
+        assertEquals(4_000, service.retryDelayMillis(2));
+        assertEquals(60_000, service.retryDelayMillis(10));
+        assertEquals(60_000, service.retryDelayMillis(1_000));
+    }
+
+    @Test
+    void usersDeletedOnOtherInstancesAreDiscardedOnRefresh() {
+        when(deletionRepository.findDeletedUserIds()).thenReturn(List.of(7L));
+        when(deletionRepository.findUserIdsDeletedSince(any())).thenReturn(
+          List.of(8L));
+
+        service.discardDeletedUsers();
+        service.discardDeletedUsers();
+
+        verify(writeBehind).discard(7L);
+        verify(writeBehind).discard(8L);
+    }
+
+    @Test
+    void statusOfADeletionRunElsewhereIsReadFromTheDatabase() {
+        AccountDeletion row = new AccountDeletion("d-2", 7L, "RUNNING",
+                                                  LocalDateTime.now());
+        when(deletionRepository.findById("d-2")).thenReturn(Optional.of(row));
+
+        assertEquals(AccountDeletionService.State.RUNNING,
+                     service.getStatus("d-2")
+                            .orElseThrow()
+                            .state());
+    }
+}
@@ -0,0 +1,61 @@
+package org.chatbot.service;
+
+import org.chatbot.dto.RegisterRequest;
+import org.chatbot.model.User;
+import org.chatbot.repository.UserRepository;
+import org.chatbot.security.LoginThrottle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AuthService authService = new AuthService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(authService, "userRepository",
+                                     userRepository);
+        ReflectionTestUtils.setField(authService, "passwordEncoder",
+                                     mock(PasswordEncoder.class));
+        ReflectionTestUtils.setField(authService, "loginThrottle",
+                                     mock(LoginThrottle.class));
+    }
+
+    private static RegisterRequest request(String email) {
+        return new RegisterRequest("Ann", email, "secret1");
+    }
+
+    @Test
+    void mixedCaseDuplicateIsFoundByTheCheck() {
+        when(userRepository.existsByEmail("ann@x.se")).thenReturn(true);
+
+        IllegalArgumentException e = assertThrows(
+          IllegalArgumentException.class,
+          () -> authService.register(request("Ann@X.se"), "10.0.0.1"));
+        assertEquals("Email already registered", e.getMessage());
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void concurrentSignUpHittingTheUniqueIndexIsADuplicate() {
+        when(userRepository.save(any(User.class))).thenThrow(
+          new DataIntegrityViolationException("ux_users_email"));
+
+        IllegalArgumentException e = assertThrows(
+          IllegalArgumentException.class,
+          () -> authService.register(request("ann@x.se"), "10.0.0.1"));
+        assertEquals("Email already registered", e.getMessage());
+    }
+}
@@ -0,0 +1,166 @@
+package org.chatbot.service;
+
+import org.chatbot.controller.ChatController;
+import org.chatbot.dto.MessagePage;
+import org.chatbot.dto.MessageView;
+import org.chatbot.model.Message;
+import org.chatbot.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset paging of chat history against the real queries, on H2
+ * (PostgreSQL mode) migrated by Flyway
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+  "spring.datasource.url=jdbc:h2:mem:chat_history;MODE=PostgreSQL;" +
+    "DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+  "spring.datasource.driver-class-name=org.h2.Driver",
+  "spring.datasource.username=sa",
+  "spring.datasource.password=",
+  "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"})
+class ChatHistoryPageTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 4, 1,
+                                                               12, 0);
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    private final ChatService chatService = new ChatService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(chatService, "messageRepository",
+                                     messageRepository);
+        ReflectionTestUtils.setField(chatService, "historyDefaultLimit", 50);
+        ReflectionTestUtils.setField(chatService, "historyMaxLimit", 200);
+    }
+
+    private void save(String text, LocalDateTime timestamp) {
+        messageRepository.save(new Message(text, "user", timestamp, 7L));
+    }
+
+    private static List<String> texts(MessagePage page) {
+        return page.getMessages()
+                   .stream()
+                   .map(MessageView::getText)
+                   .toList();
+    }
+
+    @Test
+    void cursorsPageBackAndForth() {
+        for (int i = 1; i <= 5; i++) {
+            save("m" + i, NOON.plusMinutes(i));
+        }
+        //newer, but someone else's
+        messageRepository.save(new Message("not mine", "user",
+                                           NOON.plusMinutes(9), 8L));
+
+        MessagePage latest = chatService.getChatHistoryPage(7L, null, null, 2);
+        assertEquals(List.of("m4", "m5"), texts(latest));
+        assertTrue(latest.isHasMore());
+
+        MessagePage older = chatService.getChatHistoryPage(7L,
+                                                           latest.getBefore(),
+                                                           null, 2);
+        assertEquals(List.of("m2", "m3"), texts(older));
+        assertTrue(older.isHasMore());
+
+        MessagePage oldest = chatService.getChatHistoryPage(7L,
+                                                            older.getBefore(),
+                                                            null, 2);
+        assertEquals(List.of("m1"), texts(oldest));
+        assertFalse(oldest.isHasMore());
+
+        //and forward again from the oldest page
+        MessagePage newer = chatService.getChatHistoryPage(7L, null,
+                                                           oldest.getAfter(),
+                                                           2);
+        assertEquals(List.of("m2", "m3"), texts(newer));
+        assertTrue(newer.isHasMore());
+
+        //nothing newer: same cursor back, so polling continues from there
+        MessagePage none = chatService.getChatHistoryPage(7L, null,
+                                                          latest.getAfter(),
+                                                          2);
+        assertTrue(none.getMessages()
+                       .isEmpty());
+        assertEquals(latest.getAfter(), none.getAfter());
+        assertNull(none.getBefore());
+    }
+
+    @Test
+    void messagesWithTheSameTimestampAreNotSkippedAtAPageBoundary() {
+        //a user msg and its reply are saved with the same timestamp
+        save("a", NOON);
+        save("b", NOON);
+        save("c", NOON);
+        save("d", NOON);
+        save("e", NOON.plusMinutes(1));
+
+        List<String> seen = new ArrayList<>();
+        MessagePage page = chatService.getChatHistoryPage(7L, null, null, 2);
+        seen.addAll(0, texts(page));
+        while (page.isHasMore()) {
+            page = chatService.getChatHistoryPage(7L, page.getBefore(), null,
+                                                  2);
+            seen.addAll(0, texts(page));
+        }
+        assertEquals(List.of("a", "b", "c", "d", "e"), seen);
+
+        //and forward one at a time from the oldest
+        List<String> forward = new ArrayList<>(texts(page));
+        page = chatService.getChatHistoryPage(7L, null, page.getAfter(), 1);
+        while (!page.getMessages()
+                    .isEmpty()) {
+            forward.addAll(texts(page));
+            page = chatService.getChatHistoryPage(7L, null, page.getAfter(), 1);
+        }
+        assertEquals(List.of("a", "b", "c", "d", "e"), forward);
+    }
+
+    @Test
+    void invalidCursorIsABadRequest() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> chatService.getChatHistoryPage(7L, "not-a-cursor",
+                                                          null, 10));
+        assertThrows(IllegalArgumentException.class,
+                     () -> chatService.getChatHistoryPage(7L, null, "bWVo",
+                                                          10));
+
+        AuthService authService = mock(AuthService.class);
+        when(authService.getUserIdFromToken("Bearer t")).thenReturn(7L);
+        ChatController controller = new ChatController();
+        ReflectionTestUtils.setField(controller, "chatService", chatService);
+        ReflectionTestUtils.setField(controller, "authService", authService);
+
+        assertEquals(HttpStatus.BAD_REQUEST,
+                     controller.getChatHistory("Bearer t", "not-a-cursor",
+                                               null, 10)
+                               .getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                     controller.getChatHistory("Bearer t", "x", "y", 10)
+                               .getStatusCode());
+    }
+}
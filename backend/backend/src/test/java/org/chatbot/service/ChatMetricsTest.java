@@ -0,0 +1,59 @@
+package org.chatbot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMetricsTest {
+
+    @Test
+    void streamedReplyRecordsFirstTokenTokensAndRate() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatMetrics metrics = new ChatMetrics(registry);
+        List<String> received = new ArrayList<>();
+
+        ChatMetrics.InferenceTimer timer = metrics.startInference();
+        var onToken = timer.wrap(received::add);
+        for (String token : List.of("I", " hear", " you")) {
+            onToken.accept(token);
+            Thread.sleep(5);
+        }
+        timer.finish();
+
+        assertEquals(List.of("I", " hear", " you"), received);
+        assertEquals(1, registry.get("chat.inference.ttft")
+                                .timer()
+                                .count());
+        assertEquals(1, registry.get("chat.stage")
+                                .tag("stage", "inference")
+                                .timer()
+                                .count());
+        assertEquals(3, registry.get("ai.tokens.generated")
+                                .counter()
+                                .count());
+        assertTrue(metrics.getTokenRate() > 0);
+    }
+
+    @Test
+    void riskChecksAreCountedPerLexiconVersion() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatMetrics metrics = new ChatMetrics(registry);
+        metrics.recordRisk(new RiskAssessment(true, "crisis", "v2"));
+        metrics.recordRisk(new RiskAssessment(false, null, "v2"));
+        metrics.recordRisk(new RiskAssessment(false, null, "v2"));
+
+        assertEquals(2, registry.get("chat.risk.assessments")
+                                .tags("result", "safe", "lexicon", "v2")
+                                .counter()
+                                .count());
+        assertEquals(1, registry.get("chat.risk.assessments")
+                                .tags("result", "risky", "lexicon", "v2")
+                                .counter()
+                                .count());
+    }
+}
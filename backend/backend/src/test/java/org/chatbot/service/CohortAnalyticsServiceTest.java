@@ -0,0 +1,95 @@
+package org.chatbot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the cohort job on H2 (PostgreSQL mode) with partitions of two user
+ * ids, so the summaries of several fork-join leaves are merged
+ */
+class CohortAnalyticsServiceTest {
+
+    private static final LocalDate LAST_DAY = LocalDate.of(2026, 5, 31);
+
+    private static DriverManagerDataSource dataSource;
+
+    @BeforeAll
+    static void migrate() {
+        dataSource = new DriverManagerDataSource(
+          "jdbc:h2:mem:cohort;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;" +
+            "DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure()
+              .dataSource(dataSource)
+              .locations("classpath:db/migration",
+                         "classpath:org/chatbot/migration")
+              .load()
+              .migrate();
+
+        List<Object[]> logs = new ArrayList<>();
+        //user 1 goes down, user 2 goes up, user 3 stays, user 4 has too
+        //few logs for a trend, user 9 goes down in another partition
+        int[][] moods = {{1, 5, 5, 4, 4, 3, 2, 1}, {2, 1, 2, 2, 3, 4, 4, 5},
+          {3, 3, 3, 3, 3, 3, 3, 3}, {4, 1, 5}, {9, 4, 4, 3, 3, 2, 2}};
+        long id = 1;
+        for (int[] user : moods) {
+            for (int day = 1; day < user.length; day++) {
+                logs.add(new Object[]{id++, user[day],
+                  Date.valueOf(LAST_DAY.minusDays(user.length - 1 - day)),
+                  user[0]});
+            }
+        }
+        //outside the window
+        logs.add(new Object[]{id, 1, Date.valueOf(LAST_DAY.minusDays(30)), 1});
+        new JdbcTemplate(dataSource).batchUpdate(
+          "insert into mood_logs (id, mood, date, created_at, user_id) " +
+            "values (?, ?, ?, now(), ?)", logs);
+    }
+
+    @Test
+    void aggregatesAllPartitionsAndStoresTheRun() {
+        CohortAnalyticsService service = new CohortAnalyticsService(
+          dataSource, new DataSourceTransactionManager(dataSource),
+          new SimpleMeterRegistry(), Runnable::run, 7, 2, 2, 3, 2, 5, 0.1, 2);
+
+        CohortSummary summary = service.run(LAST_DAY)
+                                       .orElseThrow();
+        assertEquals(7 + 7 + 7 + 2 + 6, summary.getTotalLogs());
+        assertEquals(5, summary.getActiveUsers());
+        assertEquals(2, summary.getUsersTrendingDown());
+        assertEquals(1, summary.getUsersTrendingUp());
+        assertTrue(summary.distributionShift(2) > 0.3);
+
+        CohortReport report = service.getLatestReport()
+                                     .orElseThrow();
+        assertEquals(LAST_DAY.minusDays(6), report.firstDay());
+        assertEquals(0.4, report.shareTrendingDown(), 1e-9);
+        assertEquals(7, report.days()
+                              .size());
+        //last day: 1, 5, 3, 5, 2
+        CohortReport.Day last = report.days()
+                                      .get(6);
+        assertEquals(LAST_DAY, last.date());
+        assertEquals(3.2, last.averageMood(), 1e-9);
+        assertArrayEquals(new int[]{1, 1, 1, 0, 2}, last.moodDistribution());
+
+        //only the newest keep-runs runs stay
+        service.run(LAST_DAY);
+        service.run(LAST_DAY);
+        assertEquals(2, new JdbcTemplate(dataSource).queryForObject(
+          "select count(*) from cohort_mood_runs", Integer.class));
+    }
+}
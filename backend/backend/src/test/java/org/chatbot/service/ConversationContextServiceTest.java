@@ -0,0 +1,110 @@
+package org.chatbot.service;
+
+import org.chatbot.AiService.ChatTurn;
+import org.chatbot.model.Message;
+import org.chatbot.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationContextServiceTest {
+
+    //every turn below is one word: 1 token + the template overhead
+    private static final int TURN_TOKENS = 5;
+
+    private final MessageRepository messageRepository =
+      mock(MessageRepository.class);
+    private final ConversationContextService service =
+      new ConversationContextService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "messageRepository",
+                                     messageRepository);
+        ReflectionTestUtils.setField(service, "maxTurns", 4);
+        ReflectionTestUtils.setField(service, "maxUsers", 100);
+        ReflectionTestUtils.setField(service, "replyTokens", 100);
+        //system prompt + msg + reply + two history turns
+        ReflectionTestUtils.setField(service, "maxContextTokens",
+                                     2 * TURN_TOKENS + 100 + 2 * TURN_TOKENS);
+    }
+
+    @Test
+    void coldLoadReadsMaxTurnsMessagesOldestFirst() {
+        LocalDateTime now = LocalDateTime.now();
+        when(messageRepository.findByUserIdOrderByTimestampDescIdDesc(
+          7L, Limit.of(5)))
+          .thenReturn(List.of(new Message("b", "ai", now, 7L),
+                              new Message("a", "user", now.minusSeconds(1),
+                                          7L)));
+
+        List<ChatTurn> history = service.buildHistory(7L, "sys", "hi");
+
+        verify(messageRepository).findByUserIdOrderByTimestampDescIdDesc(
+          7L, Limit.of(5));
+        assertEquals(List.of(ChatTurn.user("a"), ChatTurn.assistant("b")),
+                     history);
+    }
+
+    @Test
+    void coldLoadKeepsOnlyWholeExchanges() {
+        ReflectionTestUtils.setField(service, "maxContextTokens", 10_000);
+        LocalDateTime now = LocalDateTime.now();
+        //newest first: a user msg the AI did not answer, a pair, a user
+        //msg without reply, a pair, and a reply whose msg was cut off
+        when(messageRepository.findByUserIdOrderByTimestampDescIdDesc(
+          7L, Limit.of(5)))
+          .thenReturn(List.of(new Message("unanswered", "user", now, 7L),
+                              new Message("d", "ai", now.minusSeconds(1), 7L),
+                              new Message("c", "user", now.minusSeconds(1),
+                                          7L),
+                              new Message("failed", "user",
+                                          now.minusSeconds(2), 7L),
+                              new Message("b", "ai", now.minusSeconds(3),
+                                          7L)));
+
+        assertEquals(List.of(ChatTurn.user("c"), ChatTurn.assistant("d")),
+                     service.buildHistory(7L, "sys", "hi"));
+    }
+
+    @Test
+    void onlyTheNewestTurnsThatFitAreSent() {
+        service.recordExchange(7L, "a", "b");
+        service.recordExchange(7L, "c", "d");
+        service.recordExchange(7L, "e", "f");
+
+        assertEquals(List.of(ChatTurn.user("e"), ChatTurn.assistant("f")),
+                     service.buildHistory(7L, "sys", "hi"));
+    }
+
+    @Test
+    void theReplyIsKeptOutOfTheBudget() {
+        service.recordExchange(7L, "a", "b");
+        ReflectionTestUtils.setField(service, "replyTokens",
+                                     100 + TURN_TOKENS);
+
+        //room for one turn only: the exchange is left out whole
+        assertEquals(List.of(), service.buildHistory(7L, "sys", "hi"));
+    }
+
+    @Test
+    void ringBufferKeepsMaxTurns() {
+        ReflectionTestUtils.setField(service, "maxContextTokens", 10_000);
+        service.recordExchange(7L, "a", "b");
+        service.recordExchange(7L, "c", "d");
+        service.recordExchange(7L, "e", "f");
+
+        assertEquals(List.of(ChatTurn.user("c"), ChatTurn.assistant("d"),
+                             ChatTurn.user("e"), ChatTurn.assistant("f")),
+                     service.buildHistory(7L, "sys", "hi"));
+    }
+}
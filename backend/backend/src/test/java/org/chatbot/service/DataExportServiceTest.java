@@ -0,0 +1,133 @@
+package org.chatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.chatbot.dto.MessageView;
+import org.chatbot.model.User;
+import org.chatbot.repository.JournalRepository;
+import org.chatbot.repository.MessageRepository;
+import org.chatbot.repository.MoodRepository;
+import org.chatbot.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataExportServiceTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 4, 1,
+                                                               12, 0);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final MessageRepository messageRepository =
+      mock(MessageRepository.class);
+    private final MoodRepository moodRepository = mock(MoodRepository.class);
+    private final JournalRepository journalRepository =
+      mock(JournalRepository.class);
+    private DataExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DataExportService(userRepository, messageRepository,
+                                        moodRepository, journalRepository,
+                                        mock(PlatformTransactionManager.class),
+                                        new ObjectMapper().registerModule(
+                                          new JavaTimeModule()), 2, 1);
+        User user = new User();
+        user.setName("A");
+        user.setEmail("a@x.se");
+        when(userRepository.findById(7L)).thenReturn(Optional.of(user));
+        //three messages in chunks of two: the second read starts after #2
+        when(messageRepository.streamViewsAfter(eq(7L), any(), eq(0L),
+                                                any())).thenAnswer(
+          invocation -> Stream.of(message(1), message(2)));
+        when(messageRepository.streamViewsAfter(7L, NOON.plusMinutes(2), 2L,
+                                                Limit.of(2))).thenAnswer(
+          invocation -> Stream.of(message(3)));
+        when(moodRepository.streamByUserIdAndDateAfterOrderByDateAsc(eq(7L),
+                                                                     any(),
+                                                                     any())).thenAnswer(
+          invocation -> Stream.empty());
+        when(journalRepository.streamAfter(eq(7L), any(), anyLong(),
+                                           any())).thenAnswer(
+          invocation -> Stream.empty());
+    }
+
+    @Test
+    void ndjsonHasOneTypedLinePerRow() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(7L, DataExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8)
+                            .split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("{\"type\":\"profile\""));
+        assertTrue(lines[0].contains("\"email\":\"a@x.se\""));
+        assertTrue(lines[3].startsWith("{\"type\":\"messages\",\"data\":" +
+                                         "{\"id\":3,"));
+        verify(messageRepository).streamViewsAfter(7L, NOON.plusMinutes(2),
+                                                   2L, Limit.of(2));
+    }
+
+    @Test
+    void zipHasOneFilePerKind() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(7L, DataExportService.Format.ZIP, out);
+
+        List<String> entries = new ArrayList<>();
+        String messages = null;
+        try (ZipInputStream zip = new ZipInputStream(
+          new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                String content = new String(zip.readAllBytes(),
+                                            StandardCharsets.UTF_8);
+                if (entry.getName()
+                         .equals("messages.ndjson")) {
+                    messages = content;
+                }
+            }
+        }
+        assertEquals(List.of("profile.ndjson", "messages.ndjson",
+                             "moods.ndjson", "journal.ndjson"), entries);
+        assertEquals(3, messages.split("\n").length);
+    }
+
+    @Test
+    void exportsAreLimited() {
+        DataExportService.Slot slot = service.reserve()
+                                             .orElseThrow();
+        assertTrue(service.reserve()
+                          .isEmpty());
+        slot.close();
+        slot.close();
+        assertTrue(service.reserve()
+                          .isPresent());
+    }
+
+    private static MessageView message(long id) {
+        return new MessageView(id, "msg " + id, "USER",
+                               NOON.plusMinutes(id));
+    }
+}
@@ -0,0 +1,74 @@
+package org.chatbot.service;
+
+import org.chatbot.service.KeywordMatcher.Category;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeywordMatcherTest {
+
+    private static List<String> hits(KeywordMatcher matcher, String text) {
+        List<String> found = new ArrayList<>();
+        matcher.scan(text, (k, category, start, end) -> {
+            found.add(category + ":" + text.substring(start, end) + "@" + start);
+            return true;
+        });
+        return found;
+    }
+
+    @Test
+    void reportsOverlappingHitsWithPositions() {
+        KeywordMatcher matcher = KeywordMatcher.builder()
+                                               .add(Category.DISTRESS,
+                                                    List.of("he", "she",
+                                                            "hers", "his"))
+                                               .build();
+
+        assertEquals(List.of("DISTRESS:she@1", "DISTRESS:he@2",
+                             "DISTRESS:hers@2"), hits(matcher, "ushers"));
+    }
+
+    @Test
+    void foldsCaseAndApostrophesWhileScanning() {
+        KeywordMatcher matcher = KeywordMatcher.builder()
+                                               .add(Category.CRISIS,
+                                                    List.of("can't go on"))
+                                               .add(Category.POSITIVE,
+                                                    List.of("Calm"))
+                                               .build();
+
+        assertEquals(List.of("CRISIS:Can’t Go On@2", "POSITIVE:CALM@17"),
+                     hits(matcher, "I Can’t Go On, I CALM down"));
+    }
+
+    @Test
+    void stopsWhenListenerSaysSo() {
+        KeywordMatcher matcher = KeywordMatcher.builder()
+                                               .add(Category.NEGATIVE,
+                                                    List.of("sad", "bad"))
+                                               .build();
+        List<Integer> seen = new ArrayList<>();
+        matcher.scan("sad and bad", (k, category, start, end) -> {
+            seen.add(k);
+            return false;
+        });
+
+        assertEquals(List.of(0), seen);
+    }
+
+    @Test
+    void sentimentServiceUsesTheMatcher() {
+        SentimentService service = new SentimentService(new RiskLexiconService(""));
+
+        assertTrue(service.detectRisk("Sometimes I want to DIE"));
+        assertTrue(service.detectRisk("I feel hopeless and worthless"));
+        assertFalse(service.detectRisk("hopeless hopeless"));
+        assertEquals("negative", service.analyzeSentiment("sad and anxious"));
+        assertEquals("positive", service.analyzeSentiment("calm and happy, a bit sad"));
+    }
+}
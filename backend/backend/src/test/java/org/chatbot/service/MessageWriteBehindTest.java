@@ -0,0 +1,254 @@
+package org.chatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.chatbot.model.Message;
+import org.chatbot.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageWriteBehindTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void queuedExchangesAreWrittenInOneBatch() throws Exception {
+        MessageRepository repository = mock(MessageRepository.class);
+        List<List<Message>> saved = recordSaves(repository);
+        MessageWriteBehind writer = writer(repository, true);
+
+        writer.start();
+        writer.enqueue(exchange("a"));
+        writer.enqueue(exchange("b"));
+        writer.stop();
+
+        assertEquals(List.of("a", "a-reply", "b", "b-reply"),
+                     texts(saved));
+    }
+
+    @Test
+    void failedWritesAreSpooledAndReplayed() throws Exception {
+        MessageRepository repository = mock(MessageRepository.class);
+        when(repository.saveAll(anyList())).thenThrow(
+          new DataAccessResourceFailureException("database down"));
+        MessageWriteBehind writer = writer(repository, false);
+
+        //write-behind off: written directly, fails, ends up in the spool
+        writer.start();
+        writer.enqueue(exchange("a"));
+        Path spool = dir.resolve("spool.ndjson");
+        assertTrue(Files.exists(spool));
+
+        //database back: the replay writes the pair and removes the file
+        List<List<Message>> saved = recordSaves(repository);
+        writer.replaySpool();
+        assertEquals(List.of("a", "a-reply"), texts(saved));
+        assertFalse(Files.exists(spool));
+        assertFalse(Files.exists(dir.resolve("spool.ndjson.replay")));
+    }
+
+    @Test
+    void aBadRowOnlySpoolsItsOwnExchange() throws Exception {
+        MessageRepository repository = mock(MessageRepository.class);
+        List<List<Message>> saved = refuse(repository, "bad");
+        MessageWriteBehind writer = writer(repository, true);
+
+        writer.start();
+        writer.enqueue(exchange("a"));
+        writer.enqueue(exchange("bad"));
+        writer.enqueue(exchange("b"));
+        writer.stop();
+
+        assertEquals(List.of("a", "a-reply", "b", "b-reply"),
+                     texts(saved));
+        assertEquals(1, Files.readAllLines(dir.resolve("spool.ndjson"))
+                             .size());
+    }
+
+    @Test
+    void aRowThatKeepsFailingIsRejectedAndTheRestReplayed() throws Exception {
+        MessageRepository repository = mock(MessageRepository.class);
+        when(repository.saveAll(anyList())).thenThrow(
+          new DataAccessResourceFailureException("database down"));
+        MessageWriteBehind writer = writer(repository, false);
+        writer.start();
+        writer.enqueue(exchange("a"));
+        writer.enqueue(exchange("bad"));
+        writer.enqueue(exchange("b"));
+
+        //the bad one is kept for the next run
+        List<List<Message>> saved = refuse(repository, "bad");
+        writer.replaySpool();
+        assertEquals(List.of("a", "a-reply", "b", "b-reply"),
+                     texts(saved));
+        Path replay = dir.resolve("spool.ndjson.replay");
+        assertEquals(1, Files.readAllLines(replay)
+                             .size());
+
+        //refused again: rejected, then the spool written meanwhile is read
+        writer.enqueue(exchange("c"));
+        writer.replaySpool();
+        assertEquals(List.of("a", "a-reply", "b", "b-reply", "c", "c-reply"),
+                     texts(saved));
+        assertFalse(Files.exists(replay));
+        assertFalse(Files.exists(dir.resolve("spool.ndjson")));
+        List<String> rejected =
+          Files.readAllLines(dir.resolve("spool.ndjson.rejected"));
+        assertEquals(1, rejected.size());
+        assertTrue(rejected.get(0)
+                           .contains("bad-reply"));
+    }
+
+    @Test
+    void replayStopsWhileTheDatabaseIsDown() throws Exception {
+        MessageRepository repository = mock(MessageRepository.class);
+        when(repository.saveAll(anyList())).thenThrow(
+          new DataAccessResourceFailureException("database down"));
+        MessageWriteBehind writer = writer(repository, false);
+        writer.start();
+        writer.enqueue(exchange("a"));
+        writer.enqueue(exchange("b"));
+
+        for (int i = 0; i < 3; i++) {
+            writer.replaySpool();
+        }
+
+        assertEquals(2, Files.readAllLines(dir.resolve("spool.ndjson.replay"))
+                             .size());
+        assertFalse(Files.exists(dir.resolve("spool.ndjson.rejected")));
+    }
+
+    @Test
+    void discardWaitsForABatchBeingWritten() throws Exception {
+        MessageRepository repository = mock(MessageRepository.class);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        List<String> saved = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            writing.countDown();
+            commit.await();
+            List<Message> messages = invocation.getArgument(0);
+            messages.forEach(m -> saved.add(m.getText()));
+            return messages;
+        }).when(repository)
+          .saveAll(anyList());
+        MessageWriteBehind writer = writer(repository, true);
+        writer.start();
+        writer.enqueue(exchange("a"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        //the batch is in flight: discard must not return before it commits
+        CompletableFuture<Void> discard = CompletableFuture.runAsync(
+          () -> writer.discard(1L));
+        Thread.sleep(200);
+        assertFalse(discard.isDone());
+        commit.countDown();
+        discard.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("a", "a-reply"), saved);
+
+        //rows deleted now stay deleted
+        writer.enqueue(exchange("b"));
+        writer.stop();
+        assertEquals(List.of("a", "a-reply"), saved);
+    }
+
+    @Test
+    void discardedUserIsLeftOutOfABatch() throws Exception {
+        MessageRepository repository = mock(MessageRepository.class);
+        List<List<Message>> saved = recordSaves(repository);
+        MessageWriteBehind writer = writer(repository, false);
+        writer.start();
+        writer.discard(1L);
+
+        //direct and replayed writes are filtered too
+        LocalDateTime now = LocalDateTime.now();
+        writer.enqueue(List.of(new Message("other", "user", now, 2L),
+                               new Message("mine", "ai", now, 1L)));
+        assertEquals(List.of("other"), texts(saved));
+    }
+
+    private MessageWriteBehind writer(MessageRepository repository,
+                                      boolean writeBehind) {
+        return new MessageWriteBehind(repository,
+                                      new TransactionTemplate(mock(
+                                        PlatformTransactionManager.class)),
+                                      new ObjectMapper().registerModule(
+                                        new JavaTimeModule()),
+                                      new SimpleMeterRegistry(), writeBehind,
+                                      100, 50, 50, 5000,
+                                      dir.resolve("spool.ndjson")
+                                         .toString(), 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<List<Message>> recordSaves(
+      MessageRepository repository) {
+        List<List<Message>> saved = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<Message> messages = new ArrayList<>(
+              (List<Message>) invocation.getArgument(0));
+            saved.add(messages);
+            return messages;
+        }).when(repository)
+          .saveAll(anyList());
+        return saved;
+    }
+
+    /**
+     * Save like a database that refuses any batch containing the text
+     */
+    @SuppressWarnings("unchecked")
+    private static List<List<Message>> refuse(MessageRepository repository,
+                                              String text) {
+        List<List<Message>> saved = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<Message> messages = new ArrayList<>(
+              (List<Message>) invocation.getArgument(0));
+            if (messages.stream()
+                        .anyMatch(m -> m.getText()
+                                        .equals(text))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            saved.add(messages);
+            return messages;
+        }).when(repository)
+          .saveAll(anyList());
+        return saved;
+    }
+
+    private static List<Message> exchange(String text) {
+        LocalDateTime now = LocalDateTime.now();
+        return List.of(new Message(text, "user", now, 1L),
+                       new Message(text + "-reply", "ai", now, 1L));
+    }
+
+    private static List<String> texts(List<List<Message>> saved) {
+        List<String> texts = new ArrayList<>();
+        saved.forEach(batch -> batch.forEach(m -> texts.add(m.getText())));
+        return texts;
+    }
+}
@@ -0,0 +1,94 @@
+package org.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoodSeriesTest {
+
+    //a Monday
+    private static final LocalDate START = LocalDate.of(2026, 3, 2);
+
+    @Test
+    void statisticsStreaksAndMovingAverage() {
+        //days 0-2 logged, day 3 skipped, days 4-5 logged, today (6) not yet
+        MoodSeries series = new MoodSeries(START, START.plusDays(6));
+        int[] moods = {2, 4, 3, 0, 5, 1};
+        for (int day = 0; day < moods.length; day++) {
+            if (moods[day] != 0) {
+                series.set(START.plusDays(day), moods[day]);
+            }
+        }
+
+        MoodAnalytics analytics = series.analyze(3);
+
+        assertEquals(5, analytics.loggedDays());
+        assertEquals(3.0, analytics.averageMood(), 1e-9);
+        assertEquals(Math.sqrt(2.0), analytics.stdDev(), 1e-9);
+        assertEquals(3, analytics.longestStreak());
+        assertEquals(2, analytics.currentStreak());
+        assertEquals(START.plusDays(6), analytics.lastDay());
+        assertArrayEquals(new float[]{2f, 3f, 3f, 3.5f, 4f, 3f, 3f},
+                          analytics.movingAverage(), 1e-6f);
+        assertArrayEquals(new double[]{2, 4, 3, 0, 5, 1, 0},
+                          analytics.weekdayAverages(), 1e-9);
+        assertNull(analytics.changePoint());
+    }
+
+    @Test
+    void weekdaysAreAveragedAcrossWeeks() {
+        MoodSeries series = new MoodSeries(START.plusDays(2), START.plusDays(2));
+        //Wednesdays 4 then 2, a Sunday 5
+        series.set(START.plusDays(2), 4);
+        series.set(START.plusDays(9), 2);
+        series.set(START.plusDays(13), 5);
+
+        MoodAnalytics analytics = series.analyze(7);
+
+        assertEquals(12, analytics.movingAverage().length);
+        assertEquals(3.0, analytics.weekdayAverages()[2], 1e-9);
+        assertEquals(5.0, analytics.weekdayAverages()[6], 1e-9);
+        assertEquals(1, analytics.currentStreak());
+    }
+
+    @Test
+    void findsAShiftInMoodLevel() {
+        MoodSeries series = new MoodSeries(START, START.plusDays(59));
+        for (int day = 0; day < 60; day++) {
+            int low = day % 2 == 0 ? 2 : 1;
+            series.set(START.plusDays(day), day < 40 ? low : low + 2);
+        }
+
+        MoodAnalytics.ChangePoint change = series.analyze(7)
+                                                 .changePoint();
+
+        assertNotNull(change);
+        assertEquals(START.plusDays(40), change.date());
+        assertEquals(1.5, change.averageBefore(), 1e-9);
+        assertEquals(3.5, change.averageAfter(), 1e-9);
+    }
+
+    @Test
+    void emptySeriesIsAllZero() {
+        MoodAnalytics analytics = new MoodSeries(START, START).analyze(7);
+
+        assertEquals(0, analytics.loggedDays());
+        assertEquals(0.0, analytics.averageMood());
+        assertEquals(0, analytics.currentStreak());
+        assertNull(analytics.changePoint());
+    }
+
+    @Test
+    void rejectsDaysBeforeTheStartAndBadWindows() {
+        MoodSeries series = new MoodSeries(START, START);
+        assertThrows(IllegalArgumentException.class,
+                     () -> series.set(START.minusDays(1), 3));
+        assertThrows(IllegalArgumentException.class, () -> series.analyze(0));
+    }
+}
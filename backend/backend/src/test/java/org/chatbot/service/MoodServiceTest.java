@@ -0,0 +1,107 @@
+package org.chatbot.service;
+
+import org.chatbot.model.MoodLog;
+import org.chatbot.model.MoodRollup;
+import org.chatbot.repository.MoodRepository;
+import org.chatbot.repository.MoodRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MoodServiceTest {
+
+    private final MoodRepository moodRepository = mock(MoodRepository.class);
+    private final MoodRollupRepository rollupRepository =
+      mock(MoodRollupRepository.class);
+    private final MoodService moodService = new MoodService();
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(moodService, "moodRepository",
+                                     moodRepository);
+        ReflectionTestUtils.setField(moodService, "moodRollupRepository",
+                                     rollupRepository);
+        ReflectionTestUtils.setField(moodService, "trendWindows",
+                                     Set.of(7, 30, 90, 365));
+        when(moodRepository.save(any())).thenAnswer(
+          invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void newLogIsAddedToTheRollup() {
+        when(moodRepository.findForUpdateByUserIdAndDate(7L, today)).thenReturn(
+          Optional.empty());
+
+        moodService.logMood(4, 7L, null);
+
+        verify(rollupRepository).insertDay(7L, today);
+        verify(rollupRepository).applyChange(7L, today, 4, 0);
+    }
+
+    @Test
+    void updatedLogMovesBetweenRatings() {
+        MoodLog existing = new MoodLog(4, 7L);
+        when(moodRepository.findForUpdateByUserIdAndDate(7L, today)).thenReturn(
+          Optional.of(existing));
+
+        moodService.logMood(2, 7L, "worse");
+        moodService.logMood(2, 7L, "same rating, new note");
+
+        verify(rollupRepository).applyChange(7L, today, 2, 4);
+        verify(rollupRepository, never()).applyChange(anyLong(), any(),
+                                                      anyInt(), eq(2));
+    }
+
+    @Test
+    void trendsAreTheDifferenceOfTwoRollups() {
+        LocalDate start = today.minusDays(6);
+        //before the window: 1x1, 2x3; through today: 1x1, 3x5, 2x4
+        when(rollupRepository.findRangeBounds(7L, start, today)).thenReturn(
+          List.of(new MoodRollup(7L, start.minusDays(3), 1, 0, 2, 0, 0),
+                  new MoodRollup(7L, today, 1, 0, 5, 2, 0)));
+
+        Map<String, Object> trends = moodService.getMoodTrends(7L, 7);
+
+        assertEquals(5L, trends.get("totalDays"));
+        assertEquals((3 * 3 + 2 * 4) / 5.0, trends.get("averageMood"));
+        assertEquals(Map.of(1, 0L, 2, 0L, 3, 3L, 4, 2L, 5, 0L),
+                     trends.get("moodDistribution"));
+    }
+
+    @Test
+    void nothingLoggedInTheWindow() {
+        LocalDate start = today.minusDays(29);
+        //only an older row: both bounds are the same row
+        when(rollupRepository.findRangeBounds(7L, start, today)).thenReturn(
+          List.of(new MoodRollup(7L, start.minusDays(1), 0, 0, 1, 0, 0)));
+
+        Map<String, Object> trends = moodService.getMoodTrends(7L, 30);
+
+        assertEquals(0L, trends.get("totalDays"));
+        assertEquals(0.0, trends.get("averageMood"));
+    }
+
+    @Test
+    void unknownWindowIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> moodService.getMoodTrends(7L, 14));
+    }
+}
@@ -0,0 +1,95 @@
+package org.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RiskLexiconServiceTest {
+
+    @Test
+    void builtInLexiconIsUsedWithoutPath() {
+        RiskLexiconService service = new RiskLexiconService("");
+
+        assertTrue(service.current()
+                          .version()
+                          .startsWith("2026"));
+        assertTrue(new SentimentService(service).assessRisk("overdose")
+                                                .risky());
+    }
+
+    @Test
+    void changedFileIsSwappedInAndBrokenFileIsIgnored(@TempDir Path dir)
+      throws Exception {
+        Path file = dir.resolve("lexicon.txt");
+        Files.writeString(file, "# version: v1\n[crisis]\nsuicide\n");
+        RiskLexiconService service = new RiskLexiconService(file.toString());
+        SentimentService sentiment = new SentimentService(service);
+
+        assertTrue(service.current()
+                          .version()
+                          .startsWith("v1+sha256:"));
+        assertFalse(sentiment.assessRisk("I feel like disappearing")
+                             .risky());
+
+        Files.writeString(file,
+                          "# version: v2\n[crisis]\nsuicide\ndisappearing\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()
+                                                             .plusSeconds(5)));
+        service.reload();
+
+        RiskAssessment assessment = sentiment.assessRisk(
+          "I feel like disappearing");
+        assertTrue(assessment.risky());
+        assertEquals("disappearing", assessment.trigger());
+        assertTrue(assessment.lexiconVersion()
+                             .startsWith("v2+"));
+
+        // a lexicon without crisis keywords is rejected, v2 stays live
+        Files.writeString(file, "# version: v3\n[distress]\nsad\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()
+                                                             .plusSeconds(10)));
+        service.reload();
+        assertEquals(assessment.lexiconVersion(), service.current()
+                                                         .version());
+    }
+
+    @Test
+    void editWithoutVersionBumpIsSwappedIn(@TempDir Path dir)
+      throws Exception {
+        Path file = dir.resolve("lexicon.txt");
+        Files.writeString(file, "# version: v1\n[crisis]\nsuicide\n");
+        RiskLexiconService service = new RiskLexiconService(file.toString());
+        SentimentService sentiment = new SentimentService(service);
+        String before = service.current()
+                               .version();
+
+        Files.writeString(file,
+                          "# version: v1\n[crisis]\nsuicide\ndisappearing\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()
+                                                             .plusSeconds(5)));
+        service.reload();
+
+        RiskAssessment assessment = sentiment.assessRisk(
+          "I feel like disappearing");
+        assertTrue(assessment.risky());
+        assertTrue(assessment.lexiconVersion()
+                             .startsWith("v1+"));
+        assertNotEquals(before, assessment.lexiconVersion());
+    }
+
+    @Test
+    void keywordOutsideSectionIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> RiskLexicon.parse("suicide\n"));
+    }
+}
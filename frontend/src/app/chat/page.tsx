@@ -7,7 +7,7 @@ import Navigation from '@/components/Navigation';
 import ProtectedRoute from '@/components/ProtectedRoute';
 import {
   ChatMessage,
-  getChatHistory,
+  getChatHistoryPage,
   sendMessageToAI,
 } from '@/services/chatService';
 import { error, timeStamp } from 'console';
@@ -27,6 +27,12 @@ export default function ChatPage() {
   const [isLoadingHistory, setIsLoadingHistory] = useState(true);
   const [historyError, setHistoryError] = useState<string | null>(null);
 
+  // cursor of the oldest loaded msg, null when there is nothing older
+  const [olderCursor, setOlderCursor] = useState<string | null>(null);
+  const [isLoadingOlder, setIsLoadingOlder] = useState(false);
+  // older msg are added on top, keep the scroll where it is then
+  const keepScrollRef = useRef(false);
+
   // reference to scroll to bottom of chat when new msg arrive
   const messagesEndRef = useRef<HTMLDivElement>(null);
 
@@ -37,6 +43,10 @@ export default function ChatPage() {
 
   // scroll to bottom w/e msg change
   useEffect(() => {
+    if (keepScrollRef.current) {
+      keepScrollRef.current = false;
+      return;
+    }
     scrollToBottom();
   }, [messages]);
 
@@ -44,22 +54,26 @@ export default function ChatPage() {
     loadChatHistory();
   }, []);
 
-  // func to load previous chat history
+  //backend format to frontend format
+  const formatMessages = (history: ChatMessage[]): Message[] =>
+    history.map((msg: ChatMessage) => ({
+      text: msg.text,
+      sender: msg.sender,
+      timestamp: new Date(msg.timestamp),
+    }));
+
+  // func to load previous chat history, the latest page
   const loadChatHistory = async () => {
     try {
       setIsLoadingHistory(true);
       setHistoryError(null);
       console.log('Loading chat history...');
-      const history = await getChatHistory();
+      const page = await getChatHistoryPage();
 
-      //backend format to frontend format
-      const formattedMessages: Message[] = history.map((msg: ChatMessage) => ({
-        text: msg.text,
-        sender: msg.sender,
-        timestamp: new Date(msg.timestamp),
-      }));
+      const formattedMessages = formatMessages(page.messages);
 
       setMessages(formattedMessages);
+      setOlderCursor(page.hasMore ? page.before : null);
       console.log(`loaded ${formattedMessages.length} messages`);
     } catch (error) {
       console.error('Error loading chat history: ', error);
@@ -73,6 +87,23 @@ export default function ChatPage() {
     }
   };
 
+  // func to load the page before the oldest msg shown
+  const loadOlderMessages = async () => {
+    if (!olderCursor) return;
+    try {
+      setIsLoadingOlder(true);
+      const page = await getChatHistoryPage(olderCursor);
+
+      keepScrollRef.current = true;
+      setMessages((prev) => [...formatMessages(page.messages), ...prev]);
+      setOlderCursor(page.hasMore ? page.before : null);
+    } catch (error) {
+      console.error('Error loading older messages: ', error);
+    } finally {
+      setIsLoadingOlder(false);
+    }
+  };
+
   //func that handles user sending msg
   const handleSendMessage = async (messageText: string) => {
     // add user msg to chat
@@ -129,6 +160,7 @@ export default function ChatPage() {
                   onClick={() => {
                     if (confirm('Are you sure you want to clear this chat?')) {
                       setMessages([]);
+                      setOlderCursor(null);
                     }
                   }}
                   className="text-sm text-red-400 hover:text-red-300 transition-colors">
@@ -184,6 +216,20 @@ export default function ChatPage() {
               ) : (
                 // Messages
                 <>
+                  {/* Load older msg button */}
+                  {olderCursor && (
+                    <div className="flex justify-center mb-4">
+                      <button
+                        onClick={loadOlderMessages}
+                        disabled={isLoadingOlder}
+                        className="text-sm text-blue-400 hover:text-blue-300 underline disabled:opacity-50">
+                        {isLoadingOlder
+                          ? 'Loading older messages...'
+                          : 'Load older messages'}
+                      </button>
+                    </div>
+                  )}
+
                   {messages.map((message, index) => (
                     <MessageBubble
                       key={index}
@@ -12,6 +12,15 @@ export interface ChatMessage {
 	userId?: number;
 }
 
+// one page of history, oldest message first
+// pass `before` back to load older messages
+export interface ChatHistoryPage {
+	messages: ChatMessage[];
+	before: string | null;
+	after: string | null;
+	hasMore: boolean;
+}
+
 export interface ChatResponse {
 	text: string;
 	timestamp: string;
@@ -59,14 +68,35 @@ export async function sendMessageToAI(
 	}
 }
 
-// function to fetch chat history
+// function to fetch the latest chat history
 export async function getChatHistory(): Promise<ChatMessage[]> {
+	const page = await getChatHistoryPage();
+	return page.messages;
+}
+
+// function to fetch one page of chat history
+// without a cursor the latest messages are returned
+export async function getChatHistoryPage(
+	before?: string,
+	limit?: number
+): Promise<ChatHistoryPage> {
+	const emptyPage: ChatHistoryPage = {
+		messages: [],
+		before: null,
+		after: null,
+		hasMore: false,
+	};
 	try {
 		const token = localStorage.getItem('authToken');
 
 		console.log('fetching chat history from backend..');
 
-		const response = await fetch(`${API_URL}/api/chat/history`, {
+		const params = new URLSearchParams();
+		if (before) params.set('before', before);
+		if (limit) params.set('limit', String(limit));
+		const query = params.toString() ? `?${params.toString()}` : '';
+
+		const response = await fetch(`${API_URL}/api/chat/history${query}`, {
 			method: 'GET',
 			headers: {
 				'Content-Type': 'application/json',
@@ -85,7 +115,7 @@ export async function getChatHistory(): Promise<ChatMessage[]> {
 			//if 404 or 500, return empty array instad of failing
 			if (response.status === 404 || response.status === 500) {
 				console.warn('No Chat hisotry found, starting fresh');
-				return [];
+				return emptyPage;
 			}
 			throw new Error(`HTTP error! status: ${response.status}`);
 		}
@@ -93,16 +123,16 @@ export async function getChatHistory(): Promise<ChatMessage[]> {
 		const data = await response.json();
 		console.log('Received chat history: ', data);
 
-		//validate that we get an array
-		if (!Array.isArray(data)) {
-			console.error('Expected array but got: ', typeof data);
-			return [];
+		//validate that we get a page with a messages array
+		if (!data || !Array.isArray(data.messages)) {
+			console.error('Expected a history page but got: ', typeof data);
+			return emptyPage;
 		}
 
 		return data;
 	} catch (error) {
 		console.error('Error fetching chat history:', error);
-		// returne empty array instead of throwing - this prevents infinite loading.
-		return [];
+		// returne empty page instead of throwing - this prevents infinite loading.
+		return emptyPage;
 	}
 }
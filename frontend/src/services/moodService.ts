@@ -11,12 +11,12 @@ export interface MoodLog {
 }
 
 export interface MoodTrends {
+	days: number;
 	averageMood: number;
 	totalDays: number;
 	moodDistribution: {
 		[key: number]: number;
 	};
-	recentLogs: MoodLog[];
 }
 
 /**
@@ -88,14 +88,15 @@ export async function getMoodLogs(): Promise<MoodLog[]> {
 }
 
 /**
- * Get mood trends for the last 30 days
+ * Get mood trends for the last 7, 30, 90 or 365 days
+ * @param days  window length in days
  * @returns Trend data including average mood and distribution
  */
-export async function getMoodTrends(): Promise<MoodTrends> {
+export async function getMoodTrends(days = 30): Promise<MoodTrends> {
 	try {
 		const token = localStorage.getItem('authToken');
 
-		const response = await fetch(`${API_URL}/api/mood/trends`, {
+		const response = await fetch(`${API_URL}/api/mood/trends?days=${days}`, {
 			method: 'GET',
 			headers: {
 				Authorization: `Bearer ${token}`,